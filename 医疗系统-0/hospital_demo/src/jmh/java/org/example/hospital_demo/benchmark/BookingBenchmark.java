@@ -0,0 +1,151 @@
+package org.example.hospital_demo.benchmark;
+
+import org.example.hospital_demo.HospitalDemoApplication;
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.AppointmentSlot;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentSlotRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.example.hospital_demo.service.AppointmentService;
+import org.example.hospital_demo.service.SlotInventoryEngine;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 完整挂号流程基准：AppointmentService.createAppointment 写入内嵌 H2
+ * single：单线程，按医生、日期、时间段轮换，不争用同一号源；
+ * contended：多线程同时挂同一医生同一时间段，争用同一号源计数和排队号段。
+ * 号源容量放大到不会约满，每次调用使用未挂过该医生该日期的病人，保证走完整写库路径。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookingBenchmark {
+
+    private static final String[] TIME_SLOTS = {
+            "08:00-08:30", "08:30-09:00", "09:00-09:30", "09:30-10:00",
+            "10:00-10:30", "10:30-11:00", "11:00-11:30",
+            "14:00-14:30", "14:30-15:00", "15:00-15:30", "15:30-16:00",
+            "16:00-16:30", "16:30-17:00"
+    };
+
+    // 可用的预约日期（明天起 6 天），每个 (病人, 医生, 日期) 只挂一次
+    private static final int DAYS = 6;
+
+    private static final int PATIENTS = 30_000;
+
+    private ConfigurableApplicationContext context;
+
+    private AppointmentService appointmentService;
+
+    private List<long[]> doctors;
+
+    private List<Long> patientIds;
+
+    private LocalDate today;
+
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    private final LongAdder failures = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void start() {
+        // 以命令行参数传入，优先级高于 application.properties
+        context = new SpringApplicationBuilder(HospitalDemoApplication.class).run(
+                "--spring.main.web-application-type=none",
+                "--spring.datasource.url=jdbc:h2:mem:jmh_booking;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.web=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN");
+        appointmentService = context.getBean(AppointmentService.class);
+        today = LocalDate.now();
+
+        AppointmentSlotRepository slotRepo = context.getBean(AppointmentSlotRepository.class);
+        List<AppointmentSlot> slots = slotRepo.findAll();
+        slots.forEach(slot -> slot.setTotalSlots(1_000_000));
+        slotRepo.saveAll(slots);
+
+        SlotInventoryEngine inventory = context.getBean(SlotInventoryEngine.class);
+        List<Doctor> doctorList = context.getBean(DoctorRepository.class).findAll();
+        for (Doctor doctor : doctorList) {
+            for (int day = 0; day <= DAYS; day++) {
+                inventory.reload(doctor.getId(), today.plusDays(day));
+            }
+        }
+        doctors = doctorList.stream()
+                .map(d -> new long[]{d.getId(), d.getDepartment().getId()})
+                .toList();
+
+        PatientRepository patientRepo = context.getBean(PatientRepository.class);
+        patientIds = new ArrayList<>(PATIENTS);
+        List<Patient> batch = new ArrayList<>();
+        for (int i = 0; i < PATIENTS; i++) {
+            Patient patient = new Patient();
+            patient.setName("基准病人" + i);
+            patient.setPhone(String.format("151%08d", i));
+            batch.add(patient);
+            if (batch.size() == 1000) {
+                patientRepo.saveAll(batch).forEach(p -> patientIds.add(p.getId()));
+                batch.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (failures.sum() > 0) {
+            System.out.println("挂号失败次数：" + failures.sum());
+        }
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Result<AppointmentResponse> single() {
+        int i = cursor.getAndIncrement();
+        int round = i / PATIENTS;
+        long[] doctor = doctors.get((round / DAYS) % doctors.size());
+        return book(patientIds.get(i % PATIENTS), doctor, today.plusDays(1 + round % DAYS), TIME_SLOTS[i % TIME_SLOTS.length]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Result<AppointmentResponse> contended() {
+        int i = cursor.getAndIncrement();
+        int round = i / PATIENTS;
+        return book(patientIds.get(i % PATIENTS), doctors.get(0), today.plusDays(1 + round % DAYS), TIME_SLOTS[2]);
+    }
+
+    private Result<AppointmentResponse> book(Long patientId, long[] doctor, LocalDate date, String timeSlot) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setPatientId(patientId);
+        request.setDoctorId(doctor[0]);
+        request.setDepartmentId(doctor[1]);
+        request.setAppointmentDate(date);
+        request.setAppointmentTime(LocalTime.parse(timeSlot.substring(0, 5)));
+        request.setTimeSlot(timeSlot);
+        Result<AppointmentResponse> result = appointmentService.createAppointment(request);
+        if (result.getCode() != 200) {
+            failures.increment();
+        }
+        return result;
+    }
+}
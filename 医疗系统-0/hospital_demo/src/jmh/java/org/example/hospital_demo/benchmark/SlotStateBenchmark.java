@@ -0,0 +1,77 @@
+package org.example.hospital_demo.benchmark;
+
+import org.example.hospital_demo.entity.AppointmentSlot;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 号源实体状态方法基准
+ * useSlot/releaseSlot 成对调用，保持号源数量不变；
+ * 另测一天 13 个号源逐个判断可预约、读取剩余数量（号源查询过滤时的典型循环）。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SlotStateBenchmark {
+
+    private AppointmentSlot slot;
+
+    private List<AppointmentSlot> daySlots;
+
+    @Setup
+    public void setUp() {
+        slot = newSlot("09:00-09:30", 20, 10);
+        daySlots = new ArrayList<>();
+        for (int i = 0; i < 13; i++) {
+            // 一部分号源已满，让判断分支两边都走到
+            daySlots.add(newSlot(String.format("%02d:00-%02d:30", 8 + i, 8 + i), 20, i % 3 == 0 ? 20 : i));
+        }
+    }
+
+    @Benchmark
+    public AppointmentSlot useAndRelease() {
+        slot.useSlot();
+        slot.releaseSlot();
+        return slot;
+    }
+
+    @Benchmark
+    public boolean canBookNormal() {
+        return slot.canBookNormal();
+    }
+
+    @Benchmark
+    public Integer getAvailableSlots() {
+        return slot.getAvailableSlots();
+    }
+
+    @Benchmark
+    public void scanDay(Blackhole blackhole) {
+        for (AppointmentSlot s : daySlots) {
+            if (s.canBookNormal()) {
+                blackhole.consume(s.getAvailableSlots());
+                blackhole.consume(s.getAvailableEmergencySlots());
+            }
+        }
+    }
+
+    private static AppointmentSlot newSlot(String timeSlot, int total, int used) {
+        AppointmentSlot s = new AppointmentSlot();
+        s.setId((long) timeSlot.hashCode());
+        s.setDate(LocalDate.now().plusDays(1));
+        s.setTimeSlot(timeSlot);
+        s.setTotalSlots(total);
+        s.setUsedSlots(used);
+        s.setEmergencyReserved(2);
+        s.setStatus(used >= total ? AppointmentSlot.SlotStatus.已满 : AppointmentSlot.SlotStatus.可用);
+        return s;
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.entity.Department;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试用的挂号记录（不访问数据库，关联对象都已加载）
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static List<Appointment> appointments(int count) {
+        Department department = new Department();
+        department.setId(1L);
+        department.setName("内科");
+
+        Doctor doctor = new Doctor();
+        doctor.setId(1L);
+        doctor.setName("张医生");
+        doctor.setTitle("主任医师");
+        doctor.setSpecialty("心血管疾病、高血压");
+        doctor.setDepartment(department);
+
+        LocalDate date = LocalDate.now().plusDays(1);
+        LocalDateTime now = LocalDateTime.now();
+        List<Appointment> appointments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Patient patient = new Patient();
+            patient.setId((long) i);
+            patient.setName("病人" + i);
+            patient.setPhone(String.format("138%08d", i));
+
+            Appointment appointment = new Appointment();
+            appointment.setId((long) i);
+            appointment.setPatient(patient);
+            appointment.setDoctor(doctor);
+            appointment.setDepartment(department);
+            appointment.setAppointmentDate(date);
+            appointment.setAppointmentTime(LocalTime.of(8 + i % 9, i % 2 == 0 ? 0 : 30));
+            appointment.setQueueNumber(i + 1);
+            appointment.setSymptoms("头痛、发热");
+            appointment.setCreatedTime(now);
+            appointment.setUpdatedTime(now);
+            appointments.add(appointment);
+        }
+        return appointments;
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.entity.Appointment;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 挂号记录转换基准
+ * convertToResponse 在列表查询、导出、候诊队列中逐行调用；
+ * formatTimeSlot 与原来的 String.format 写法对比。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MappingBenchmark {
+
+    private final AppointmentService service = new AppointmentService();
+
+    private List<Appointment> appointments;
+
+    private LocalTime time;
+
+    @Setup
+    public void setUp() {
+        appointments = BenchmarkFixtures.appointments(100);
+        time = LocalTime.of(9, 30);
+    }
+
+    @Benchmark
+    public AppointmentResponse convertToResponse() {
+        return service.convertToResponse(appointments.get(0));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public void convertPage(Blackhole blackhole) {
+        for (Appointment appointment : appointments) {
+            blackhole.consume(service.convertToResponse(appointment));
+        }
+    }
+
+    @Benchmark
+    public String formatTimeSlot() {
+        return AppointmentService.formatTimeSlot(time);
+    }
+
+    @Benchmark
+    public String formatTimeSlotStringFormat() {
+        LocalTime endTime = time.plusMinutes(30);
+        return String.format("%02d:%02d-%02d:%02d",
+                time.getHour(), time.getMinute(),
+                endTime.getHour(), endTime.getMinute());
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 列表接口响应序列化基准：Result<List<AppointmentResponse>> 转 JSON 字节
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"20", "200"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+
+    private Result<List<AppointmentResponse>> result;
+
+    @Setup
+    public void setUp() {
+        objectMapper = JsonMapper.builder().build();
+        AppointmentService service = new AppointmentService();
+        List<AppointmentResponse> responses = BenchmarkFixtures.appointments(size).stream()
+                .map(service::convertToResponse)
+                .toList();
+        result = Result.success(responses);
+    }
+
+    @Benchmark
+    public byte[] serializeList() {
+        return objectMapper.writeValueAsBytes(result);
+    }
+}
@@ -0,0 +1,183 @@
+package org.example.hospital_demo.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * 自适应并发限制器（AIMD）
+ * 限制同时处理的 API 请求数：请求耗时低于目标且并发接近上限时，每处理完约一个上限数量的请求把上限加一；
+ * 耗时超过目标时按比例乘性减小上限，两次减小之间至少间隔一个目标耗时，避免同一批慢请求连续减小。
+ * 不同优先级可用的并发份额不同：可重试的读请求最先被拒绝，其次是普通写请求，
+ * 急诊挂号和医生的叫号、完成就诊使用预留份额，不受自适应上限约束，只在同时处理的请求总数达到固定硬上限时才被拒绝。
+ * 上限的更新使用 CAS，每个请求结束时不需要加锁；并发更新失败时重读后重试，减小上限时只有一个线程能抢到这一次减小。
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 请求优先级
+     */
+    public enum Priority {
+        可重试读,   // 查询类请求，客户端重试代价低
+        普通写,     // 普通挂号、取消等
+        关键        // 急诊挂号、叫号、完成就诊
+    }
+
+    @Value("${hospital.load-shedding.enabled:true}")
+    private boolean enabled;
+
+    @Value("${hospital.load-shedding.initial-limit:40}")
+    private int initialLimit;
+
+    @Value("${hospital.load-shedding.min-limit:8}")
+    private int minLimit;
+
+    @Value("${hospital.load-shedding.max-limit:200}")
+    private int maxLimit;
+
+    // 请求耗时目标，超过时减小并发上限
+    @Value("${hospital.load-shedding.target-latency-ms:250}")
+    private long targetLatencyMs;
+
+    // 读请求最多占用并发上限的比例
+    @Value("${hospital.load-shedding.read-share:0.6}")
+    private double readShare;
+
+    // 为关键请求预留的并发上限比例，普通写请求不能使用
+    @Value("${hospital.load-shedding.critical-reserve:0.2}")
+    private double criticalReserve;
+
+    // 关键请求的硬上限：同时处理的请求总数达到该值时关键请求也被拒绝（不低于当前自适应上限）
+    @Value("${hospital.load-shedding.critical-max-in-flight:400}")
+    private int criticalMaxInFlight;
+
+    // 乘性减小系数下限：一次最多减小到原来的一半
+    private static final double MIN_BACKOFF = 0.5;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // 当前上限（double 的位表示），CAS 更新
+    private final AtomicLong limitBits = new AtomicLong();
+    // 上一次减小上限的时间
+    private final AtomicLong lastDecrease = new AtomicLong();
+
+    private final Map<Priority, LongAdder> admitted = new EnumMap<>(Priority.class);
+    private final Map<Priority, LongAdder> shed = new EnumMap<>(Priority.class);
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+
+    public AdaptiveConcurrencyLimiter() {
+        for (Priority priority : Priority.values()) {
+            admitted.put(priority, new LongAdder());
+            shed.put(priority, new LongAdder());
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        limitBits.set(Double.doubleToRawLongBits(initialLimit));
+        lastDecrease.set(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(targetLatencyMs) - 1);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 申请一个并发名额，失败返回 false（请求应被拒绝）；成功后必须调用 release
+     */
+    public boolean tryAcquire(Priority priority) {
+        double share = switch (priority) {
+            case 可重试读 -> readShare;
+            case 普通写 -> 1 - criticalReserve;
+            case 关键 -> 1;
+        };
+        int allowed = Math.max(1, (int) (limit() * share));
+        if (priority == Priority.关键) {
+            allowed = Math.max(allowed, criticalMaxInFlight);
+        }
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                shed.get(priority).increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.get(priority).increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 归还名额并按本次请求耗时调整并发上限
+     */
+    public void release(long latency) {
+        int current = inFlight.getAndDecrement();
+        latencyNanos.add(latency);
+        latencyCount.increment();
+        long target = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        if (latency > target) {
+            long now = System.nanoTime();
+            long last = lastDecrease.get();
+            // 抢到本次减小的线程才更新上限
+            if (now - last > target && lastDecrease.compareAndSet(last, now)) {
+                double factor = Math.max(MIN_BACKOFF, (double) target / latency);
+                updateLimit(limit -> Math.max(minLimit, limit * factor));
+            }
+        } else if (current >= limit() * 0.8) {
+            // 只有上限确实被用满时才增加，空闲时上限不会无限增长
+            updateLimit(limit -> Math.min(maxLimit, limit + 1 / limit));
+        }
+    }
+
+    private double limit() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+
+    private void updateLimit(DoubleUnaryOperator update) {
+        for (;;) {
+            long bits = limitBits.get();
+            double next = update.applyAsDouble(Double.longBitsToDouble(bits));
+            if (limitBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 当前上限和各优先级的放行、拒绝次数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        double limit = limit();
+        stats.put("limit", Math.round(limit * 10) / 10.0);
+        stats.put("inFlight", inFlight.get());
+        stats.put("readLimit", Math.max(1, (int) (limit * readShare)));
+        stats.put("writeLimit", Math.max(1, (int) (limit * (1 - criticalReserve))));
+        stats.put("criticalLimit", Math.max((int) limit, criticalMaxInFlight));
+        stats.put("targetLatencyMs", targetLatencyMs);
+        long count = latencyCount.sum();
+        stats.put("avgLatencyMs", count == 0 ? 0.0 : Math.round(latencyNanos.sum() / 1e5 / count) / 10.0);
+        Map<String, Long> admittedCounts = new LinkedHashMap<>();
+        Map<String, Long> shedCounts = new LinkedHashMap<>();
+        for (Priority priority : Priority.values()) {
+            admittedCounts.put(priority.name(), admitted.get(priority).sum());
+            shedCounts.put(priority.name(), shed.get(priority).sum());
+        }
+        stats.put("admitted", admittedCounts);
+        stats.put("shed", shedCounts);
+        return stats;
+    }
+}
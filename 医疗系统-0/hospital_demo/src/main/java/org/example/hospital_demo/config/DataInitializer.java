@@ -2,18 +2,20 @@ package org.example.hospital_demo.config;
 
 import org.example.hospital_demo.entity.*;
 import org.example.hospital_demo.repository.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 /**
  * 数据初始化配置类
- * 在项目启动时自动创建测试数据
+ * 在项目启动时自动创建测试数据；数据库中已有科室（持久化模式重启）时跳过
  */
 @Configuration
 public class DataInitializer {
@@ -23,9 +25,17 @@ public class DataInitializer {
             DepartmentRepository departmentRepo,
             DoctorRepository doctorRepo,
             PatientRepository patientRepo,
-            AppointmentSlotRepository slotRepo) {
+            AppointmentSlotRepository slotRepo,
+            SlotTemplateRepository templateRepo,
+            @Value("${hospital.seed.patients:0}") int seedPatients,
+            @Value("${hospital.seed.slot-capacity:3}") int slotCapacity,
+            @Value("${spring.datasource.url}") String jdbcUrl) {
         
         return args -> {
+            if (departmentRepo.count() > 0) {
+                System.out.println("数据库中已有数据，跳过测试数据初始化（JDBC URL: " + jdbcUrl + "）");
+                return;
+            }
             System.out.println("========== 开始初始化测试数据 ==========");
             
             // 1. 创建科室
@@ -40,14 +50,21 @@ public class DataInitializer {
             List<Patient> patients = createPatients(patientRepo);
             System.out.println("✓ 已创建 " + patients.size() + " 名病人");
             
-            // 4. 创建号源
-            createAppointmentSlots(slotRepo, doctors);
+            // 压测病人（挂号高峰模拟使用）
+            if (seedPatients > 0) {
+                createLoadTestPatients(patientRepo, seedPatients);
+                System.out.println("✓ 已创建 " + seedPatients + " 名压测病人");
+            }
+            
+            // 4. 创建号源模板和号源
+            createSlotTemplates(templateRepo, doctors, slotCapacity);
+            createAppointmentSlots(slotRepo, doctors, slotCapacity);
             System.out.println("✓ 已创建医生号源");
             
             System.out.println("========== 测试数据初始化完成 ==========");
             System.out.println("访问 http://localhost:8080 打开挂号系统");
             System.out.println("访问 http://localhost:8080/h2-console 可查看数据库");
-            System.out.println("JDBC URL: jdbc:h2:mem:hospital_system");
+            System.out.println("JDBC URL: " + jdbcUrl);
         };
     }
     
@@ -169,10 +186,46 @@ public class DataInitializer {
         return repo.saveAll(Arrays.asList(p1, p2, p3));
     }
     
+    /**
+     * 创建压测病人（手机号 137 开头顺序编号），按批保存
+     */
+    private void createLoadTestPatients(PatientRepository repo, int count) {
+        List<Patient> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Patient patient = new Patient();
+            patient.setName("压测病人" + i);
+            patient.setPhone(String.format("137%08d", i));
+            batch.add(patient);
+            if (batch.size() == 1000) {
+                repo.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repo.saveAll(batch);
+    }
+    
+    /**
+     * 创建号源模板：每个时间段 30 分钟，预留 1 个急诊号（之后按排班生成号源时使用）
+     */
+    private void createSlotTemplates(SlotTemplateRepository repo, List<Doctor> doctors, int slotCapacity) {
+        List<SlotTemplate> templates = new ArrayList<>();
+        for (Doctor doctor : doctors) {
+            SlotTemplate template = new SlotTemplate();
+            template.setDoctor(doctor);
+            template.setSlotMinutes(30);
+            template.setTotalSlots(slotCapacity);
+            template.setEmergencyReserved(1);
+            templates.add(template);
+        }
+        repo.saveAll(templates);
+    }
+    
     /**
      * 创建号源数据（未来7天）
+     * 演示数据不按排班，每个医生每天都开放全部时间段，方便任何一天打开都能挂号；
+     * 7 天之后的号源由 SlotGenerator 按排班生成。号源使用序列主键，saveAll 按批次发送 INSERT
      */
-    private void createAppointmentSlots(AppointmentSlotRepository repo, List<Doctor> doctors) {
+    private void createAppointmentSlots(AppointmentSlotRepository repo, List<Doctor> doctors, int slotCapacity) {
         String[] timeSlots = {
             "08:00-08:30", "08:30-09:00", "09:00-09:30", "09:30-10:00",
             "10:00-10:30", "10:30-11:00", "11:00-11:30",
@@ -181,6 +234,7 @@ public class DataInitializer {
         };
         
         LocalDate today = LocalDate.now();
+        List<AppointmentSlot> slots = new ArrayList<>();
         
         for (Doctor doctor : doctors) {
             // 为每个医生创建未来7天的号源
@@ -192,13 +246,14 @@ public class DataInitializer {
                     slot.setDoctor(doctor);
                     slot.setDate(date);
                     slot.setTimeSlot(timeSlot);
-                    slot.setTotalSlots(3);  // 每个时间段3个号
+                    slot.setTotalSlots(slotCapacity);  // 每个时间段的号数，默认3个
                     slot.setUsedSlots(0);
                     slot.setEmergencyReserved(1);  // 预留1个急诊号
                     slot.setStatus(AppointmentSlot.SlotStatus.可用);
-                    repo.save(slot);
+                    slots.add(slot);
                 }
             }
         }
+        repo.saveAll(slots);
     }
 }
\ No newline at end of file
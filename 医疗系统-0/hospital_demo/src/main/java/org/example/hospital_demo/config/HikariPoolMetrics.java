@@ -0,0 +1,77 @@
+package org.example.hospital_demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.example.hospital_demo.service.MetricsRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接池指标
+ * 挂到所有 Hikari 连接池上（主数据源在创建后由本类设置，排队号独立连接池在构造时设置），
+ * 记录获取连接的等待时间、连接占用时间、获取超时次数，以及活动/空闲/等待线程数。
+ */
+@Component
+public class HikariPoolMetrics implements MetricsTrackerFactory, BeanPostProcessor, Ordered {
+
+    // 注册表在连接池第一次建立连接时才需要，延迟获取，避免后处理器提前初始化普通 Bean
+    private final ObjectProvider<MetricsRegistry> registry;
+
+    public HikariPoolMetrics(ObjectProvider<MetricsRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource dataSource && dataSource.getMetricsTrackerFactory() == null) {
+            dataSource.setMetricsTrackerFactory(this);
+        }
+        return bean;
+    }
+
+    /**
+     * 先于慢 SQL 代理处理数据源，此时拿到的仍是 HikariDataSource 本身
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        MetricsRegistry metrics = registry.getObject();
+        metrics.gauge("hospital_pool_connections_active", "使用中的连接数", poolStats::getActiveConnections, "pool", poolName);
+        metrics.gauge("hospital_pool_connections_idle", "空闲连接数", poolStats::getIdleConnections, "pool", poolName);
+        metrics.gauge("hospital_pool_connections_total", "连接总数", poolStats::getTotalConnections, "pool", poolName);
+        metrics.gauge("hospital_pool_connections_max", "最大连接数", poolStats::getMaxConnections, "pool", poolName);
+        metrics.gauge("hospital_pool_pending_threads", "等待获取连接的线程数", poolStats::getPendingThreads, "pool", poolName);
+        MetricsRegistry.Histogram acquire = metrics.histogram("hospital_pool_acquire_seconds",
+                "获取连接的等待时间", "pool", poolName);
+        MetricsRegistry.Histogram usage = metrics.histogram("hospital_pool_usage_seconds",
+                "连接从借出到归还的占用时间", "pool", poolName);
+        LongAdder timeouts = metrics.counter("hospital_pool_timeouts_total", "获取连接超时次数", "pool", poolName);
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquire.recordNanos(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usage.recordNanos(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+}
@@ -0,0 +1,192 @@
+package org.example.hospital_demo.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.hospital_demo.config.AdaptiveConcurrencyLimiter.Priority;
+import org.example.hospital_demo.dto.Result;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * 过载保护过滤器
+ * API 请求按优先级向自适应并发限制器申请名额，名额不足时直接返回 503 和 Retry-After，不占用数据库连接。
+ * 运维接口和号源推送长连接不受限制。
+ * 单条挂号请求需要读出请求体判断是否急诊，请求体超过 max-body-bytes 时直接返回 413，不整体读入内存。
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    // 叫号、完成就诊
+    private static final Pattern CLINICAL_PATH = Pattern.compile("/api/appointments/(\\d+/complete|queue/\\d+/next)");
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${hospital.load-shedding.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    // 单条挂号请求体的大小上限（字节）
+    @Value("${hospital.load-shedding.max-body-bytes:16384}")
+    private int maxBodyBytes;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !limiter.isEnabled()
+                || !path.startsWith("/api/")
+                || path.startsWith("/api/admin/")
+                || path.startsWith("/api/slots/stream/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        HttpServletRequest target = request;
+        Priority priority;
+        String path = request.getRequestURI();
+        String method = request.getMethod();
+        if ("POST".equals(method) && "/api/appointments".equals(path)) {
+            // 挂号请求需要看请求体中的挂号类型，读出后交给后续处理重复读取
+            CachedBodyRequest cached = CachedBodyRequest.read(request, maxBodyBytes);
+            if (cached == null) {
+                writeError(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "请求体过大");
+                return;
+            }
+            target = cached;
+            priority = cached.isEmergencyBooking(objectMapper) ? Priority.关键 : Priority.普通写;
+        } else if (CLINICAL_PATH.matcher(path).matches()) {
+            priority = Priority.关键;
+        } else if ("GET".equals(method) || ("POST".equals(method) && "/api/slots/search".equals(path))) {
+            priority = Priority.可重试读;
+        } else {
+            priority = Priority.普通写;
+        }
+
+        if (!limiter.tryAcquire(priority)) {
+            reject(response);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(target, response);
+        } finally {
+            limiter.release(System.nanoTime() - start);
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        writeError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "系统繁忙，请稍后重试");
+    }
+
+    private void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(objectMapper.writeValueAsString(Result.error(status, message)));
+    }
+
+    /**
+     * 缓存请求体的请求包装，挂号请求体很小，不超过上限时整体读入内存
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        /**
+         * 读出请求体，超过 maxBytes 时返回 null：声明的 Content-Length 超限时不读，
+         * 未声明长度（分块传输）时最多读 maxBytes + 1 字节
+         */
+        static CachedBodyRequest read(HttpServletRequest request, int maxBytes) throws IOException {
+            if (request.getContentLengthLong() > maxBytes) {
+                return null;
+            }
+            byte[] body = request.getInputStream().readNBytes(maxBytes + 1);
+            return body.length > maxBytes ? null : new CachedBodyRequest(request, body);
+        }
+
+        boolean isEmergencyBooking(ObjectMapper objectMapper) {
+            try {
+                JsonNode node = objectMapper.readTree(body);
+                return "急诊".equals(node.path("type").asString(""));
+            } catch (RuntimeException e) {
+                // 请求体格式错误时按普通请求处理，由后续处理返回错误
+                return false;
+            }
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                /**
+                 * 请求体已全部缓存在内存中：立即通知可读，读完后通知读取结束
+                 */
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            listener.onAllDataRead();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.hospital_demo.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.hospital_demo.service.MetricsRegistry;
+import org.example.hospital_demo.service.SlotEventHub;
+import org.example.hospital_demo.service.SlotReadCache;
+import org.example.hospital_demo.service.WaitingRoom;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 把已有组件自带的统计接入指标注册表
+ * Hibernate 统计（需开启 hospital.metrics.hibernate-statistics）、号源缓存、推送、等候室、过载保护，
+ * 采集时读取各组件的当前值，记录路径上不增加任何开销。
+ */
+@Component
+public class MetricsBinder {
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SlotReadCache slotCache;
+
+    @Autowired
+    private SlotEventHub slotEvents;
+
+    @Autowired
+    private WaitingRoom waitingRoom;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bind() {
+        Statistics hibernate = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (hibernate.isStatisticsEnabled()) {
+            metrics.counter("hospital_hibernate_queries_total", "HQL/JPQL/原生查询执行次数", hibernate::getQueryExecutionCount);
+            metrics.counter("hospital_hibernate_statements_total", "准备的 JDBC 语句数", hibernate::getPrepareStatementCount);
+            metrics.counter("hospital_hibernate_entity_loads_total", "实体加载次数", hibernate::getEntityLoadCount);
+            metrics.counter("hospital_hibernate_entity_fetches_total", "延迟加载触发的实体查询次数", hibernate::getEntityFetchCount);
+            metrics.counter("hospital_hibernate_entity_inserts_total", "实体插入次数", hibernate::getEntityInsertCount);
+            metrics.counter("hospital_hibernate_entity_updates_total", "实体更新次数", hibernate::getEntityUpdateCount);
+            metrics.counter("hospital_hibernate_cache_hits_total", "二级缓存命中次数", hibernate::getSecondLevelCacheHitCount);
+            metrics.counter("hospital_hibernate_cache_misses_total", "二级缓存未命中次数", hibernate::getSecondLevelCacheMissCount);
+            metrics.counter("hospital_hibernate_transactions_total", "完成的事务数", hibernate::getTransactionCount);
+            metrics.counter("hospital_hibernate_sessions_total", "打开的会话数", hibernate::getSessionOpenCount);
+            metrics.gauge("hospital_hibernate_query_max_seconds", "最慢查询耗时",
+                    () -> hibernate.getQueryExecutionMaxTime() / 1000.0);
+        }
+
+        metrics.counter("hospital_slot_cache_hits_total", "号源查询缓存命中次数", stat(slotCache::stats, "hits"));
+        metrics.counter("hospital_slot_cache_misses_total", "号源查询缓存未命中次数", stat(slotCache::stats, "misses"));
+        metrics.counter("hospital_slot_cache_evictions_total", "号源查询缓存淘汰次数", stat(slotCache::stats, "evictions"));
+        metrics.gauge("hospital_slot_cache_size", "号源查询缓存条目数", stat(slotCache::stats, "size"));
+
+        metrics.gauge("hospital_sse_connections", "号源推送连接数", stat(slotEvents::stats, "connections"));
+        metrics.counter("hospital_sse_messages_total", "号源推送消息数", stat(slotEvents::stats, "messagesSent"));
+
+        metrics.gauge("hospital_waiting_room_rate", "等候室每秒放行数", stat(waitingRoom::stats, "ratePerSecond"));
+        metrics.gauge("hospital_waiting_room_waiting", "等候室排队人数", stat(waitingRoom::stats, "waiting"));
+        metrics.counter("hospital_waiting_room_rejected_total", "等候室已满拒绝次数", stat(waitingRoom::stats, "rejected"));
+
+        metrics.gauge("hospital_load_shedding_limit", "自适应并发上限", stat(concurrencyLimiter::stats, "limit"));
+        metrics.gauge("hospital_load_shedding_in_flight", "在途 API 请求数", stat(concurrencyLimiter::stats, "inFlight"));
+        for (AdaptiveConcurrencyLimiter.Priority priority : AdaptiveConcurrencyLimiter.Priority.values()) {
+            metrics.counter("hospital_load_shedding_shed_total", "过载保护拒绝次数",
+                    nested(concurrencyLimiter::stats, "shed", priority.name()), "priority", priority.name());
+        }
+    }
+
+    private static Supplier<Number> stat(Supplier<Map<String, Object>> stats, String key) {
+        return () -> (Number) stats.get().get(key);
+    }
+
+    private static Supplier<Number> nested(Supplier<Map<String, Object>> stats, String key, String subKey) {
+        return () -> (Number) ((Map<?, ?>) stats.get().get(key)).get(subKey);
+    }
+}
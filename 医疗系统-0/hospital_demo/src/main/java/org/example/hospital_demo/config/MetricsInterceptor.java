@@ -0,0 +1,49 @@
+package org.example.hospital_demo.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.hospital_demo.service.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 接口耗时拦截器
+ * 按 控制器方法 + HTTP 方法 + 状态码 记录处理耗时直方图（不含过载保护过滤器直接拒绝的请求）。
+ * 标签取控制器方法名而不是请求路径，路径中的 ID 不会产生无限多的标签组合。
+ */
+@Component
+public class MetricsInterceptor implements HandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = MetricsInterceptor.class.getName() + ".start";
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    // 按标签组合缓存直方图，记录时不再拼接标签字符串
+    private final ConcurrentHashMap<String, MetricsRegistry.Histogram> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!(handler instanceof HandlerMethod method) || !(request.getAttribute(START_ATTRIBUTE) instanceof Long start)) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        String name = method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+        int status = ex != null && response.getStatus() < 400 ? 500 : response.getStatus();
+        String key = name + ' ' + request.getMethod() + ' ' + status;
+        histograms.computeIfAbsent(key, k -> metrics.histogram("hospital_http_request_seconds", "接口处理耗时",
+                "handler", name, "method", request.getMethod(), "status", String.valueOf(status))).recordNanos(elapsed);
+    }
+}
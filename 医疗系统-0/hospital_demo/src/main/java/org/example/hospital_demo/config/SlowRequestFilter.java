@@ -0,0 +1,52 @@
+package org.example.hospital_demo.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.hospital_demo.service.SlowLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * 慢请求采集：API 请求总耗时（含过载保护排队和响应写出）超过阈值时写入慢日志
+ * 替代 org.springframework.web 的 DEBUG 日志，正常请求不产生日志。
+ * 号源推送长连接和异步请求（流式导出）只计算请求线程上的耗时。
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SlowRequestFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private SlowLog slowLog;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !slowLog.isEnabled() || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (elapsed >= slowLog.requestThresholdNanos()) {
+                String query = request.getQueryString();
+                String line = request.getMethod() + " " + request.getRequestURI() + (query == null ? "" : "?" + query);
+                String handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod method
+                        ? method.getBeanType().getSimpleName() + "." + method.getMethod().getName() : null;
+                slowLog.request(elapsed, line, response.getStatus(), handler);
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package org.example.hospital_demo.config;
+
+import org.example.hospital_demo.service.SlowLog;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * 慢 SQL 采集
+ * 给主数据源套一层 JDK 动态代理：记录每条语句的绑定参数和执行耗时，超过阈值时连同行数、调用方方法写入慢日志。
+ * 查询语句的行数在结果集读完或关闭时才能确定，只有慢查询的结果集才会被包装计数。
+ * 替代 show-sql 和 BasicBinder TRACE：正常语句只多一次计时，不产生日志。
+ */
+@Component
+public class SlowSqlDataSourceWrapper implements BeanPostProcessor {
+
+    private static final String APP_PACKAGE = "org.example.hospital_demo.";
+
+    // 慢日志在第一次执行语句时才需要，延迟获取，避免后处理器提前初始化普通 Bean
+    private final ObjectProvider<SlowLog> slowLogProvider;
+
+    private volatile SlowLog slowLog;
+
+    // 关闭慢日志时不包装数据源，JDBC 调用不经过代理
+    private final boolean enabled;
+
+    public SlowSqlDataSourceWrapper(ObjectProvider<SlowLog> slowLogProvider, Environment environment) {
+        this.slowLogProvider = slowLogProvider;
+        this.enabled = environment.getProperty("hospital.slow-log.enabled", Boolean.class, true);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (enabled && bean instanceof DataSource dataSource && !Proxy.isProxyClass(bean.getClass())) {
+            return proxy(DataSource.class, (p, method, args) -> {
+                Object result = invoke(dataSource, method, args);
+                return result instanceof Connection connection ? wrapConnection(connection) : result;
+            });
+        }
+        return bean;
+    }
+
+    private SlowLog slowLog() {
+        SlowLog current = slowLog;
+        if (current == null) {
+            current = slowLogProvider.getObject();
+            slowLog = current;
+        }
+        return current;
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, (p, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof Statement statement) {
+                String name = method.getName();
+                String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                Class<? extends Statement> type = "prepareCall".equals(name) ? CallableStatement.class
+                        : "prepareStatement".equals(name) ? PreparedStatement.class : Statement.class;
+                return proxy(type, new StatementHandler(statement, sql));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 语句代理：记录绑定参数，执行时计时
+     */
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String sql;
+        private Object[] params;
+        private int batch;
+
+        StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bind(index, name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters") && params != null) {
+                Arrays.fill(params, null);
+            } else if (name.equals("addBatch")) {
+                batch++;
+            } else if (name.equals("clearBatch")) {
+                batch = 0;
+            }
+            return SlowSqlDataSourceWrapper.invoke(target, method, args);
+        }
+
+        private void bind(int index, Object value) {
+            if (params == null) {
+                params = new Object[Math.max(8, index)];
+            } else if (index > params.length) {
+                params = Arrays.copyOf(params, Math.max(index, params.length * 2));
+            }
+            params[index - 1] = value;
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            long start = System.nanoTime();
+            Object result = SlowSqlDataSourceWrapper.invoke(target, method, args);
+            long elapsed = System.nanoTime() - start;
+            int batchCount = batch;
+            if (method.getName().equals("executeBatch")) {
+                batch = 0;
+            }
+            SlowLog log = slowLog();
+            if (elapsed < log.sqlThresholdNanos()) {
+                return result;
+            }
+            String text = sql != null ? sql : args != null && args.length > 0 && args[0] instanceof String s ? s : "";
+            Object[] bound = params == null ? null : Arrays.copyOf(params, lastBound());
+            String caller = caller();
+            if (result instanceof ResultSet resultSet) {
+                return proxy(ResultSet.class, new CountingResultSet(resultSet, log, elapsed, text, bound, caller));
+            }
+            log.sql(elapsed, text, bound, rowCount(result), batchCount, caller);
+            return result;
+        }
+
+        /**
+         * 更新语句返回影响行数，批量执行返回各条之和（驱动返回 SUCCESS_NO_INFO 的不计），execute 返回 -1
+         */
+        private long rowCount(Object result) {
+            if (result instanceof Integer count) {
+                return count;
+            }
+            if (result instanceof Long count) {
+                return count;
+            }
+            if (result instanceof int[] counts) {
+                return Arrays.stream(counts).filter(c -> c > 0).asLongStream().sum();
+            }
+            if (result instanceof long[] counts) {
+                return Arrays.stream(counts).filter(c -> c > 0).sum();
+            }
+            return -1;
+        }
+
+        private int lastBound() {
+            int last = params.length;
+            while (last > 0 && params[last - 1] == null) {
+                last--;
+            }
+            return last;
+        }
+    }
+
+    /**
+     * 慢查询结果集：统计读取的行数，读完或关闭时写入慢日志
+     */
+    private static final class CountingResultSet implements InvocationHandler {
+
+        private final ResultSet target;
+        private final SlowLog log;
+        private final long elapsed;
+        private final String sql;
+        private final Object[] params;
+        private final String caller;
+        private long rows;
+        private boolean logged;
+
+        CountingResultSet(ResultSet target, SlowLog log, long elapsed, String sql, Object[] params, String caller) {
+            this.target = target;
+            this.log = log;
+            this.elapsed = elapsed;
+            this.sql = sql;
+            this.params = params;
+            this.caller = caller;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = SlowSqlDataSourceWrapper.invoke(target, method, args);
+            String name = method.getName();
+            if (name.equals("next")) {
+                if (Boolean.TRUE.equals(result)) {
+                    rows++;
+                } else {
+                    publish();
+                }
+            } else if (name.equals("close")) {
+                publish();
+            }
+            return result;
+        }
+
+        private void publish() {
+            if (!logged) {
+                logged = true;
+                log.sql(elapsed, sql, params, rows, 0, caller);
+            }
+        }
+    }
+
+    /**
+     * 调用方：栈上第一个业务代码的方法（跳过本类和 Spring 生成的代理类）
+     */
+    private static String caller() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith(APP_PACKAGE)
+                        && !f.getClassName().startsWith(SlowSqlDataSourceWrapper.class.getName())
+                        && !f.getClassName().contains("$$"))
+                .findFirst()
+                .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1) + "." + f.getMethodName())
+                .orElse(null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SlowSqlDataSourceWrapper.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.example.hospital_demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 请求线程模式检查
+ * 开启虚拟线程模式但运行在 JDK 21 以下时，Spring 会静默改用平台线程；这里让启动直接失败，
+ * 避免以为虚拟线程模式已生效
+ */
+@Component
+public class ThreadModeCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(ThreadModeCheck.class);
+
+    public ThreadModeCheck(@Value("${spring.threads.virtual.enabled:false}") boolean virtual) {
+        int feature = Runtime.version().feature();
+        if (virtual && feature < 21) {
+            throw new IllegalStateException("虚拟线程模式需要 JDK 21 及以上运行，当前为 JDK " + feature);
+        }
+        log.info("请求处理线程模式：{}", virtual ? "虚拟线程" : "平台线程");
+    }
+}
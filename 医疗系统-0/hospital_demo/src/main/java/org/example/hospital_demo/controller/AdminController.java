@@ -0,0 +1,226 @@
+package org.example.hospital_demo.controller;
+
+import org.example.hospital_demo.config.AdaptiveConcurrencyLimiter;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.service.AppointmentStatsRollup;
+import org.example.hospital_demo.service.ExpirySweeper;
+import org.example.hospital_demo.service.FlightRecorderService;
+import org.example.hospital_demo.service.MetricsRegistry;
+import org.example.hospital_demo.service.SlotGenerator;
+import org.example.hospital_demo.service.SlotEventHub;
+import org.example.hospital_demo.service.SlotReadCache;
+import org.example.hospital_demo.service.SlotService;
+import org.example.hospital_demo.service.WaitingRoom;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * 运维控制器
+ * 查看缓存等运行状态
+ */
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "*")
+public class AdminController {
+
+    @Autowired
+    private SlotReadCache slotCache;
+
+    @Autowired
+    private SlotEventHub slotEvents;
+
+    @Autowired
+    private SlotService slotService;
+
+    @Autowired
+    private WaitingRoom waitingRoom;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    @Autowired
+    private FlightRecorderService flightRecorder;
+
+    @Autowired
+    private SlotGenerator slotGenerator;
+
+    @Autowired
+    private ExpirySweeper expirySweeper;
+
+    @Autowired
+    private AppointmentStatsRollup statsRollup;
+
+    /**
+     * 号源查询缓存统计（命中、未命中、淘汰次数）
+     * GET /api/admin/slot-cache
+     */
+    @GetMapping("/slot-cache")
+    public Result<Map<String, Object>> getSlotCacheStats() {
+        return Result.success(slotCache.stats());
+    }
+
+    /**
+     * 清空号源查询缓存
+     * DELETE /api/admin/slot-cache
+     */
+    @DeleteMapping("/slot-cache")
+    public Result<Void> clearSlotCache() {
+        slotCache.clear();
+        return Result.success();
+    }
+
+    /**
+     * 号源推送连接统计
+     * GET /api/admin/slot-events
+     */
+    @GetMapping("/slot-events")
+    public Result<Map<String, Object>> getSlotEventStats() {
+        return Result.success(slotEvents.stats());
+    }
+
+    /**
+     * 号源一致性校验：已用数量是否超过总数、是否与有效挂号数一致
+     * GET /api/admin/consistency
+     */
+    @GetMapping("/consistency")
+    public Result<Map<String, Object>> checkConsistency() {
+        return slotService.checkConsistency();
+    }
+
+    /**
+     * 挂号等候室统计（当前放行速率、排队人数、放行/拒绝次数）
+     * GET /api/admin/waiting-room
+     */
+    @GetMapping("/waiting-room")
+    public Result<Map<String, Object>> getWaitingRoomStats() {
+        return Result.success(waitingRoom.stats());
+    }
+
+    /**
+     * 过载保护统计（当前并发上限、在途请求数、各优先级放行/拒绝次数）
+     * GET /api/admin/load-shedding
+     */
+    @GetMapping("/load-shedding")
+    public Result<Map<String, Object>> getLoadSheddingStats() {
+        return Result.success(concurrencyLimiter.stats());
+    }
+
+    /**
+     * 指标采集（Prometheus 文本格式）：接口耗时、挂号结果、号源争用、连接池、Hibernate 统计等
+     * GET /api/admin/metrics
+     */
+    @GetMapping(value = "/metrics", produces = "text/plain;version=0.0.4;charset=utf-8")
+    public String scrapeMetrics() {
+        return metrics.scrape();
+    }
+
+    /**
+     * 飞行记录状态
+     * GET /api/admin/jfr
+     */
+    @GetMapping("/jfr")
+    public Result<Map<String, Object>> getFlightRecordingStatus() {
+        return Result.success(flightRecorder.status());
+    }
+
+    /**
+     * 开始飞行记录，到时自动停止
+     * POST /api/admin/jfr/start?durationSeconds=60&settings=profile
+     */
+    @PostMapping("/jfr/start")
+    public Result<Map<String, Object>> startFlightRecording(@RequestParam(defaultValue = "60") long durationSeconds,
+                                                            @RequestParam(defaultValue = "default") String settings) {
+        return flightRecorder.start(durationSeconds, settings);
+    }
+
+    /**
+     * 提前停止飞行记录
+     * POST /api/admin/jfr/stop
+     */
+    @PostMapping("/jfr/stop")
+    public Result<Map<String, Object>> stopFlightRecording() {
+        return flightRecorder.stop();
+    }
+
+    /**
+     * 下载已停止的飞行记录文件（用 JDK Mission Control 或 jfr 命令打开）
+     * GET /api/admin/jfr/download
+     */
+    @GetMapping("/jfr/download")
+    public ResponseEntity<Resource> downloadFlightRecording() {
+        Path file = flightRecorder.recordedFile();
+        if (file == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(new FileSystemResource(file));
+    }
+
+    /**
+     * 上一次按排班生成号源的统计
+     * GET /api/admin/slot-generation
+     */
+    @GetMapping("/slot-generation")
+    public Result<Map<String, Object>> getSlotGenerationStats() {
+        return Result.success(slotGenerator.lastRun());
+    }
+
+    /**
+     * 立即按排班补齐今天起若干天内缺少的号源（默认为配置的窗口天数）
+     * POST /api/admin/slot-generation?days=30
+     */
+    @PostMapping("/slot-generation")
+    public Result<Map<String, Object>> generateSlots(@RequestParam(required = false) Integer days) {
+        return slotGenerator.generate(LocalDate.now(), days != null ? days : slotGenerator.getHorizonDays());
+    }
+
+    /**
+     * 过期清理的当前进度和上一次统计
+     * GET /api/admin/expiry-sweep
+     */
+    @GetMapping("/expiry-sweep")
+    public Result<Map<String, Object>> getExpirySweepStats() {
+        return Result.success(expirySweeper.stats());
+    }
+
+    /**
+     * 立即执行一次过期清理
+     * POST /api/admin/expiry-sweep
+     */
+    @PostMapping("/expiry-sweep")
+    public Result<Map<String, Object>> sweepExpired() {
+        return expirySweeper.sweep();
+    }
+
+    /**
+     * 统计汇总表状态（总行数、待合并的增量行数、上一次重建）
+     * GET /api/admin/stats-rollup
+     */
+    @GetMapping("/stats-rollup")
+    public Result<Map<String, Object>> getStatsRollup() {
+        return Result.success(statsRollup.stats());
+    }
+
+    /**
+     * 从在线挂号表和归档表重新计算统计汇总
+     * POST /api/admin/stats-rollup/rebuild
+     */
+    @PostMapping("/stats-rollup/rebuild")
+    public Result<Map<String, Object>> rebuildStatsRollup() {
+        return statsRollup.rebuild();
+    }
+}
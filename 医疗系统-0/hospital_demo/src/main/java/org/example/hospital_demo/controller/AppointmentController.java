@@ -1,13 +1,20 @@
 package org.example.hospital_demo.controller;
 
 import org.example.hospital_demo.dto.*;
+import org.example.hospital_demo.entity.Appointment;
 import org.example.hospital_demo.service.AppointmentService;
+import org.example.hospital_demo.service.BookingSequencer;
+import org.example.hospital_demo.service.WaitingRoom;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 挂号控制器（核心模块）
@@ -22,13 +29,63 @@ public class AppointmentController {
     @Autowired
     private AppointmentService appointmentService;
 
+    @Autowired
+    private BookingSequencer bookingSequencer;
+
+    @Autowired
+    private WaitingRoom waitingRoom;
+
     /**
      * 创建挂号（核心功能）
      * POST /api/appointments
+     * 等候室开启时，高峰期请求先排队：返回 202 和等候室票据，放行后携带请求头 X-Waiting-Room-Ticket 重新提交
+     * 排队挂号模式下，截止时间内未完成时返回 202 和票据
      */
     @PostMapping
-    public Result<AppointmentResponse> createAppointment(@RequestBody AppointmentRequest request) {
-        return appointmentService.createAppointment(request);
+    public Result<?> createAppointment(@RequestBody AppointmentRequest request,
+                                       @RequestHeader(value = "X-Waiting-Room-Ticket", required = false) String waitingRoomTicket) {
+        Result<WaitingRoomTicket> admission = waitingRoom.enter(request, waitingRoomTicket);
+        if (admission.getCode() != 200) {
+            return admission;
+        }
+        long start = System.nanoTime();
+        try {
+            if (bookingSequencer.isEnabled()) {
+                return bookingSequencer.submitBooking(request);
+            }
+            return appointmentService.createAppointment(request);
+        } finally {
+            waitingRoom.recordLatency(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 查询等候室票据（排队位置、预计等待时间、是否已放行）
+     * GET /api/appointments/waiting-room/{ticketId}
+     */
+    @GetMapping("/waiting-room/{ticketId}")
+    public Result<WaitingRoomTicket> getWaitingRoomTicket(@PathVariable String ticketId) {
+        return waitingRoom.getTicket(ticketId);
+    }
+
+    /**
+     * 批量挂号
+     * POST /api/appointments/batch
+     * 与单条挂号一样经过等候室，按其中的普通挂号条数占用名额；排队时返回 202 和票据
+     */
+    @PostMapping("/batch")
+    public Result<?> createAppointments(@RequestBody List<AppointmentRequest> requests,
+                                        @RequestHeader(value = "X-Waiting-Room-Ticket", required = false) String waitingRoomTicket) {
+        Result<WaitingRoomTicket> admission = waitingRoom.enterBatch(requests, waitingRoomTicket);
+        if (admission.getCode() != 200) {
+            return admission;
+        }
+        long start = System.nanoTime();
+        try {
+            return appointmentService.createAppointments(requests);
+        } finally {
+            waitingRoom.recordLatency(System.nanoTime() - start, requests == null ? 0 : requests.size());
+        }
     }
 
     /**
@@ -36,36 +93,86 @@ public class AppointmentController {
      * DELETE /api/appointments/{id}
      */
     @DeleteMapping("/{id}")
-    public Result<Void> cancelAppointment(@PathVariable Long id) {
+    public Result<?> cancelAppointment(@PathVariable Long id) {
+        if (bookingSequencer.isEnabled()) {
+            return bookingSequencer.submitCancel(id);
+        }
         return appointmentService.cancelAppointment(id);
     }
 
     /**
-     * 获取所有挂号记录
-     * GET /api/appointments
+     * 查询排队挂号票据的处理结果
+     * GET /api/appointments/tickets/{ticketId}
+     */
+    @GetMapping("/tickets/{ticketId}")
+    public Result<BookingTicket> getTicket(@PathVariable String ticketId) {
+        return bookingSequencer.getTicket(ticketId);
+    }
+
+    /**
+     * 获取所有挂号记录（游标分页，按创建时间倒序）
+     * GET /api/appointments?cursor=xxx&size=20
      */
     @GetMapping
-    public Result<List<AppointmentResponse>> getAllAppointments() {
-        return appointmentService.getAllAppointments();
+    public Result<CursorPage<AppointmentResponse>> getAllAppointments(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return appointmentService.getAllAppointments(cursor, size);
     }
 
+    /**
+     * 流式导出挂号记录（NDJSON，每行一条，内存占用与数据量无关）
+     * GET /api/appointments/stream?status=已预约
+     */
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAppointments(@RequestParam(required = false) String status) {
+        Appointment.AppointmentStatus appointmentStatus = null;
+        if (status != null && !status.isBlank()) {
+            try {
+                appointmentStatus = Appointment.AppointmentStatus.valueOf(status);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        Appointment.AppointmentStatus filter = appointmentStatus;
+        StreamingResponseBody body = out -> appointmentService.streamAppointments(filter, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson;charset=UTF-8"))
+                .body(body);
+    }
+
+    /**
+     * 挂号概况统计
+     * GET /api/appointments/summary
+     */
+    @GetMapping("/summary")
+    public Result<Map<String, Long>> getSummary() {
+        return appointmentService.getSummary();
+    }
 
     /**
-     * 根据状态筛选挂号记录
-     * GET /api/appointments/status/{status}
+     * 根据状态筛选挂号记录（游标分页）
+     * GET /api/appointments/status/{status}?cursor=xxx&size=20
      */
     @GetMapping("/status/{status}")
-    public Result<List<AppointmentResponse>> getAppointmentsByStatus(@PathVariable String status) {
-        return appointmentService.getAppointmentsByStatus(status);
+    public Result<CursorPage<AppointmentResponse>> getAppointmentsByStatus(
+            @PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return appointmentService.getAppointmentsByStatus(status, cursor, size);
     }
 
     /**
-     * 获取病人的挂号记录
-     * GET /api/appointments/patient/{patientId}
+     * 获取病人的挂号记录（游标分页，includeArchive=true 时包括已归档的历史挂号）
+     * GET /api/appointments/patient/{patientId}?cursor=xxx&size=20&includeArchive=true
      */
     @GetMapping("/patient/{patientId}")
-    public Result<List<AppointmentResponse>> getPatientAppointments(@PathVariable Long patientId) {
-        return appointmentService.getPatientAppointments(patientId);
+    public Result<CursorPage<AppointmentResponse>> getPatientAppointments(
+            @PathVariable Long patientId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean includeArchive) {
+        return appointmentService.getPatientAppointments(patientId, cursor, size, includeArchive);
     }
 
     /**
@@ -79,6 +186,17 @@ public class AppointmentController {
         return appointmentService.getDoctorQueue(doctorId, date);
     }
 
+    /**
+     * 叫号：弹出队首病人并标记为就诊中（不传日期时为今天）
+     * POST /api/appointments/queue/{doctorId}/next?date=2024-01-01
+     */
+    @PostMapping("/queue/{doctorId}/next")
+    public Result<AppointmentResponse> callNextPatient(
+            @PathVariable Long doctorId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return appointmentService.callNextPatient(doctorId, date != null ? date : LocalDate.now());
+    }
+
     /**
      * 完成就诊
      * PUT /api/appointments/{id}/complete
@@ -1,11 +1,15 @@
 package org.example.hospital_demo.controller;
 
 import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.dto.SlotQueryRequest;
 import org.example.hospital_demo.dto.SlotResponse;
+import org.example.hospital_demo.service.SlotEventHub;
 import org.example.hospital_demo.service.SlotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -22,6 +26,9 @@ public class SlotController {
     @Autowired
     private SlotService slotService;
 
+    @Autowired
+    private SlotEventHub slotEvents;
+
     /**
      * 获取医生某天的所有号源
      * GET /api/slots/doctor/{doctorId}?date=2024-01-01
@@ -43,4 +50,25 @@ public class SlotController {
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
         return slotService.getAvailableSlots(doctorId, date);
     }
+
+    /**
+     * 查找最早可预约号源（按科室或医生，日期范围默认一周）
+     * POST /api/slots/search
+     * {"departmentId": 1, "date": "2024-01-01", "endDate": "2024-01-07", "appointmentType": "普通"}
+     */
+    @PostMapping("/search")
+    public Result<List<SlotResponse>> searchEarliestSlots(@RequestBody SlotQueryRequest request) {
+        return slotService.searchEarliestSlots(request);
+    }
+
+    /**
+     * 订阅医生某天的号源和排队变化（Server-Sent Events）
+     * GET /api/slots/stream/{doctorId}?date=2024-01-01
+     */
+    @GetMapping(value = "/stream/{doctorId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(
+            @PathVariable Long doctorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return slotEvents.subscribe(doctorId, date);
+    }
 }
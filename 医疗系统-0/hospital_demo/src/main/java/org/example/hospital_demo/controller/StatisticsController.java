@@ -0,0 +1,39 @@
+package org.example.hospital_demo.controller;
+
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.service.StatisticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 统计控制器（图表数据）
+ */
+@RestController
+@RequestMapping("/api/statistics")
+@CrossOrigin(origins = "*")
+public class StatisticsController {
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    /**
+     * 最近若干天各科室挂号数量和挂号费（读取统计汇总表，包括已归档的挂号）
+     * GET /api/statistics/departments?days=30
+     */
+    @GetMapping("/departments")
+    public Result<List<Map<String, Object>>> countByDepartment(@RequestParam(defaultValue = "30") int days) {
+        return statisticsService.countByDepartment(days);
+    }
+
+    /**
+     * 最近若干天每日挂号数量和挂号费
+     * GET /api/statistics/trend?days=30
+     */
+    @GetMapping("/trend")
+    public Result<List<Map<String, Object>>> dailyTrend(@RequestParam(defaultValue = "30") int days) {
+        return statisticsService.dailyTrend(days);
+    }
+}
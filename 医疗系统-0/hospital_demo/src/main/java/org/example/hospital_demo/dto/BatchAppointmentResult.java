@@ -0,0 +1,20 @@
+package org.example.hospital_demo.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 批量挂号单项结果DTO
+ * 与请求列表一一对应，每一项独立返回成功或失败原因
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchAppointmentResult {
+    
+    private Integer index;                   // 对应请求列表中的下标
+    private Integer code;                    // 该项结果状态码
+    private String message;                  // 该项结果消息
+    private AppointmentResponse appointment; // 挂号成功时的挂号信息
+}
@@ -0,0 +1,21 @@
+package org.example.hospital_demo.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 挂号票据DTO
+ * 排队挂号模式下，请求未能在截止时间内完成时返回票据，客户端凭票据轮询结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingTicket {
+    
+    private String ticketId;
+    private String status;      // 排队中 / 已完成
+    private Integer code;       // 完成后的结果状态码
+    private String message;     // 完成后的结果消息
+    private AppointmentResponse appointment; // 挂号成功时的挂号信息
+}
@@ -0,0 +1,21 @@
+package org.example.hospital_demo.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页结果DTO
+ * 按 (创建时间, ID) 倒序的键集分页，nextCursor 为空表示没有更多数据
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    
+    private List<T> items;     // 当前页数据
+    private String nextCursor; // 下一页游标（原样传回即可）
+    private Boolean hasMore;   // 是否还有下一页
+}
@@ -0,0 +1,20 @@
+package org.example.hospital_demo.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 号源变化DTO
+ * 推送给订阅端的单个号源剩余数量
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotDelta {
+    
+    private Long slotId;
+    private String timeSlot;
+    private Integer availableSlots;          // 剩余普通号
+    private Integer availableEmergencySlots; // 剩余急诊号（含普通号）
+}
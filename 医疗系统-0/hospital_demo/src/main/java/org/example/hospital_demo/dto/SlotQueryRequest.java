@@ -21,7 +21,11 @@ public class SlotQueryRequest {
     private Long doctorId; // 医生ID（可选）
     
     @NotNull(message = "查询日期不能为空")
-    private LocalDate date; // 查询日期
+    private LocalDate date; // 查询日期（按范围查找时为开始日期）
+    
+    private LocalDate endDate; // 结束日期（可选，查找最早号源时默认查一周）
+    
+    private Integer limit; // 最多返回条数（可选）
     
     private String appointmentType = "普通"; // 挂号类型：普通/急诊
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package org.example.hospital_demo.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 号源/排队变化推送消息
+ * 一个推送周期内同一医生同一天的所有变化合并为一条消息
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotUpdateMessage {
+    
+    private Long doctorId;
+    private LocalDate date;
+    private List<SlotDelta> slots; // 有变化的号源（无变化时为空）
+    private Integer waiting;       // 候诊人数（排队无变化时为空）
+}
@@ -0,0 +1,20 @@
+package org.example.hospital_demo.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 挂号等候室票据DTO
+ * 挂号高峰时请求先进入等候室排队，客户端凭票据查询位置，放行后携带票据重新提交挂号
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitingRoomTicket {
+    
+    private String ticketId;
+    private String status;              // 排队中 / 已放行
+    private Integer position;           // 前方排队人数（含自己），放行后为 0
+    private Integer estimatedWaitSeconds; // 按当前放行速率估算的等待秒数
+}
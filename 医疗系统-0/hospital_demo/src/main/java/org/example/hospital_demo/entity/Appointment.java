@@ -17,14 +17,27 @@ import java.time.LocalTime;
  */
 @Entity
 @Table(name = "appointment", 
-       uniqueConstraints = @UniqueConstraint(columnNames = {"patient_id", "doctor_id", "appointment_date"}))
+       uniqueConstraints = {
+           @UniqueConstraint(columnNames = {"patient_id", "doctor_id", "appointment_date"}),
+           @UniqueConstraint(columnNames = {"doctor_id", "appointment_date", "queue_number"})
+       },
+       indexes = {
+           // 键集分页索引：(created_time, id) 倒序翻页
+           @Index(name = "idx_appointment_created", columnList = "created_time, id"),
+           @Index(name = "idx_appointment_patient_created", columnList = "patient_id, created_time, id"),
+           @Index(name = "idx_appointment_status_created", columnList = "status, created_time, id"),
+           // 过期清理：按状态和就诊日期找出过期挂号
+           @Index(name = "idx_appointment_status_date", columnList = "status, appointment_date, id")
+       })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Appointment {
     
+    // 使用序列主键（按 50 个一段预取），IDENTITY 会禁用 Hibernate 的批量插入
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "appointment_seq")
+    @SequenceGenerator(name = "appointment_seq", sequenceName = "appointment_seq", allocationSize = 50)
     private Long id;
     
     // 病人信息
@@ -53,6 +66,10 @@ public class Appointment {
     @Column(name = "appointment_time", nullable = false)
     private LocalTime appointmentTime;
     
+    // 号源时间段（如 08:00-08:15），取消时按它归还号源；号源时长由排班模板决定，不能由预约时间推算
+    @Column(name = "time_slot", length = 20)
+    private String timeSlot;
+    
     // 挂号类型：普通挂号 vs 急诊挂号
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
@@ -67,7 +84,7 @@ public class Appointment {
     @Column(nullable = false)
     private AppointmentStatus status = AppointmentStatus.已预约;
     
-    // 排队号码
+    // 排队号码（按医生+日期编号）
     @Column(name = "queue_number")
     private Integer queueNumber;
     
@@ -108,6 +125,7 @@ public class Appointment {
      */
     public enum AppointmentStatus {
         已预约("已成功预约，等待就诊"),
+        就诊中("已叫号，正在就诊"),
         已就诊("已完成就诊"),
         已取消("用户主动取消挂号"),
         已过期("超时未就诊，自动过期");
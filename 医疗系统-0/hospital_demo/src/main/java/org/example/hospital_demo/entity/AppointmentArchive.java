@@ -0,0 +1,106 @@
+package org.example.hospital_demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * 历史挂号实体类（冷数据）
+ * 与 appointment 表结构相同，保留原挂号ID；已结束且超过归档天数的挂号由清理任务分批移入，
+ * 移入后不再修改。只保留历史查询和统计需要的索引，不带挂号唯一约束。
+ */
+@Entity
+@Table(name = "appointment_archive",
+       indexes = {
+           @Index(name = "idx_archive_created", columnList = "created_time, id"),
+           @Index(name = "idx_archive_patient_created", columnList = "patient_id, created_time, id"),
+           @Index(name = "idx_archive_status_created", columnList = "status, created_time, id")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentArchive {
+
+    // 沿用原挂号ID，不另行生成
+    @Id
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "patient_id", nullable = false)
+    private Patient patient;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_id", nullable = false)
+    private Doctor doctor;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "department_id", nullable = false)
+    private Department department;
+
+    @Column(name = "appointment_date", nullable = false)
+    private LocalDate appointmentDate;
+
+    @Column(name = "appointment_time", nullable = false)
+    private LocalTime appointmentTime;
+
+    @Column(name = "time_slot", length = 20)
+    private String timeSlot;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Appointment.AppointmentType type;
+
+    @Column(nullable = false)
+    private Integer priority;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Appointment.AppointmentStatus status;
+
+    @Column(name = "queue_number")
+    private Integer queueNumber;
+
+    @Column(columnDefinition = "TEXT")
+    private String symptoms;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal fee;
+
+    @Column(name = "created_time")
+    private LocalDateTime createdTime;
+
+    @Column(name = "updated_time")
+    private LocalDateTime updatedTime;
+
+    @Column(name = "archived_time")
+    private LocalDateTime archivedTime;
+
+    /**
+     * 转换为（不受管理的）挂号实体，与在线挂号共用响应转换等逻辑
+     */
+    public Appointment toAppointment() {
+        Appointment appointment = new Appointment();
+        appointment.setId(id);
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setDepartment(department);
+        appointment.setAppointmentDate(appointmentDate);
+        appointment.setAppointmentTime(appointmentTime);
+        appointment.setTimeSlot(timeSlot);
+        appointment.setType(type);
+        appointment.setPriority(priority);
+        appointment.setStatus(status);
+        appointment.setQueueNumber(queueNumber);
+        appointment.setSymptoms(symptoms);
+        appointment.setFee(fee);
+        appointment.setCreatedTime(createdTime);
+        appointment.setUpdatedTime(updatedTime);
+        return appointment;
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.hospital_demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 挂号统计汇总实体类（按 创建日期 × 科室 × 挂号类型 × 挂号状态 汇总挂号数和挂号费）
+ * 挂号、取消、叫号、完成就诊、过期在各自的事务中插入一条增量行（pending = true），不更新共享的汇总行，
+ * 并发挂号之间没有行锁争用；后台任务定期把增量合并进汇总行（pending = false）。
+ * 读取时对同一维度的所有行求和，因此合并前后、合并是否及时都不影响结果。
+ */
+@Entity
+@Table(name = "appointment_daily_stat",
+       indexes = {
+           @Index(name = "idx_daily_stat_date", columnList = "stat_date, department_id"),
+           @Index(name = "idx_daily_stat_pending", columnList = "pending, id")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentDailyStat {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "appointment_daily_stat_seq")
+    @SequenceGenerator(name = "appointment_daily_stat_seq", sequenceName = "appointment_daily_stat_seq", allocationSize = 50)
+    private Long id;
+
+    // 挂号创建日期
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(name = "department_id", nullable = false)
+    private Long departmentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Appointment.AppointmentType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Appointment.AppointmentStatus status;
+
+    // 挂号数（增量行可以为负）
+    @Column(name = "appointment_count", nullable = false)
+    private Long appointmentCount = 0L;
+
+    // 挂号费合计
+    @Column(name = "fee_sum", nullable = false, precision = 14, scale = 2)
+    private BigDecimal feeSum = BigDecimal.ZERO;
+
+    // 是否为尚未合并的增量行
+    @Column(nullable = false)
+    private Boolean pending = true;
+}
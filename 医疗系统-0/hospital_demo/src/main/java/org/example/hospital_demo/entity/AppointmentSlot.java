@@ -15,14 +15,18 @@ import java.time.LocalDate;
  */
 @Entity
 @Table(name = "appointment_slot",
-       uniqueConstraints = @UniqueConstraint(columnNames = {"doctor_id", "date", "time_slot"}))
+       uniqueConstraints = @UniqueConstraint(columnNames = {"doctor_id", "date", "time_slot"}),
+       // 按日期范围预热和过期清理
+       indexes = @Index(name = "idx_slot_date", columnList = "date, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class AppointmentSlot {
     
+    // 号源ID（序列主键，理由见 Appointment.id）
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "appointment_slot_seq")
+    @SequenceGenerator(name = "appointment_slot_seq", sequenceName = "appointment_slot_seq", allocationSize = 50)
     private Long id;
     
     // 关联医生
@@ -0,0 +1,37 @@
+package org.example.hospital_demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * 排队号序列实体类
+ * 每个医生每天一行，记录下一个尚未分配的排队号（hi 值）；
+ * 各实例按号段（hi/lo）向该表申请排队号，号段内的分配无需访问数据库；
+ * 该表只由 QueueNumberAllocator 通过独立连接池以 JDBC 访问，实体仅用于建表
+ */
+@Entity
+@Table(name = "queue_sequence",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"doctor_id", "seq_date"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueueSequence {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "doctor_id", nullable = false)
+    private Long doctorId;
+    
+    @Column(name = "seq_date", nullable = false)
+    private LocalDate seqDate;
+    
+    // 下一个尚未分配的排队号
+    @Column(name = "next_value", nullable = false)
+    private Integer nextValue = 1;
+}
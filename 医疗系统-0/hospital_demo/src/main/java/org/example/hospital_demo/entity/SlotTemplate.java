@@ -0,0 +1,57 @@
+package org.example.hospital_demo.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 号源模板实体类
+ * 每个医生一行，规定按排班生成号源时每个时间段的长度、号数和急诊预留数；
+ * 没有模板的医生使用配置中的默认值
+ */
+@Entity
+@Table(name = "slot_template",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"doctor_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotTemplate {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @NotNull(message = "医生信息不能为空")
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_id", nullable = false)
+    private Doctor doctor;
+    
+    // 每个时间段的长度（分钟）
+    @Min(value = 5, message = "时间段长度不能小于 5 分钟")
+    @Column(name = "slot_minutes", nullable = false)
+    private Integer slotMinutes = 30;
+    
+    // 每个时间段的号数
+    @Min(value = 1, message = "号数至少为 1")
+    @Column(name = "total_slots", nullable = false)
+    private Integer totalSlots = 3;
+    
+    // 每个时间段的急诊预留数
+    @Min(value = 0, message = "急诊预留数不能为负")
+    @Column(name = "emergency_reserved", nullable = false)
+    private Integer emergencyReserved = 1;
+    
+    @Column(name = "updated_time")
+    private LocalDateTime updatedTime;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedTime = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.hospital_demo.repository;
+
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.entity.AppointmentArchive;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 历史挂号数据访问层
+ * 查询与 AppointmentRepository 中对应的查询保持相同的条件和排序，便于与在线数据合并
+ */
+@Repository
+public interface AppointmentArchiveRepository extends JpaRepository<AppointmentArchive, Long> {
+
+    /**
+     * 归档：把一批已结束且就诊日期早于 before 的挂号整行复制到归档表（集合插入，不加载实体）
+     */
+    @Modifying
+    @Query("INSERT INTO AppointmentArchive (id, patient, doctor, department, appointmentDate, appointmentTime, timeSlot, " +
+           "type, priority, status, queueNumber, symptoms, fee, createdTime, updatedTime, archivedTime) " +
+           "SELECT a.id, a.patient, a.doctor, a.department, a.appointmentDate, a.appointmentTime, a.timeSlot, " +
+           "a.type, a.priority, a.status, a.queueNumber, a.symptoms, a.fee, a.createdTime, a.updatedTime, " +
+           "CURRENT_TIMESTAMP FROM Appointment a " +
+           "WHERE a.id IN :ids AND a.status IN :statuses AND a.appointmentDate < :before")
+    int copyFromAppointments(@Param("ids") Collection<Long> ids,
+                             @Param("statuses") Collection<Appointment.AppointmentStatus> statuses,
+                             @Param("before") LocalDate before);
+
+    /**
+     * 键集分页：病人的历史挂号，条件与 AppointmentRepository.findPageByPatient 相同
+     */
+    @EntityGraph(attributePaths = {"patient", "doctor", "department"})
+    @Query("SELECT a FROM AppointmentArchive a WHERE a.patient.id = :patientId AND a.createdTime <= :createdTime " +
+           "AND (a.createdTime < :createdTime OR a.id < :id) ORDER BY a.createdTime DESC, a.id DESC")
+    List<AppointmentArchive> findPageByPatient(@Param("patientId") Long patientId,
+                                               @Param("createdTime") LocalDateTime createdTime,
+                                               @Param("id") Long id,
+                                               Limit limit);
+
+    /**
+     * 统计汇总：按 (创建日期, 科室, 类型, 状态) 汇总挂号数和挂号费，patientId/doctorId 为空时不筛选
+     * 用于重建汇总表，以及删除病人、医生前扣除其挂号
+     */
+    @Query("SELECT COALESCE(CAST(a.createdTime AS LocalDate), a.appointmentDate), a.department.id, a.type, a.status, " +
+           "COUNT(a), COALESCE(SUM(a.fee), 0) FROM AppointmentArchive a " +
+           "WHERE (:patientId IS NULL OR a.patient.id = :patientId) AND (:doctorId IS NULL OR a.doctor.id = :doctorId) " +
+           "GROUP BY COALESCE(CAST(a.createdTime AS LocalDate), a.appointmentDate), a.department.id, a.type, a.status")
+    List<Object[]> aggregateForStats(@Param("patientId") Long patientId, @Param("doctorId") Long doctorId);
+
+    long countByStatus(Appointment.AppointmentStatus status);
+
+    @Modifying
+    @Query("DELETE FROM AppointmentArchive a WHERE a.patient.id = :patientId")
+    int deleteByPatientId(@Param("patientId") Long patientId);
+
+    @Modifying
+    @Query("DELETE FROM AppointmentArchive a WHERE a.doctor.id = :doctorId")
+    int deleteByDoctorId(@Param("doctorId") Long doctorId);
+}
@@ -0,0 +1,58 @@
+package org.example.hospital_demo.repository;
+
+import org.example.hospital_demo.entity.AppointmentDailyStat;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 挂号统计汇总数据访问层
+ * 读取查询都对同一维度的全部行（汇总行和未合并的增量行）求和
+ */
+@Repository
+public interface AppointmentDailyStatRepository extends JpaRepository<AppointmentDailyStat, Long> {
+
+    /**
+     * 按科室、类型、状态汇总 from 之后（含）的挂号数和挂号费
+     */
+    @Query("SELECT s.departmentId, s.type, s.status, SUM(s.appointmentCount), SUM(s.feeSum) " +
+           "FROM AppointmentDailyStat s WHERE s.statDate >= :from " +
+           "GROUP BY s.departmentId, s.type, s.status")
+    List<Object[]> sumByDepartment(@Param("from") LocalDate from);
+
+    /**
+     * 按日期汇总 from 之后（含）的挂号数和挂号费
+     */
+    @Query("SELECT s.statDate, SUM(s.appointmentCount), SUM(s.feeSum) " +
+           "FROM AppointmentDailyStat s WHERE s.statDate >= :from " +
+           "GROUP BY s.statDate ORDER BY s.statDate")
+    List<Object[]> sumByDate(@Param("from") LocalDate from);
+
+    /**
+     * 合并：按ID顺序取一批未合并的增量行
+     */
+    @Query("SELECT s FROM AppointmentDailyStat s WHERE s.pending = true ORDER BY s.id")
+    List<AppointmentDailyStat> findPending(Limit limit);
+
+    /**
+     * 合并：查询一组日期和科室范围内已有的汇总行（调用方再按完整维度匹配）
+     */
+    @Query("SELECT s FROM AppointmentDailyStat s WHERE s.pending = false " +
+           "AND s.statDate IN :dates AND s.departmentId IN :departmentIds")
+    List<AppointmentDailyStat> findSummaries(@Param("dates") Collection<LocalDate> dates,
+                                             @Param("departmentIds") Collection<Long> departmentIds);
+
+    long countByPendingTrue();
+
+    /**
+     * 重建：当前可见的全部行ID（汇总行和增量行）
+     */
+    @Query("SELECT s.id FROM AppointmentDailyStat s")
+    List<Long> findAllIds();
+}
@@ -1,19 +1,28 @@
 package org.example.hospital_demo.repository;
 
 import org.example.hospital_demo.entity.Appointment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * 挂号记录数据访问层
  * 提供挂号相关的复杂查询和业务操作
+ * 返回列表的查询都通过实体图一次取出病人、医生、科室，避免转换响应时逐行懒加载（N+1）
  */
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
@@ -21,77 +30,167 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     /**
      * 根据病人ID查询挂号记录
      */
+    @EntityGraph(attributePaths = {"patient", "doctor", "department"})
     List<Appointment> findByPatientIdOrderByCreatedTimeDesc(Long patientId);
     
     /**
      * 根据医生ID和日期查询挂号记录
      */
+    @EntityGraph(attributePaths = {"patient", "doctor", "department"})
     List<Appointment> findByDoctorIdAndAppointmentDateOrderByAppointmentTime(Long doctorId, LocalDate date);
     
     /**
      * 根据科室ID查询挂号记录
      */
+    @EntityGraph(attributePaths = {"patient", "doctor", "department"})
     List<Appointment> findByDepartmentIdOrderByCreatedTimeDesc(Long departmentId);
     
     /**
      * 根据挂号状态查询
      */
+    @EntityGraph(attributePaths = {"patient", "doctor", "department"})
     List<Appointment> findByStatusOrderByCreatedTimeDesc(Appointment.AppointmentStatus status);
     
     /**
      * 根据挂号类型查询
      */
+    @EntityGraph(attributePaths = {"patient", "doctor", "department"})
     List<Appointment> findByTypeOrderByPriorityDescCreatedTimeDesc(Appointment.AppointmentType type);
     
     /**
      * 检查是否存在重复挂号（同一病人同一医生同一天）
+     * 命中 (patient_id, doctor_id, appointment_date) 唯一索引，代价与病人历史挂号数量无关
      */
     @Query("SELECT COUNT(a) > 0 FROM Appointment a WHERE a.patient.id = :patientId " +
-           "AND a.doctor.id = :doctorId AND a.appointmentDate = :date AND a.status = 'SCHEDULED'")
+           "AND a.doctor.id = :doctorId AND a.appointmentDate = :date AND a.status = :status")
     boolean existsDuplicateAppointment(@Param("patientId") Long patientId, 
                                      @Param("doctorId") Long doctorId, 
-                                     @Param("date") LocalDate date);
+                                     @Param("date") LocalDate date,
+                                     @Param("status") Appointment.AppointmentStatus status);
+    
+    /**
+     * 批量查询病人在指定日期已有的挂号（病人ID、医生ID、日期、状态），用于批量挂号的重复检查
+     * 唯一约束 (病人, 医生, 日期) 不区分状态，已取消、已就诊的挂号同样占用该组合
+     */
+    @Query("SELECT a.patient.id, a.doctor.id, a.appointmentDate, a.status FROM Appointment a " +
+           "WHERE a.patient.id IN :patientIds AND a.appointmentDate IN :dates")
+    List<Object[]> findExistingKeys(@Param("patientIds") Collection<Long> patientIds,
+                                    @Param("dates") Collection<LocalDate> dates);
     
     /**
      * 查询指定医生指定日期的挂号数量
      */
     @Query("SELECT COUNT(a) FROM Appointment a WHERE a.doctor.id = :doctorId " +
-           "AND a.appointmentDate = :date AND a.status IN ('SCHEDULED', 'COMPLETED')")
+           "AND a.appointmentDate = :date AND a.status IN ('已预约', '已就诊')")
     Long countByDoctorAndDate(@Param("doctorId") Long doctorId, @Param("date") LocalDate date);
     
     /**
      * 查询急诊挂号列表（按优先级排序）
      */
-    @Query("SELECT a FROM Appointment a WHERE a.type = 'EMERGENCY' AND a.status = 'SCHEDULED' " +
+    @EntityGraph(attributePaths = {"patient", "doctor", "department"})
+    @Query("SELECT a FROM Appointment a WHERE a.type = '急诊' AND a.status = '已预约' " +
            "ORDER BY a.priority DESC, a.createdTime ASC")
     List<Appointment> findEmergencyAppointments();
     
     /**
      * 查询指定医生的排队列表（按优先级和时间排序）
      */
+    @EntityGraph(attributePaths = {"patient", "doctor", "department"})
     @Query("SELECT a FROM Appointment a WHERE a.doctor.id = :doctorId AND a.appointmentDate = :date " +
-           "AND a.status = 'SCHEDULED' ORDER BY a.priority DESC, a.appointmentTime ASC")
-    List<Appointment> findQueueByDoctorAndDate(@Param("doctorId") Long doctorId, @Param("date") LocalDate date);
+           "AND a.status = :status ORDER BY a.priority DESC, a.appointmentTime ASC")
+    List<Appointment> findQueueByDoctorAndDate(@Param("doctorId") Long doctorId, @Param("date") LocalDate date,
+                                               @Param("status") Appointment.AppointmentStatus status);
+    
+    /**
+     * 条件更新挂号状态：只有当前状态为 expected 时才更新，返回更新行数
+     */
+    @Modifying
+    @Query("UPDATE Appointment a SET a.status = :target, a.updatedTime = CURRENT_TIMESTAMP " +
+           "WHERE a.id = :id AND a.status = :expected")
+    int updateStatus(@Param("id") Long id,
+                     @Param("expected") Appointment.AppointmentStatus expected,
+                     @Param("target") Appointment.AppointmentStatus target);
+    
+    /**
+     * 按 (医生, 日期, 号源时间段, 预约时间) 统计仍占用号源的挂号数（排除已释放号源的状态，如已取消）
+     * 早期挂号没有记录号源时间段，由调用方按预约时间推算
+     */
+    @Query("SELECT a.doctor.id, a.appointmentDate, a.timeSlot, a.appointmentTime, COUNT(a) FROM Appointment a " +
+           "WHERE a.status <> :released GROUP BY a.doctor.id, a.appointmentDate, a.timeSlot, a.appointmentTime")
+    List<Object[]> countSlotHolders(@Param("released") Appointment.AppointmentStatus released);
+    
+    /**
+     * 过期清理：取游标 afterId 之后一批就诊日期已过、状态仍为 status 的挂号ID（按ID升序）
+     * 走 (status, appointment_date, id) 索引，每批只读ID，不加载实体
+     */
+    @Query("SELECT a.id FROM Appointment a WHERE a.status = :status AND a.appointmentDate < :before " +
+           "AND a.id > :afterId ORDER BY a.id")
+    List<Long> findExpiredIds(@Param("status") Appointment.AppointmentStatus status,
+                              @Param("before") LocalDate before,
+                              @Param("afterId") Long afterId,
+                              Limit limit);
+    
+    /**
+     * 过期清理：把一批挂号从 expected 状态改为 target，仍要求就诊日期已过（期间被改期或改状态的跳过）
+     */
+    @Modifying
+    @Query("UPDATE Appointment a SET a.status = :target, a.updatedTime = CURRENT_TIMESTAMP " +
+           "WHERE a.id IN :ids AND a.status = :expected AND a.appointmentDate < :before")
+    int updateStatusBatch(@Param("ids") Collection<Long> ids,
+                          @Param("expected") Appointment.AppointmentStatus expected,
+                          @Param("target") Appointment.AppointmentStatus target,
+                          @Param("before") LocalDate before);
+    
+    /**
+     * 归档：取游标 afterId 之后一批可归档（状态在 statuses 中、就诊日期早于 before）的挂号ID
+     */
+    @Query("SELECT a.id FROM Appointment a WHERE a.status IN :statuses AND a.appointmentDate < :before " +
+           "AND a.id > :afterId ORDER BY a.id")
+    List<Long> findArchivableIds(@Param("statuses") Collection<Appointment.AppointmentStatus> statuses,
+                                 @Param("before") LocalDate before,
+                                 @Param("afterId") Long afterId,
+                                 Limit limit);
+    
+    /**
+     * 归档：删除一批已复制到归档表的挂号
+     */
+    @Modifying
+    @Query("DELETE FROM Appointment a WHERE a.id IN :ids " +
+           "AND EXISTS (SELECT 1 FROM AppointmentArchive r WHERE r.id = a.id)")
+    int deleteArchived(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * 统计汇总：按 (创建日期, 科室, 类型, 状态) 汇总挂号数和挂号费，patientId/doctorId 为空时不筛选
+     * 用于重建汇总表，以及删除病人、医生前扣除其挂号
+     */
+    @Query("SELECT COALESCE(CAST(a.createdTime AS LocalDate), a.appointmentDate), a.department.id, a.type, a.status, " +
+           "COUNT(a), COALESCE(SUM(a.fee), 0) FROM Appointment a " +
+           "WHERE (:patientId IS NULL OR a.patient.id = :patientId) AND (:doctorId IS NULL OR a.doctor.id = :doctorId) " +
+           "GROUP BY COALESCE(CAST(a.createdTime AS LocalDate), a.appointmentDate), a.department.id, a.type, a.status")
+    List<Object[]> aggregateForStats(@Param("patientId") Long patientId, @Param("doctorId") Long doctorId);
     
     /**
-     * 查询过期的挂号记录（用于自动清理）
+     * 统计汇总：一批挂号中当前状态为 status 的，按 (创建日期, 科室, 类型) 汇总挂号数和挂号费（批量改状态后记录增量）
      */
-    @Query("SELECT a FROM Appointment a WHERE a.status = 'SCHEDULED' " +
-           "AND a.appointmentDate < :currentDate")
-    List<Appointment> findExpiredAppointments(@Param("currentDate") LocalDate currentDate);
+    @Query("SELECT COALESCE(CAST(a.createdTime AS LocalDate), a.appointmentDate), a.department.id, a.type, " +
+           "COUNT(a), COALESCE(SUM(a.fee), 0) FROM Appointment a WHERE a.id IN :ids AND a.status = :status " +
+           "GROUP BY COALESCE(CAST(a.createdTime AS LocalDate), a.appointmentDate), a.department.id, a.type")
+    List<Object[]> aggregateByIds(@Param("ids") Collection<Long> ids,
+                                  @Param("status") Appointment.AppointmentStatus status);
     
     /**
-     * 统计各科室挂号数量（用于图表展示）
+     * 统计各科室挂号数量（扫描挂号表，图表展示请读取统计汇总表）
      */
-    @Query("SELECT d.name, COUNT(a) FROM Appointment a JOIN a.department d " +
+    @Query("SELECT d.id, d.name, COUNT(a) FROM Appointment a JOIN a.department d " +
            "WHERE a.createdTime >= :startTime GROUP BY d.id, d.name")
     List<Object[]> countAppointmentsByDepartment(@Param("startTime") LocalDateTime startTime);
     
     /**
-     * 统计每日挂号趋势（最近30天）
+     * 统计每日挂号趋势（扫描挂号表，图表展示请读取统计汇总表）
      */
-    @Query("SELECT DATE(a.createdTime), COUNT(a) FROM Appointment a " +
-           "WHERE a.createdTime >= :startTime GROUP BY DATE(a.createdTime) ORDER BY DATE(a.createdTime)")
+    @Query("SELECT CAST(a.createdTime AS LocalDate), COUNT(a) FROM Appointment a " +
+           "WHERE a.createdTime >= :startTime " +
+           "GROUP BY CAST(a.createdTime AS LocalDate) ORDER BY CAST(a.createdTime AS LocalDate)")
     List<Object[]> getDailyAppointmentTrend(@Param("startTime") LocalDateTime startTime);
     
     /**
@@ -100,7 +199,71 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     Optional<Appointment> findFirstByPatientIdOrderByCreatedTimeDesc(Long patientId);
     
     /**
-     * 根据排队号码查询挂号记录
+     * 键集分页：查询游标 (createdTime, id) 之后的一页挂号记录（按创建时间、ID 倒序）
+     * 第一个条件让数据库走 (created_time, id) 索引做范围扫描，不需要 OFFSET
+     */
+    @EntityGraph(attributePaths = {"patient", "doctor", "department"})
+    @Query("SELECT a FROM Appointment a WHERE a.createdTime <= :createdTime " +
+           "AND (a.createdTime < :createdTime OR a.id < :id) ORDER BY a.createdTime DESC, a.id DESC")
+    List<Appointment> findPage(@Param("createdTime") LocalDateTime createdTime, 
+                               @Param("id") Long id, 
+                               Limit limit);
+    
+    /**
+     * 键集分页：按状态筛选
+     */
+    @EntityGraph(attributePaths = {"patient", "doctor", "department"})
+    @Query("SELECT a FROM Appointment a WHERE a.status = :status AND a.createdTime <= :createdTime " +
+           "AND (a.createdTime < :createdTime OR a.id < :id) ORDER BY a.createdTime DESC, a.id DESC")
+    List<Appointment> findPageByStatus(@Param("status") Appointment.AppointmentStatus status,
+                                       @Param("createdTime") LocalDateTime createdTime, 
+                                       @Param("id") Long id, 
+                                       Limit limit);
+    
+    /**
+     * 键集分页：病人的挂号记录
+     */
+    @EntityGraph(attributePaths = {"patient", "doctor", "department"})
+    @Query("SELECT a FROM Appointment a WHERE a.patient.id = :patientId AND a.createdTime <= :createdTime " +
+           "AND (a.createdTime < :createdTime OR a.id < :id) ORDER BY a.createdTime DESC, a.id DESC")
+    List<Appointment> findPageByPatient(@Param("patientId") Long patientId,
+                                        @Param("createdTime") LocalDateTime createdTime, 
+                                        @Param("id") Long id, 
+                                        Limit limit);
+    
+    /**
+     * 流式读取全部挂号记录（status 为空时不筛选），边读边输出，需在只读事务中消费并关闭
+     */
+    @EntityGraph(attributePaths = {"patient", "doctor", "department"})
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT a FROM Appointment a WHERE (:status IS NULL OR a.status = :status) " +
+           "ORDER BY a.createdTime DESC, a.id DESC")
+    Stream<Appointment> streamAll(@Param("status") Appointment.AppointmentStatus status);
+    
+    /**
+     * 按状态统计挂号数量
+     */
+    long countByStatus(Appointment.AppointmentStatus status);
+    
+    /**
+     * 统计指定就诊日期的挂号数量
+     */
+    long countByAppointmentDate(LocalDate appointmentDate);
+    
+    /**
+     * 统计医生某天指定状态的挂号数量
+     */
+    long countByDoctorIdAndAppointmentDateAndStatus(Long doctorId, LocalDate appointmentDate,
+                                                    Appointment.AppointmentStatus status);
+    
+    /**
+     * 只查询挂号记录所属的医生ID（挂号排序器按医生分区时使用）
+     */
+    @Query("SELECT a.doctor.id FROM Appointment a WHERE a.id = :id")
+    Optional<Long> findDoctorIdById(@Param("id") Long id);
+    
+    /**
+     * 根据排队号码查询挂号记录（排队号只在同一医生同一天内唯一）
      */
-    Optional<Appointment> findByQueueNumber(Integer queueNumber);
+    Optional<Appointment> findByDoctorIdAndAppointmentDateAndQueueNumber(Long doctorId, LocalDate date, Integer queueNumber);
 }
\ No newline at end of file
@@ -1,18 +1,23 @@
 package org.example.hospital_demo.repository;
 
 import org.example.hospital_demo.entity.AppointmentSlot;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * 号源管理数据访问层
  * 提供号源的动态管理和查询功能
+ * 返回列表的查询通过实体图一次取出医生及其科室，避免转换响应时逐行懒加载（N+1）
  */
 @Repository
 public interface AppointmentSlotRepository extends JpaRepository<AppointmentSlot, Long> {
@@ -20,6 +25,7 @@ public interface AppointmentSlotRepository extends JpaRepository<AppointmentSlot
     /**
      * 根据医生ID和日期查询号源
      */
+    @EntityGraph(attributePaths = {"doctor", "doctor.department"})
     List<AppointmentSlot> findByDoctorIdAndDateOrderByTimeSlot(Long doctorId, LocalDate date);
     
     /**
@@ -28,13 +34,15 @@ public interface AppointmentSlotRepository extends JpaRepository<AppointmentSlot
     Optional<AppointmentSlot> findByDoctorIdAndDateAndTimeSlot(Long doctorId, LocalDate date, String timeSlot);
     
     /**
-     * 查询指定日期范围内的号源
+     * 查询指定日期范围内的号源（连同医生、科室一次取出，用于号源库存预热）
      */
+    @EntityGraph(attributePaths = {"doctor", "doctor.department"})
     List<AppointmentSlot> findByDateBetweenOrderByDateAscTimeSlot(LocalDate startDate, LocalDate endDate);
     
     /**
      * 查询可用的号源（普通挂号）
      */
+    @EntityGraph(attributePaths = {"doctor", "doctor.department"})
     @Query("SELECT s FROM AppointmentSlot s WHERE s.doctor.id = :doctorId AND s.date = :date " +
            "AND s.status = '可用' AND (s.totalSlots - s.usedSlots - s.emergencyReserved) > 0 " +
            "ORDER BY s.timeSlot")
@@ -43,6 +51,7 @@ public interface AppointmentSlotRepository extends JpaRepository<AppointmentSlot
     /**
      * 查询可用的急诊号源
      */
+    @EntityGraph(attributePaths = {"doctor", "doctor.department"})
     @Query("SELECT s FROM AppointmentSlot s WHERE s.doctor.id = :doctorId AND s.date = :date " +
            "AND s.status = '可用' AND (s.totalSlots - s.usedSlots) > 0 " +
            "ORDER BY s.timeSlot")
@@ -51,6 +60,7 @@ public interface AppointmentSlotRepository extends JpaRepository<AppointmentSlot
     /**
      * 查询指定科室在指定日期的所有可用号源
      */
+    @EntityGraph(attributePaths = {"doctor", "doctor.department"})
     @Query("SELECT s FROM AppointmentSlot s WHERE s.doctor.department.id = :departmentId " +
            "AND s.date = :date AND s.status = '可用' " +
            "AND (s.totalSlots - s.usedSlots - s.emergencyReserved) > 0 " +
@@ -73,13 +83,83 @@ public interface AppointmentSlotRepository extends JpaRepository<AppointmentSlot
     Integer getUsedSlotsByDoctorAndDate(@Param("doctorId") Long doctorId, @Param("date") LocalDate date);
     
     /**
-     * 查询需要清理的过期号源
+     * 全部号源的用量（ID、医生、日期、时间段、总数、已用），用于一致性校验，不加载实体
      */
-    @Query("SELECT s FROM AppointmentSlot s WHERE s.date < :currentDate")
-    List<AppointmentSlot> findExpiredSlots(@Param("currentDate") LocalDate currentDate);
+    @Query("SELECT s.id, s.doctor.id, s.date, s.timeSlot, s.totalSlots, s.usedSlots FROM AppointmentSlot s")
+    List<Object[]> findSlotUsage();
+    
+    /**
+     * 过期清理：取游标 afterId 之后一批日期早于 before 的号源ID（按ID升序），走 (date, id) 索引
+     */
+    @Query("SELECT s.id FROM AppointmentSlot s WHERE s.date < :before AND s.id > :afterId ORDER BY s.id")
+    List<Long> findExpiredIds(@Param("before") LocalDate before, @Param("afterId") Long afterId, Limit limit);
+    
+    /**
+     * 过期清理：按ID批量删除号源（仍要求日期早于 before）
+     */
+    @Modifying
+    @Query("DELETE FROM AppointmentSlot s WHERE s.id IN :ids AND s.date < :before")
+    int deleteExpired(@Param("ids") Collection<Long> ids, @Param("before") LocalDate before);
     
     /**
      * 检查是否存在重复的号源配置
      */
     boolean existsByDoctorIdAndDateAndTimeSlot(Long doctorId, LocalDate date, String timeSlot);
-}
\ No newline at end of file
+    
+    /**
+     * 原子扣减普通号源：检查与扣减在同一条 UPDATE 中完成，避免并发超卖
+     * 返回受影响行数，0 表示号源不存在或普通号已满
+     */
+    @Modifying
+    @Query("UPDATE AppointmentSlot s SET s.usedSlots = s.usedSlots + 1, " +
+           "s.status = CASE WHEN s.usedSlots + 1 >= s.totalSlots THEN '已满' ELSE '可用' END " +
+           "WHERE s.doctor.id = :doctorId AND s.date = :date AND s.timeSlot = :timeSlot " +
+           "AND s.status = '可用' AND (s.totalSlots - s.usedSlots - s.emergencyReserved) > 0")
+    int tryUseNormalSlot(@Param("doctorId") Long doctorId, 
+                         @Param("date") LocalDate date, 
+                         @Param("timeSlot") String timeSlot);
+    
+    /**
+     * 原子扣减急诊号源（可使用急诊预留名额）
+     * 返回受影响行数，0 表示号源不存在或已满
+     */
+    @Modifying
+    @Query("UPDATE AppointmentSlot s SET s.usedSlots = s.usedSlots + 1, " +
+           "s.status = CASE WHEN s.usedSlots + 1 >= s.totalSlots THEN '已满' ELSE '可用' END " +
+           "WHERE s.doctor.id = :doctorId AND s.date = :date AND s.timeSlot = :timeSlot " +
+           "AND s.status = '可用' AND (s.totalSlots - s.usedSlots) > 0")
+    int tryUseEmergencySlot(@Param("doctorId") Long doctorId, 
+                            @Param("date") LocalDate date, 
+                            @Param("timeSlot") String timeSlot);
+    
+    /**
+     * 原子释放一个号源（停诊状态保持不变）
+     */
+    @Modifying
+    @Query("UPDATE AppointmentSlot s SET s.usedSlots = s.usedSlots - 1, " +
+           "s.status = CASE WHEN s.status = '已满' THEN '可用' ELSE s.status END " +
+           "WHERE s.doctor.id = :doctorId AND s.date = :date AND s.timeSlot = :timeSlot " +
+           "AND s.usedSlots > 0")
+    int releaseSlot(@Param("doctorId") Long doctorId, 
+                    @Param("date") LocalDate date, 
+                    @Param("timeSlot") String timeSlot);
+    
+    /**
+     * 按号源ID批量回写已用数量（内存库存异步回写使用，delta 可为负数）
+     */
+    @Modifying
+    @Query("UPDATE AppointmentSlot s SET s.usedSlots = s.usedSlots + :delta, " +
+           "s.status = CASE WHEN s.status = '停诊' THEN s.status " +
+           "WHEN s.usedSlots + :delta >= s.totalSlots THEN '已满' ELSE '可用' END " +
+           "WHERE s.id = :slotId")
+    int addUsedSlots(@Param("slotId") Long slotId, @Param("delta") int delta);
+    
+    /**
+     * 一组医生在日期范围内已有号源的键（医生ID、日期、时间段），生成号源时用于跳过已存在的时间段
+     */
+    @Query("SELECT s.doctor.id, s.date, s.timeSlot FROM AppointmentSlot s " +
+           "WHERE s.doctor.id IN :doctorIds AND s.date BETWEEN :startDate AND :endDate")
+    List<Object[]> findSlotKeys(@Param("doctorIds") Collection<Long> doctorIds,
+                                @Param("startDate") LocalDate startDate,
+                                @Param("endDate") LocalDate endDate);
+}
@@ -1,6 +1,7 @@
 package org.example.hospital_demo.repository;
 
 import org.example.hospital_demo.entity.Doctor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -41,7 +42,7 @@ public interface DoctorRepository extends JpaRepository<Doctor, Long> {
      * 查询有号源的医生（指定日期）
      */
     @Query("SELECT DISTINCT d FROM Doctor d WHERE EXISTS " +
-           "(SELECT 1 FROM AppointmentSlot slot WHERE slot.doctor = d AND slot.date = :date AND slot.status = 'AVAILABLE')")
+           "(SELECT 1 FROM AppointmentSlot slot WHERE slot.doctor = d AND slot.date = :date AND slot.status = '可用')")
     List<Doctor> findDoctorsWithAvailableSlots(@Param("date") LocalDate date);
     
     /**
@@ -49,4 +50,10 @@ public interface DoctorRepository extends JpaRepository<Doctor, Long> {
      */
     @Query("SELECT d FROM Doctor d WHERE d.department.id = :departmentId AND (:title IS NULL OR d.title = :title)")
     List<Doctor> findByDepartmentIdAndTitle(@Param("departmentId") Long departmentId, @Param("title") String title);
-}
\ No newline at end of file
+    
+    /**
+     * 按ID顺序分页取医生（连同科室），afterId 为上一页最后一个医生的ID，用于批量生成号源
+     */
+    @Query("SELECT d FROM Doctor d LEFT JOIN FETCH d.department WHERE d.id > :afterId ORDER BY d.id")
+    List<Doctor> findPageWithDepartment(@Param("afterId") Long afterId, Limit limit);
+}
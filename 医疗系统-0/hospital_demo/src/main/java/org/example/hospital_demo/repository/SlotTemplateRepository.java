@@ -0,0 +1,28 @@
+package org.example.hospital_demo.repository;
+
+import org.example.hospital_demo.entity.SlotTemplate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 号源模板数据访问层
+ */
+@Repository
+public interface SlotTemplateRepository extends JpaRepository<SlotTemplate, Long> {
+    
+    /**
+     * 批量查询一组医生的模板
+     */
+    @Query("SELECT t FROM SlotTemplate t WHERE t.doctor.id IN :doctorIds")
+    List<SlotTemplate> findByDoctorIds(@Param("doctorIds") Collection<Long> doctorIds);
+    
+    @Modifying
+    @Query("DELETE FROM SlotTemplate t WHERE t.doctor.id = :doctorId")
+    int deleteByDoctorId(@Param("doctorId") Long doctorId);
+}
@@ -1,17 +1,32 @@
 package org.example.hospital_demo.service;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.example.hospital_demo.dto.*;
 import org.example.hospital_demo.entity.*;
 import org.example.hospital_demo.repository.*;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 挂号服务层
@@ -23,6 +38,9 @@ public class AppointmentService {
     @Autowired
     private AppointmentRepository appointmentRepo;
     
+    @Autowired
+    private AppointmentArchiveRepository archiveRepo;
+    
     @Autowired
     private AppointmentSlotRepository slotRepo;
     
@@ -35,18 +53,79 @@ public class AppointmentService {
     @Autowired
     private DepartmentRepository departmentRepo;
     
-    // 排队号码生成器
-    private final AtomicInteger queueNumberGenerator = new AtomicInteger(1000);
+    @Autowired
+    private SlotInventoryEngine inventory;
+    
+    @Autowired
+    private QueueNumberAllocator queueNumberAllocator;
+    
+    @Autowired
+    private SlotReadCache slotCache;
+    
+    @Autowired
+    private DoctorQueueManager doctorQueues;
+    
+    @Autowired
+    private SlotEventHub slotEvents;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private BookingMetrics bookingMetrics;
+    
+    @Autowired
+    private AppointmentStatsRollup statsRollup;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    // 游标分页：默认/最大每页条数，第一页的起始游标
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final LocalDateTime CURSOR_START_TIME = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    
+    // 流式输出时每隔多少行清空一次持久化上下文
+    private static final int STREAM_CLEAR_INTERVAL = 500;
+    
+    // 单次批量挂号的最大条数
+    @Value("${hospital.booking.batch.max-size:100}")
+    private int maxBatchSize;
 
     /**
      * 创建挂号（核心功能）
      */
     @Transactional
     public Result<AppointmentResponse> createAppointment(AppointmentRequest request) {
+        Result<Appointment> prepared = prepareAppointment(request);
+        if (prepared.getData() == null) {
+            return Result.error(prepared.getCode(), prepared.getMessage());
+        }
+        
+        // 7. 保存挂号记录
+        BookingPhaseEvent insert = BookingPhaseEvent.start(BookingPhaseEvent.INSERT, request.getDoctorId());
+        Appointment appointment = appointmentRepo.save(prepared.getData());
+        statsRollup.recordCreated(List.of(appointment));
+        insert.finish("ok");
+        AppointmentResponse response = convertToResponse(appointment);
+        enqueueAfterCommit(appointment, response);
+        
+        return Result.success("挂号成功", response);
+    }
+
+    /**
+     * 校验挂号请求并扣减号源，返回尚未保存的挂号记录
+     * 必须在事务中调用：事务回滚时号源预占会自动归还
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Result<Appointment> prepareAppointment(AppointmentRequest request) {
+        BookingPhaseEvent lookup = BookingPhaseEvent.start(BookingPhaseEvent.LOOKUP, request.getDoctorId());
         // 1. 验证病人是否存在
         Patient patient = patientRepo.findById(request.getPatientId())
                 .orElse(null);
         if (patient == null) {
+            lookup.finish("patient_not_found");
+            bookingMetrics.notFound.increment();
             return Result.notFound("病人不存在");
         }
         
@@ -54,6 +133,8 @@ public class AppointmentService {
         Doctor doctor = doctorRepo.findById(request.getDoctorId())
                 .orElse(null);
         if (doctor == null) {
+            lookup.finish("doctor_not_found");
+            bookingMetrics.notFound.increment();
             return Result.notFound("医生不存在");
         }
         
@@ -61,61 +142,132 @@ public class AppointmentService {
         Department department = departmentRepo.findById(request.getDepartmentId())
                 .orElse(null);
         if (department == null) {
+            lookup.finish("department_not_found");
+            bookingMetrics.notFound.increment();
             return Result.notFound("科室不存在");
         }
+        lookup.finish("ok");
         
-        // 4. 检查是否重复挂号
-        boolean isDuplicate = appointmentRepo.findByPatientIdOrderByCreatedTimeDesc(request.getPatientId())
-                .stream()
-                .anyMatch(a -> a.getDoctor().getId().equals(request.getDoctorId()) 
-                        && a.getAppointmentDate().equals(request.getAppointmentDate())
-                        && a.getStatus() == Appointment.AppointmentStatus.已预约);
-        if (isDuplicate) {
+        // 4. 检查是否重复挂号（索引存在性查询，不加载病人的历史挂号）
+        BookingPhaseEvent duplicateCheck = BookingPhaseEvent.start(BookingPhaseEvent.DUPLICATE_CHECK, request.getDoctorId());
+        if (appointmentRepo.existsDuplicateAppointment(request.getPatientId(), request.getDoctorId(),
+                request.getAppointmentDate(), Appointment.AppointmentStatus.已预约)) {
+            duplicateCheck.finish("duplicate");
+            bookingMetrics.duplicate.increment();
             return Result.badRequest("您已在该日期预约过该医生，请勿重复挂号");
         }
+        duplicateCheck.finish("ok");
         
-        // 5. 检查号源
-        boolean isEmergency = "急诊".equals(request.getType());
-        AppointmentSlot slot = slotRepo.findByDoctorIdAndDateAndTimeSlot(
-                request.getDoctorId(), 
-                request.getAppointmentDate(), 
-                request.getTimeSlot()).orElse(null);
+        return reserveAndBuild(request, patient, doctor, department);
+    }
+
+    /**
+     * 批量挂号（体检团队、家庭、合作方批量提交）
+     * 病人、医生、科室和已有挂号各用一次 IN 查询校验，挂号记录按 JDBC 批量写入，每一项返回独立结果
+     */
+    @Transactional
+    public Result<List<BatchAppointmentResult>> createAppointments(List<AppointmentRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return Result.badRequest("批量挂号列表不能为空");
+        }
+        if (requests.size() > maxBatchSize) {
+            return Result.badRequest("单次批量挂号不能超过 " + maxBatchSize + " 条");
+        }
         
-        if (slot == null) {
-            return Result.notFound("该时间段暂无号源");
+        // 1. 一次性加载涉及的病人、医生、科室
+        Map<Long, Patient> patients = patientRepo.findAllById(collectIds(requests, AppointmentRequest::getPatientId))
+                .stream().collect(Collectors.toMap(Patient::getId, p -> p));
+        Map<Long, Doctor> doctors = doctorRepo.findAllById(collectIds(requests, AppointmentRequest::getDoctorId))
+                .stream().collect(Collectors.toMap(Doctor::getId, d -> d));
+        Map<Long, Department> departments = departmentRepo.findAllById(collectIds(requests, AppointmentRequest::getDepartmentId))
+                .stream().collect(Collectors.toMap(Department::getId, d -> d));
+        
+        // 2. 一次性查询这些病人在这些日期已有的挂号（任何状态都占用唯一约束，否则整批写入失败）
+        Set<LocalDate> dates = requests.stream()
+                .map(AppointmentRequest::getAppointmentDate)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, Appointment.AppointmentStatus> existing = new HashMap<>();
+        if (!patients.isEmpty() && !dates.isEmpty()) {
+            for (Object[] row : appointmentRepo.findExistingKeys(patients.keySet(), dates)) {
+                existing.put(row[0] + ":" + row[1] + ":" + row[2], (Appointment.AppointmentStatus) row[3]);
+            }
         }
         
-        if (isEmergency) {
-            if (!slot.canBookEmergency()) {
-                return Result.badRequest("急诊号源已满");
+        // 3. 逐项校验并扣减号源
+        List<BatchAppointmentResult> results = new ArrayList<>(requests.size());
+        List<Appointment> toSave = new ArrayList<>();
+        List<BatchAppointmentResult> saved = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            AppointmentRequest request = requests.get(i);
+            BatchAppointmentResult item = new BatchAppointmentResult();
+            item.setIndex(i);
+            results.add(item);
+            
+            Result<Appointment> prepared;
+            Patient patient = patients.get(request.getPatientId());
+            Doctor doctor = doctors.get(request.getDoctorId());
+            Department department = departments.get(request.getDepartmentId());
+            String key = request.getPatientId() + ":" + request.getDoctorId() + ":" + request.getAppointmentDate();
+            Appointment.AppointmentStatus previous = existing.get(key);
+            if (patient == null) {
+                bookingMetrics.notFound.increment();
+                prepared = Result.notFound("病人不存在");
+            } else if (doctor == null) {
+                bookingMetrics.notFound.increment();
+                prepared = Result.notFound("医生不存在");
+            } else if (department == null) {
+                bookingMetrics.notFound.increment();
+                prepared = Result.notFound("科室不存在");
+            } else if (previous == Appointment.AppointmentStatus.已预约) {
+                bookingMetrics.duplicate.increment();
+                prepared = Result.badRequest("您已在该日期预约过该医生，请勿重复挂号");
+            } else if (previous != null) {
+                bookingMetrics.duplicate.increment();
+                prepared = Result.badRequest("该日期已有该医生的挂号记录（" + previous + "），不能再次挂号");
+            } else {
+                prepared = reserveAndBuild(request, patient, doctor, department);
+                if (prepared.getData() != null) {
+                    // 同一批中的后续重复项
+                    existing.put(key, Appointment.AppointmentStatus.已预约);
+                }
             }
-        } else {
-            if (!slot.canBookNormal()) {
-                return Result.badRequest("普通号源已满，可尝试急诊挂号");
+            
+            if (prepared.getData() == null) {
+                item.setCode(prepared.getCode());
+                item.setMessage(prepared.getMessage());
+            } else {
+                toSave.add(prepared.getData());
+                saved.add(item);
             }
         }
         
-        // 6. 创建挂号记录
-        Appointment appointment = new Appointment();
-        appointment.setPatient(patient);
-        appointment.setDoctor(doctor);
-        appointment.setDepartment(department);
-        appointment.setAppointmentDate(request.getAppointmentDate());
-        appointment.setAppointmentTime(request.getAppointmentTime());
-        appointment.setType(isEmergency ? Appointment.AppointmentType.急诊 : Appointment.AppointmentType.普通);
-        appointment.setPriority(isEmergency ? 100 : 0);
-        appointment.setSymptoms(request.getSymptoms());
-        appointment.setQueueNumber(queueNumberGenerator.incrementAndGet());
-        appointment.setStatus(Appointment.AppointmentStatus.已预约);
-        
-        // 7. 扣减号源
-        slot.useSlot();
-        slotRepo.save(slot);
-        
-        // 8. 保存挂号记录
-        appointment = appointmentRepo.save(appointment);
+        // 4. 批量写入（序列主键 + hibernate.jdbc.batch_size，按批次发送 INSERT）
+        List<AppointmentResponse> responses = saveAppointments(toSave);
+        for (int i = 0; i < responses.size(); i++) {
+            BatchAppointmentResult item = saved.get(i);
+            item.setCode(200);
+            item.setMessage("挂号成功");
+            item.setAppointment(responses.get(i));
+        }
         
-        return Result.success("挂号成功", convertToResponse(appointment));
+        return Result.success("批量挂号完成，成功 " + responses.size() + " / " + requests.size() + " 条", results);
+    }
+
+    /**
+     * 批量保存已校验的挂号记录（供批量挂号和挂号排序器合并写入）
+     */
+    @Transactional
+    public List<AppointmentResponse> saveAppointments(List<Appointment> appointments) {
+        List<Appointment> saved = appointmentRepo.saveAll(appointments);
+        statsRollup.recordCreated(saved);
+        List<AppointmentResponse> responses = new ArrayList<>(saved.size());
+        for (Appointment appointment : saved) {
+            AppointmentResponse response = convertToResponse(appointment);
+            enqueueAfterCommit(appointment, response);
+            responses.add(response);
+        }
+        return responses;
     }
 
     /**
@@ -134,42 +286,88 @@ public class AppointmentService {
         }
         
         // 更新状态
+        Appointment.AppointmentStatus previous = appointment.getStatus();
         appointment.setStatus(Appointment.AppointmentStatus.已取消);
         appointmentRepo.save(appointment);
+        statsRollup.recordTransition(appointment, previous, Appointment.AppointmentStatus.已取消);
         
         // 释放号源
-        AppointmentSlot slot = slotRepo.findByDoctorIdAndDateAndTimeSlot(
-                appointment.getDoctor().getId(),
+        releaseSlot(appointment.getDoctor().getId(),
                 appointment.getAppointmentDate(),
-                formatTimeSlot(appointment.getAppointmentTime())).orElse(null);
-        if (slot != null) {
-            slot.releaseSlot();
-            slotRepo.save(slot);
-        }
+                timeSlotOf(appointment));
+        dequeueAfterCommit(appointment);
         
         return Result.success("取消成功", null);
     }
 
     /**
-     * 获取病人的挂号记录
+     * 获取病人的挂号记录（游标分页），includeArchive 为 true 时合并归档表中的历史挂号
+     * 两张表按相同的 (创建时间, ID) 游标各取一页后归并，挂号ID在两张表中不重复，游标对合并结果同样有效
      */
-    public Result<List<AppointmentResponse>> getPatientAppointments(Long patientId) {
-        List<Appointment> appointments = appointmentRepo.findByPatientIdOrderByCreatedTimeDesc(patientId);
-        List<AppointmentResponse> responses = appointments.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
-        return Result.success(responses);
+    @Transactional(readOnly = true)
+    public Result<CursorPage<AppointmentResponse>> getPatientAppointments(Long patientId, String cursor, Integer size,
+                                                                         boolean includeArchive) {
+        if (!includeArchive) {
+            return page(cursor, size, (createdTime, id, limit) ->
+                    appointmentRepo.findPageByPatient(patientId, createdTime, id, limit));
+        }
+        return page(cursor, size, (createdTime, id, limit) -> {
+            List<Appointment> rows = new ArrayList<>(appointmentRepo.findPageByPatient(patientId, createdTime, id, limit));
+            for (AppointmentArchive archived : archiveRepo.findPageByPatient(patientId, createdTime, id, limit)) {
+                rows.add(archived.toAppointment());
+            }
+            rows.sort(Comparator.comparing(Appointment::getCreatedTime, Comparator.nullsLast(Comparator.reverseOrder()))
+                    .thenComparing(Appointment::getId, Comparator.reverseOrder()));
+            return rows.size() > limit.max() ? rows.subList(0, limit.max()) : rows;
+        });
     }
 
     /**
-     * 获取医生的排队列表（按优先级排序）
+     * 获取医生的排队列表（按优先级排序，直接读取内存中的候诊队列）
      */
     public Result<List<AppointmentResponse>> getDoctorQueue(Long doctorId, LocalDate date) {
-        List<Appointment> queue = appointmentRepo.findQueueByDoctorAndDate(doctorId, date);
-        List<AppointmentResponse> responses = queue.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
-        return Result.success(responses);
+        return Result.success(doctorQueues.snapshot(doctorId, date, this::convertToResponse));
+    }
+
+    /**
+     * 叫号：弹出候诊队列队首的病人并标记为就诊中
+     * 状态用条件 UPDATE 从"已预约"改为"就诊中"，队首已被取消/完成（如其他实例处理过）时跳到下一位；
+     * 事务回滚时只把本次叫到的病人放回队列，跳过的记录已不在候诊状态，不再放回。
+     */
+    @Transactional
+    public Result<AppointmentResponse> callNextPatient(Long doctorId, LocalDate date) {
+        for (;;) {
+            AppointmentResponse next = doctorQueues.poll(doctorId, date, this::convertToResponse);
+            if (next == null) {
+                return Result.notFound("当前没有候诊的病人");
+            }
+            int updated;
+            try {
+                updated = appointmentRepo.updateStatus(next.getId(), Appointment.AppointmentStatus.已预约,
+                        Appointment.AppointmentStatus.就诊中);
+            } catch (RuntimeException e) {
+                // 事务将回滚，状态未改，病人放回队列
+                doctorQueues.add(doctorId, date, next);
+                throw e;
+            }
+            if (updated == 1) {
+                afterCompletion(committed -> {
+                    if (committed) {
+                        slotEvents.queueChanged(doctorId, date);
+                    } else {
+                        doctorQueues.add(doctorId, date, next);
+                    }
+                });
+                statsRollup.recordBulkTransition(List.of(next.getId()), Appointment.AppointmentStatus.已预约,
+                        Appointment.AppointmentStatus.就诊中);
+                AppointmentResponse called = new AppointmentResponse();
+                BeanUtils.copyProperties(next, called);
+                called.setStatus(Appointment.AppointmentStatus.就诊中.name());
+                called.setStatusDescription(Appointment.AppointmentStatus.就诊中.getDescription());
+                called.setCanCancel(false);
+                return Result.success("叫号成功", called);
+            }
+        }
     }
 
     /**
@@ -183,27 +381,28 @@ public class AppointmentService {
             return Result.notFound("挂号记录不存在");
         }
         
+        Appointment.AppointmentStatus previous = appointment.getStatus();
         appointment.setStatus(Appointment.AppointmentStatus.已就诊);
         appointmentRepo.save(appointment);
+        statsRollup.recordTransition(appointment, previous, Appointment.AppointmentStatus.已就诊);
+        dequeueAfterCommit(appointment);
         
         return Result.success("就诊完成", null);
     }
 
     /**
-     * 获取所有挂号记录
+     * 获取所有挂号记录（游标分页）
      */
-    public Result<List<AppointmentResponse>> getAllAppointments() {
-        List<Appointment> appointments = appointmentRepo.findAll();
-        List<AppointmentResponse> responses = appointments.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
-        return Result.success(responses);
+    @Transactional(readOnly = true)
+    public Result<CursorPage<AppointmentResponse>> getAllAppointments(String cursor, Integer size) {
+        return page(cursor, size, appointmentRepo::findPage);
     }
 
     /**
-     * 根据状态筛选挂号记录
+     * 根据状态筛选挂号记录（游标分页）
      */
-    public Result<List<AppointmentResponse>> getAppointmentsByStatus(String status) {
+    @Transactional(readOnly = true)
+    public Result<CursorPage<AppointmentResponse>> getAppointmentsByStatus(String status, String cursor, Integer size) {
         Appointment.AppointmentStatus appointmentStatus;
         try {
             appointmentStatus = Appointment.AppointmentStatus.valueOf(status);
@@ -211,17 +410,249 @@ public class AppointmentService {
             return Result.badRequest("无效的状态值");
         }
         
-        List<Appointment> appointments = appointmentRepo.findByStatusOrderByCreatedTimeDesc(appointmentStatus);
-        List<AppointmentResponse> responses = appointments.stream()
+        return page(cursor, size, (createdTime, id, limit) ->
+                appointmentRepo.findPageByStatus(appointmentStatus, createdTime, id, limit));
+    }
+
+    /**
+     * 挂号概况统计（今日挂号、待就诊、已就诊数量，已就诊包括已归档的）
+     */
+    public Result<Map<String, Long>> getSummary() {
+        Map<String, Long> summary = new LinkedHashMap<>();
+        summary.put("today", appointmentRepo.countByAppointmentDate(LocalDate.now()));
+        summary.put("waiting", appointmentRepo.countByStatus(Appointment.AppointmentStatus.已预约));
+        summary.put("completed", appointmentRepo.countByStatus(Appointment.AppointmentStatus.已就诊)
+                + archiveRepo.countByStatus(Appointment.AppointmentStatus.已就诊));
+        return Result.success(summary);
+    }
+
+    /**
+     * 以 NDJSON 格式流式输出挂号记录（每行一条 JSON）
+     * 逐行读取、逐行写出，定期清空持久化上下文，内存占用与表大小无关
+     */
+    @Transactional(readOnly = true)
+    public void streamAppointments(Appointment.AppointmentStatus status, OutputStream out) throws IOException {
+        try (Stream<Appointment> stream = appointmentRepo.streamAll(status)) {
+            Iterator<Appointment> iterator = stream.iterator();
+            int count = 0;
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(convertToResponse(iterator.next())));
+                out.write('\n');
+                if (++count % STREAM_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                    out.flush();
+                }
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * 键集分页通用逻辑：多取一条判断是否还有下一页
+     */
+    private Result<CursorPage<AppointmentResponse>> page(String cursor, Integer size, PageQuery query) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        LocalDateTime afterTime = CURSOR_START_TIME;
+        Long afterId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("_");
+                afterTime = LocalDateTime.parse(parts[0]);
+                afterId = Long.parseLong(parts[1]);
+            } catch (RuntimeException e) {
+                return Result.badRequest("无效的分页游标");
+            }
+        }
+        
+        List<Appointment> rows = query.find(afterTime, afterId, Limit.of(pageSize + 1));
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            Appointment last = rows.get(rows.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getCreatedTime() + "_" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        List<AppointmentResponse> responses = rows.stream()
                 .map(this::convertToResponse)
                 .collect(Collectors.toList());
-        return Result.success(responses);
+        return Result.success(new CursorPage<>(responses, nextCursor, hasMore));
+    }
+
+    @FunctionalInterface
+    private interface PageQuery {
+        List<Appointment> find(LocalDateTime createdTime, Long id, Limit limit);
+    }
+
+    /**
+     * 扣减号源并创建（尚未保存的）挂号记录
+     */
+    private Result<Appointment> reserveAndBuild(AppointmentRequest request, Patient patient,
+                                                Doctor doctor, Department department) {
+        // 5. 检查并扣减号源（先在内存库存中预占，再按回写模式落库）
+        boolean isEmergency = "急诊".equals(request.getType());
+        Result<Appointment> slotFailure = reserveSlot(request, isEmergency);
+        if (slotFailure != null) {
+            return slotFailure;
+        }
+        
+        // 6. 创建挂号记录
+        Appointment appointment = new Appointment();
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setDepartment(department);
+        appointment.setAppointmentDate(request.getAppointmentDate());
+        appointment.setAppointmentTime(request.getAppointmentTime());
+        appointment.setTimeSlot(request.getTimeSlot());
+        appointment.setType(isEmergency ? Appointment.AppointmentType.急诊 : Appointment.AppointmentType.普通);
+        appointment.setPriority(isEmergency ? 100 : 0);
+        appointment.setSymptoms(request.getSymptoms());
+        appointment.setQueueNumber(queueNumberAllocator.next(doctor.getId(), request.getAppointmentDate()));
+        appointment.setStatus(Appointment.AppointmentStatus.已预约);
+        
+        return Result.success(appointment);
+    }
+    
+    private Set<Long> collectIds(List<AppointmentRequest> requests, Function<AppointmentRequest, Long> getter) {
+        return requests.stream().map(getter).filter(Objects::nonNull).collect(Collectors.toSet());
+    }
+
+    /**
+     * 扣减号源
+     * 先在内存库存中 CAS 预占，号源已满时直接返回，不访问数据库；
+     * 同步模式下再执行数据库条件 UPDATE（检查与扣减原子完成），异步模式下提交后由库存引擎合并回写。
+     * 成功返回 null，事务回滚时自动归还内存预占，提交后使号源查询缓存失效。
+     */
+    private <T> Result<T> reserveSlot(AppointmentRequest request, boolean isEmergency) {
+        Long doctorId = request.getDoctorId();
+        LocalDate date = request.getAppointmentDate();
+        String timeSlot = request.getTimeSlot();
+        
+        BookingPhaseEvent slotCheck = BookingPhaseEvent.start(BookingPhaseEvent.SLOT_CHECK, doctorId);
+        SlotInventoryEngine.Outcome outcome = inventory.tryReserve(doctorId, date, timeSlot, isEmergency);
+        slotCheck.finish(outcome.name().toLowerCase());
+        if (outcome == SlotInventoryEngine.Outcome.NOT_FOUND) {
+            bookingMetrics.notFound.increment();
+            return Result.notFound("该时间段暂无号源");
+        }
+        if (outcome == SlotInventoryEngine.Outcome.FULL) {
+            bookingMetrics.full.increment();
+            return slotFullResult(isEmergency);
+        }
+        
+        if (!inventory.isWriteBehind()) {
+            BookingPhaseEvent slotUpdate = BookingPhaseEvent.start(BookingPhaseEvent.SLOT_UPDATE, doctorId);
+            int updated = isEmergency
+                    ? slotRepo.tryUseEmergencySlot(doctorId, date, timeSlot)
+                    : slotRepo.tryUseNormalSlot(doctorId, date, timeSlot);
+            slotUpdate.finish(updated == 0 ? "conflict" : "ok");
+            if (updated == 0) {
+                // 内存与数据库不一致（如号源被停诊），以数据库为准重新加载
+                bookingMetrics.dbConflicts.increment();
+                inventory.release(doctorId, date, timeSlot);
+                inventory.reload(doctorId, date);
+                slotCache.invalidate(doctorId, date);
+                if (!slotRepo.existsByDoctorIdAndDateAndTimeSlot(doctorId, date, timeSlot)) {
+                    bookingMetrics.notFound.increment();
+                    return Result.notFound("该时间段暂无号源");
+                }
+                bookingMetrics.full.increment();
+                return slotFullResult(isEmergency);
+            }
+        }
+        
+        Long slotId = inventory.slotId(doctorId, date, timeSlot);
+        afterCompletion(committed -> {
+            if (!committed) {
+                bookingMetrics.rolledBack.increment();
+                inventory.release(doctorId, date, timeSlot);
+                return;
+            }
+            bookingMetrics.success.increment();
+            slotCache.invalidate(doctorId, date);
+            slotEvents.slotChanged(doctorId, date, slotId);
+            if (inventory.isWriteBehind()) {
+                inventory.persistDelta(slotId, 1);
+            }
+        });
+        return null;
+    }
+    
+    /**
+     * 归还号源：同步模式立即更新数据库，内存计数在事务提交后归还
+     */
+    private void releaseSlot(Long doctorId, LocalDate date, String timeSlot) {
+        if (!inventory.isWriteBehind()) {
+            slotRepo.releaseSlot(doctorId, date, timeSlot);
+        }
+        Long slotId = inventory.slotId(doctorId, date, timeSlot);
+        afterCompletion(committed -> {
+            if (committed) {
+                inventory.release(doctorId, date, timeSlot);
+                slotCache.invalidate(doctorId, date);
+                slotEvents.slotChanged(doctorId, date, slotId);
+                if (inventory.isWriteBehind() && slotId != null) {
+                    inventory.persistDelta(slotId, -1);
+                }
+            }
+        });
+    }
+    
+    private <T> Result<T> slotFullResult(boolean isEmergency) {
+        return isEmergency ? Result.badRequest("急诊号源已满") : Result.badRequest("普通号源已满，可尝试急诊挂号");
+    }
+    
+    /**
+     * 挂号提交后加入医生的候诊队列
+     */
+    private void enqueueAfterCommit(Appointment appointment, AppointmentResponse response) {
+        Long doctorId = appointment.getDoctor().getId();
+        LocalDate date = appointment.getAppointmentDate();
+        afterCompletion(committed -> {
+            if (committed) {
+                doctorQueues.add(doctorId, date, response);
+                slotEvents.queueChanged(doctorId, date);
+            }
+        });
+    }
+    
+    /**
+     * 取消/完成就诊提交后移出医生的候诊队列
+     */
+    private void dequeueAfterCommit(Appointment appointment) {
+        Long doctorId = appointment.getDoctor().getId();
+        LocalDate date = appointment.getAppointmentDate();
+        Long appointmentId = appointment.getId();
+        afterCompletion(committed -> {
+            if (committed) {
+                doctorQueues.remove(doctorId, date, appointmentId);
+                slotEvents.queueChanged(doctorId, date);
+            }
+        });
+    }
+    
+    /**
+     * 在当前事务结束后执行回调（无事务时立即按已提交处理）
+     */
+    private void afterCompletion(Consumer<Boolean> callback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            callback.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
     }
 
     /**
      * 转换为响应DTO
      */
-    private AppointmentResponse convertToResponse(Appointment appointment) {
+    AppointmentResponse convertToResponse(Appointment appointment) {
         AppointmentResponse response = new AppointmentResponse();
         response.setId(appointment.getId());
         response.setPatientName(appointment.getPatient().getName());
@@ -243,17 +674,38 @@ public class AppointmentService {
         response.setDoctorTitle(appointment.getDoctor().getTitle());
         response.setDoctorSpecialty(appointment.getDoctor().getSpecialty());
         response.setCanCancel(appointment.canCancel());
-        response.setTimeSlot(formatTimeSlot(appointment.getAppointmentTime()));
+        response.setTimeSlot(timeSlotOf(appointment));
         return response;
     }
 
     /**
-     * 格式化时间段
+     * 挂号占用的号源时间段；早期挂号没有记录时间段，按 30 分钟一段推算
+     */
+    static String timeSlotOf(Appointment appointment) {
+        return appointment.getTimeSlot() != null
+                ? appointment.getTimeSlot() : formatTimeSlot(appointment.getAppointmentTime());
+    }
+
+    /**
+     * 格式化时间段（如 09:00-09:30）
+     * 每条挂号记录转换时都会调用，直接拼接字符，不走 String.format 的格式串解析
      */
-    private String formatTimeSlot(LocalTime time) {
+    static String formatTimeSlot(LocalTime time) {
         LocalTime endTime = time.plusMinutes(30);
-        return String.format("%02d:%02d-%02d:%02d", 
-                time.getHour(), time.getMinute(),
-                endTime.getHour(), endTime.getMinute());
+        char[] chars = new char[11];
+        writeTime(chars, 0, time);
+        chars[5] = '-';
+        writeTime(chars, 6, endTime);
+        return new String(chars);
+    }
+
+    private static void writeTime(char[] chars, int offset, LocalTime time) {
+        int hour = time.getHour();
+        int minute = time.getMinute();
+        chars[offset] = (char) ('0' + hour / 10);
+        chars[offset + 1] = (char) ('0' + hour % 10);
+        chars[offset + 2] = ':';
+        chars[offset + 3] = (char) ('0' + minute / 10);
+        chars[offset + 4] = (char) ('0' + minute % 10);
     }
 }
\ No newline at end of file
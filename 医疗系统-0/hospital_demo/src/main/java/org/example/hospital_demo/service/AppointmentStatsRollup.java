@@ -0,0 +1,384 @@
+package org.example.hospital_demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.entity.AppointmentDailyStat;
+import org.example.hospital_demo.repository.AppointmentArchiveRepository;
+import org.example.hospital_demo.repository.AppointmentDailyStatRepository;
+import org.example.hospital_demo.repository.AppointmentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 挂号统计汇总维护
+ * 挂号状态每次变化都在同一个事务中写入增量行（见 AppointmentDailyStat），事务回滚时增量一起回滚；
+ * 后台线程定期把增量合并进汇总行，合并和重建互斥执行。
+ * 汇总按挂号创建日期归类，归档只是换表存放，不影响汇总。
+ */
+@Service
+public class AppointmentStatsRollup {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentStatsRollup.class);
+
+    // 合并周期（毫秒）
+    @Value("${hospital.stats.rollup.compact-interval-ms:2000}")
+    private long compactIntervalMs;
+
+    // 每次合并最多处理的增量行数
+    @Value("${hospital.stats.rollup.compact-batch-size:5000}")
+    private int compactBatchSize;
+
+    @Autowired
+    private AppointmentDailyStatRepository statRepo;
+
+    @Autowired
+    private AppointmentRepository appointmentRepo;
+
+    @Autowired
+    private AppointmentArchiveRepository archiveRepo;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private final TransactionTemplate txTemplate;
+
+    // 重建用：整个事务读同一个快照
+    private final TransactionTemplate snapshotTx;
+
+    // 合并与重建互斥
+    private final ReentrantLock maintenance = new ReentrantLock();
+
+    private volatile Map<String, Object> lastRebuild = Map.of("state", "未执行");
+
+    // 上次合并后是否又提交过增量，空闲时合并线程不查库
+    private volatile boolean dirty;
+
+    private LongAdder deltas;
+    private LongAdder compacted;
+    private MetricsRegistry.Histogram compactTime;
+
+    private ScheduledExecutorService compactor;
+
+    public AppointmentStatsRollup(PlatformTransactionManager transactionManager) {
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTx = new TransactionTemplate(transactionManager);
+        this.snapshotTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    @PostConstruct
+    public void init() {
+        deltas = metrics.counter("hospital_stats_rollup_deltas_total", "写入的统计增量行数");
+        compacted = metrics.counter("hospital_stats_rollup_compacted_total", "合并进汇总行的统计增量行数");
+        compactTime = metrics.histogram("hospital_stats_rollup_compact_seconds", "一次统计增量合并的耗时");
+    }
+
+    /**
+     * 启动时汇总表为空而已有挂号（如升级后第一次启动）则先重建，再开始定期合并
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (statRepo.count() == 0 && appointmentRepo.count() + archiveRepo.count() > 0) {
+            rebuild();
+        }
+        // 上次运行可能留有未合并的增量
+        dirty = statRepo.countByPendingTrue() > 0;
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stats-rollup-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            try {
+                // 一批没合并完时下个周期继续
+                if (compact() >= compactBatchSize) {
+                    dirty = true;
+                }
+            } catch (RuntimeException e) {
+                dirty = true;
+                log.warn("合并统计增量失败，下个周期重试：{}", e.getMessage());
+            }
+        }, compactIntervalMs, compactIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+    }
+
+    /**
+     * 记录新建的挂号
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(Collection<Appointment> appointments) {
+        Map<Key, Delta> grouped = new HashMap<>();
+        for (Appointment appointment : appointments) {
+            grouped.computeIfAbsent(key(appointment, appointment.getStatus()), k -> new Delta())
+                    .add(1, fee(appointment));
+        }
+        write(grouped);
+    }
+
+    /**
+     * 记录一条挂号的状态变化（from 与 to 相同时不记录）
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransition(Appointment appointment, Appointment.AppointmentStatus from,
+                                 Appointment.AppointmentStatus to) {
+        if (from == to) {
+            return;
+        }
+        Map<Key, Delta> grouped = new HashMap<>();
+        BigDecimal fee = fee(appointment);
+        grouped.computeIfAbsent(key(appointment, from), k -> new Delta()).add(-1, fee.negate());
+        grouped.computeIfAbsent(key(appointment, to), k -> new Delta()).add(1, fee);
+        write(grouped);
+    }
+
+    /**
+     * 记录一批挂号从 from 改为 to（在条件 UPDATE 之后调用，只统计当前已是 to 状态的行）
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBulkTransition(Collection<Long> ids, Appointment.AppointmentStatus from,
+                                     Appointment.AppointmentStatus to) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Key, Delta> grouped = new HashMap<>();
+        for (Object[] row : appointmentRepo.aggregateByIds(ids, to)) {
+            long count = (Long) row[3];
+            BigDecimal fee = (BigDecimal) row[4];
+            LocalDate date = (LocalDate) row[0];
+            Long departmentId = (Long) row[1];
+            Appointment.AppointmentType type = (Appointment.AppointmentType) row[2];
+            grouped.computeIfAbsent(new Key(date, departmentId, type, from), k -> new Delta()).add(-count, fee.negate());
+            grouped.computeIfAbsent(new Key(date, departmentId, type, to), k -> new Delta()).add(count, fee);
+        }
+        write(grouped);
+    }
+
+    /**
+     * 删除病人或医生前扣除其全部挂号（在线和归档），与删除在同一事务中调用
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordRemoval(Long patientId, Long doctorId) {
+        Map<Key, Delta> grouped = new HashMap<>();
+        addAggregates(grouped, appointmentRepo.aggregateForStats(patientId, doctorId), -1);
+        addAggregates(grouped, archiveRepo.aggregateForStats(patientId, doctorId), -1);
+        write(grouped);
+    }
+
+    /**
+     * 把一批增量合并进汇总行，返回合并的增量行数
+     * 只处理本次读到的增量行，合并期间新提交的增量留到下一次
+     */
+    public int compact() {
+        maintenance.lock();
+        try {
+            long start = System.nanoTime();
+            Integer merged = txTemplate.execute(status -> compactBatch());
+            compactTime.recordNanos(System.nanoTime() - start);
+            int count = merged == null ? 0 : merged;
+            compacted.add(count);
+            return count;
+        } finally {
+            maintenance.unlock();
+        }
+    }
+
+    private int compactBatch() {
+        List<AppointmentDailyStat> pending = statRepo.findPending(Limit.of(compactBatchSize));
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        Map<Key, List<AppointmentDailyStat>> byKey = new LinkedHashMap<>();
+        Set<LocalDate> dates = new HashSet<>();
+        Set<Long> departmentIds = new HashSet<>();
+        for (AppointmentDailyStat row : pending) {
+            byKey.computeIfAbsent(key(row), k -> new ArrayList<>()).add(row);
+            dates.add(row.getStatDate());
+            departmentIds.add(row.getDepartmentId());
+        }
+        Map<Key, AppointmentDailyStat> summaries = new HashMap<>();
+        for (AppointmentDailyStat summary : statRepo.findSummaries(dates, departmentIds)) {
+            summaries.putIfAbsent(key(summary), summary);
+        }
+
+        List<Long> merged = new ArrayList<>();
+        for (Map.Entry<Key, List<AppointmentDailyStat>> entry : byKey.entrySet()) {
+            List<AppointmentDailyStat> rows = entry.getValue();
+            AppointmentDailyStat summary = summaries.get(entry.getKey());
+            int first = 0;
+            if (summary == null) {
+                // 该维度还没有汇总行：第一条增量行就地转为汇总行
+                summary = rows.get(0);
+                summary.setPending(false);
+                first = 1;
+            }
+            long count = summary.getAppointmentCount();
+            BigDecimal fee = summary.getFeeSum();
+            for (int i = first; i < rows.size(); i++) {
+                count += rows.get(i).getAppointmentCount();
+                fee = fee.add(rows.get(i).getFeeSum());
+                merged.add(rows.get(i).getId());
+            }
+            summary.setAppointmentCount(count);
+            summary.setFeeSum(fee);
+        }
+        statRepo.flush();
+        statRepo.deleteAllByIdInBatch(merged);
+        return pending.size();
+    }
+
+    /**
+     * 从在线挂号表和归档表重新计算全部汇总
+     * 在同一快照中读取统计行ID和挂号，只删除快照中可见的行：这些增量对应的变化已包含在读到的挂号中，
+     * 快照之后提交的增量行保留为待合并，随后加到新汇总上，不会漏计或重复计入。
+     * 增量行ID按序列分段预取，大小与提交先后无关，因此按快照中的ID列表删除而不是按最大ID删除。
+     */
+    public Result<Map<String, Object>> rebuild() {
+        if (!maintenance.tryLock()) {
+            return Result.error(409, "统计汇总正在合并或重建，请稍后再试");
+        }
+        try {
+            long start = System.nanoTime();
+            Integer rows = snapshotTx.execute(status -> {
+                List<Long> covered = statRepo.findAllIds();
+                Map<Key, Delta> grouped = new HashMap<>();
+                addAggregates(grouped, appointmentRepo.aggregateForStats(null, null), 1);
+                addAggregates(grouped, archiveRepo.aggregateForStats(null, null), 1);
+                for (int i = 0; i < covered.size(); i += compactBatchSize) {
+                    statRepo.deleteAllByIdInBatch(covered.subList(i, Math.min(i + compactBatchSize, covered.size())));
+                }
+                List<AppointmentDailyStat> summaries = new ArrayList<>(grouped.size());
+                grouped.forEach((key, delta) -> {
+                    AppointmentDailyStat summary = row(key, delta);
+                    summary.setPending(false);
+                    summaries.add(summary);
+                });
+                statRepo.saveAll(summaries);
+                return summaries.size();
+            });
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("rows", rows);
+            stats.put("elapsedMs", elapsedMs);
+            stats.put("finishedAt", LocalDateTime.now().toString());
+            lastRebuild = stats;
+            log.info("统计汇总重建完成：{} 行，耗时 {} ms", rows, elapsedMs);
+            return Result.success(stats);
+        } finally {
+            maintenance.unlock();
+        }
+    }
+
+    /**
+     * 汇总表状态：总行数、待合并的增量行数、上一次重建
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("rows", statRepo.count());
+        stats.put("pending", statRepo.countByPendingTrue());
+        stats.put("deltasWritten", deltas.sum());
+        stats.put("deltasCompacted", compacted.sum());
+        stats.put("lastRebuild", lastRebuild);
+        return stats;
+    }
+
+    private void write(Map<Key, Delta> grouped) {
+        List<AppointmentDailyStat> rows = new ArrayList<>(grouped.size());
+        grouped.forEach((key, delta) -> {
+            if (delta.count != 0 || delta.fee.signum() != 0) {
+                rows.add(row(key, delta));
+            }
+        });
+        if (!rows.isEmpty()) {
+            statRepo.saveAll(rows);
+            deltas.add(rows.size());
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirty = true;
+                }
+            });
+        }
+    }
+
+    private static void addAggregates(Map<Key, Delta> grouped, List<Object[]> rows, int sign) {
+        for (Object[] row : rows) {
+            Key key = new Key((LocalDate) row[0], (Long) row[1],
+                    (Appointment.AppointmentType) row[2], (Appointment.AppointmentStatus) row[3]);
+            BigDecimal fee = (BigDecimal) row[5];
+            grouped.computeIfAbsent(key, k -> new Delta()).add(sign * (Long) row[4], sign < 0 ? fee.negate() : fee);
+        }
+    }
+
+    private static AppointmentDailyStat row(Key key, Delta delta) {
+        AppointmentDailyStat row = new AppointmentDailyStat();
+        row.setStatDate(key.date());
+        row.setDepartmentId(key.departmentId());
+        row.setType(key.type());
+        row.setStatus(key.status());
+        row.setAppointmentCount(delta.count);
+        row.setFeeSum(delta.fee);
+        return row;
+    }
+
+    private static BigDecimal fee(Appointment appointment) {
+        return appointment.getFee() != null ? appointment.getFee() : BigDecimal.ZERO;
+    }
+
+    private static Key key(Appointment appointment, Appointment.AppointmentStatus status) {
+        LocalDate date = appointment.getCreatedTime() != null
+                ? appointment.getCreatedTime().toLocalDate() : appointment.getAppointmentDate();
+        return new Key(date, appointment.getDepartment().getId(), appointment.getType(), status);
+    }
+
+    private static Key key(AppointmentDailyStat row) {
+        return new Key(row.getStatDate(), row.getDepartmentId(), row.getType(), row.getStatus());
+    }
+
+    private record Key(LocalDate date, Long departmentId, Appointment.AppointmentType type,
+                       Appointment.AppointmentStatus status) {
+    }
+
+    private static final class Delta {
+        long count;
+        BigDecimal fee = BigDecimal.ZERO;
+
+        void add(long count, BigDecimal fee) {
+            this.count += count;
+            this.fee = this.fee.add(fee);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.hospital_demo.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 挂号结果与争用计数
+ * 每种挂号结果一个计数器，在挂号流程的各个返回点累加；成功在事务提交后计入，回滚的挂号单独计数。
+ */
+@Component
+public class BookingMetrics {
+
+    private static final String OUTCOMES = "hospital_booking_outcomes_total";
+    private static final String OUTCOMES_HELP = "挂号结果次数";
+
+    final LongAdder success;
+    final LongAdder full;
+    final LongAdder duplicate;
+    final LongAdder notFound;
+    final LongAdder rolledBack;
+
+    // 内存预占成功但数据库条件 UPDATE 未命中（内存与数据库不一致）
+    final LongAdder dbConflicts;
+
+    // 挂号排序器整批写入失败、改为逐条处理的批次数
+    final LongAdder batchFallbacks;
+
+    public BookingMetrics(MetricsRegistry metrics) {
+        this.success = metrics.counter(OUTCOMES, OUTCOMES_HELP, "outcome", "success");
+        this.full = metrics.counter(OUTCOMES, OUTCOMES_HELP, "outcome", "full");
+        this.duplicate = metrics.counter(OUTCOMES, OUTCOMES_HELP, "outcome", "duplicate");
+        this.notFound = metrics.counter(OUTCOMES, OUTCOMES_HELP, "outcome", "not_found");
+        this.rolledBack = metrics.counter(OUTCOMES, OUTCOMES_HELP, "outcome", "rolled_back");
+        this.dbConflicts = metrics.counter("hospital_slot_db_conflicts_total",
+                "内存预占成功但数据库条件更新未命中的次数");
+        this.batchFallbacks = metrics.counter("hospital_booking_batch_fallbacks_total",
+                "挂号排序器批量写入失败后逐条重试的批次数");
+    }
+}
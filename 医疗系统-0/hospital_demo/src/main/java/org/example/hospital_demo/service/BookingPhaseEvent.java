@@ -0,0 +1,53 @@
+package org.example.hospital_demo.service;
+
+import jdk.jfr.*;
+
+/**
+ * 挂号阶段 JFR 事件
+ * 记录一次挂号中各阶段（查询病人/医生/科室、重复检查、内存号源预占、号源落库、写入挂号记录）的耗时和结果。
+ * 没有进行中的飞行记录时 shouldCommit 直接返回 false，事件对象可被 JIT 消除，稳态开销可以忽略。
+ */
+@Name("org.example.hospital.BookingPhase")
+@Label("挂号阶段")
+@Category({"Hospital", "Booking"})
+@Description("挂号流程中单个阶段的耗时和结果")
+@StackTrace(false)
+final class BookingPhaseEvent extends Event {
+
+    static final String LOOKUP = "lookup";
+    static final String DUPLICATE_CHECK = "duplicate_check";
+    static final String SLOT_CHECK = "slot_check";
+    static final String SLOT_UPDATE = "slot_update";
+    static final String INSERT = "insert";
+
+    @Label("阶段")
+    String phase;
+
+    @Label("医生ID")
+    long doctorId;
+
+    @Label("结果")
+    String outcome;
+
+    /**
+     * 开始计时一个阶段
+     */
+    static BookingPhaseEvent start(String phase, Long doctorId) {
+        BookingPhaseEvent event = new BookingPhaseEvent();
+        event.begin();
+        event.phase = phase;
+        event.doctorId = doctorId == null ? 0 : doctorId;
+        return event;
+    }
+
+    /**
+     * 结束计时，记录中时提交事件
+     */
+    void finish(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package org.example.hospital_demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.BookingTicket;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.repository.AppointmentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 挂号排序器（单写者模式）
+ * 挂号/取消请求按医生ID分区放入有界环形队列，每个分区只有一个消费线程，
+ * 该线程独占所属医生的号源状态，按到达顺序处理请求，并把一批挂号记录合并为一次批量写入。
+ * 客户端在截止时间内拿到结果，超时则拿到票据后轮询。
+ */
+@Component
+public class BookingSequencer {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingSequencer.class);
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepo;
+
+    @Autowired
+    private BookingMetrics bookingMetrics;
+
+    private final TransactionTemplate txTemplate;
+
+    // 挂号模式：direct = 请求线程直接处理；sequencer = 进入分区队列由单线程顺序处理
+    @Value("${hospital.booking.mode:direct}")
+    private String mode;
+
+    @Value("${hospital.booking.sequencer.partitions:8}")
+    private int partitionCount;
+
+    @Value("${hospital.booking.sequencer.capacity:1024}")
+    private int capacity;
+
+    @Value("${hospital.booking.sequencer.batch-size:64}")
+    private int batchSize;
+
+    @Value("${hospital.booking.sequencer.response-deadline-ms:200}")
+    private long responseDeadlineMs;
+
+    @Value("${hospital.booking.sequencer.ticket-ttl-seconds:300}")
+    private long ticketTtlSeconds;
+
+    @Value("${hospital.booking.sequencer.shutdown-wait-ms:5000}")
+    private long shutdownWaitMs;
+
+    private Partition[] partitions;
+
+    private final ConcurrentHashMap<String, Command> tickets = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService ticketReaper;
+
+    private volatile boolean running;
+
+    public BookingSequencer(PlatformTransactionManager transactionManager) {
+        this.txTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        running = true;
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            Partition partition = new Partition(capacity);
+            Thread consumer = new Thread(() -> consume(partition), "booking-sequencer-" + i);
+            consumer.setDaemon(true);
+            partition.consumer = consumer;
+            partitions[i] = partition;
+            consumer.start();
+        }
+        ticketReaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "booking-ticket-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        ticketReaper.scheduleWithFixedDelay(this::reapTickets, 30, 30, TimeUnit.SECONDS);
+        log.info("挂号排序器已启动：{} 个分区，每分区容量 {}", partitionCount, capacity);
+    }
+
+    /**
+     * 停止分区线程：等待正在处理的批次完成，超时仍未完成的请求和队列中尚未处理的请求都以错误结束，
+     * 不让同步等待的调用方和票据一直停在排队中
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (partitions != null) {
+            for (Partition partition : partitions) {
+                partition.consumer.interrupt();
+            }
+            long deadline = System.currentTimeMillis() + shutdownWaitMs;
+            try {
+                for (Partition partition : partitions) {
+                    partition.consumer.join(Math.max(1, deadline - System.currentTimeMillis()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Partition partition : partitions) {
+                for (Command command : partition.inFlight) {
+                    command.future.complete(Result.error(503, "挂号服务正在停止，处理结果未确认，请稍后查询挂号记录"));
+                }
+                List<Command> queued = new ArrayList<>();
+                partition.queue.drainTo(queued);
+                for (Command command : queued) {
+                    command.future.complete(Result.error(503, "挂号服务正在停止，请稍后重试"));
+                }
+            }
+        }
+        if (ticketReaper != null) {
+            ticketReaper.shutdownNow();
+        }
+    }
+
+    /**
+     * 是否启用排序器模式
+     */
+    public boolean isEnabled() {
+        return "sequencer".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * 提交挂号请求
+     */
+    public Result<?> submitBooking(AppointmentRequest request) {
+        return submit(new Command(request, null), request.getDoctorId());
+    }
+
+    /**
+     * 提交取消请求（与该医生的挂号请求在同一分区内按顺序处理）
+     */
+    public Result<?> submitCancel(Long appointmentId) {
+        Long doctorId = appointmentRepo.findDoctorIdById(appointmentId).orElse(null);
+        if (doctorId == null) {
+            return Result.notFound("挂号记录不存在");
+        }
+        return submit(new Command(null, appointmentId), doctorId);
+    }
+
+    /**
+     * 查询票据状态
+     */
+    public Result<BookingTicket> getTicket(String ticketId) {
+        Command command = tickets.get(ticketId);
+        if (command == null) {
+            return Result.notFound("票据不存在或已过期");
+        }
+        if (!command.future.isDone()) {
+            return Result.success(new BookingTicket(ticketId, "排队中", null, null, null));
+        }
+        tickets.remove(ticketId);
+        return Result.success(toTicket(command));
+    }
+
+    private Result<?> submit(Command command, Long doctorId) {
+        if (!running) {
+            return Result.error(503, "挂号服务正在停止，请稍后重试");
+        }
+        Partition partition = partitions[doctorId == null ? 0 : Math.floorMod(Long.hashCode(doctorId), partitions.length)];
+        tickets.put(command.ticketId, command);
+        if (!partition.queue.offer(command)) {
+            tickets.remove(command.ticketId);
+            return Result.error(503, "挂号繁忙，请稍后重试");
+        }
+        // 与 stop 并发时可能在队列清空之后才入队，此时自己撤回
+        if (!running && partition.queue.remove(command)) {
+            tickets.remove(command.ticketId);
+            return Result.error(503, "挂号服务正在停止，请稍后重试");
+        }
+        try {
+            Result<?> result = command.future.get(responseDeadlineMs, TimeUnit.MILLISECONDS);
+            tickets.remove(command.ticketId);
+            return result;
+        } catch (TimeoutException e) {
+            return new Result<>(202, "挂号请求排队中，请凭票据查询结果",
+                    new BookingTicket(command.ticketId, "排队中", null, null, null), System.currentTimeMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.error("挂号请求被中断");
+        } catch (ExecutionException e) {
+            tickets.remove(command.ticketId);
+            return Result.error("挂号失败：" + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * 分区消费线程：阻塞取出第一个请求后尽量多地取出一批一起处理
+     */
+    private void consume(Partition partition) {
+        List<Command> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Command first = partition.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                partition.queue.drainTo(batch, batchSize - 1);
+                partition.inFlight = List.copyOf(batch);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("挂号排序器处理失败", e);
+                for (Command command : batch) {
+                    command.future.complete(Result.error("挂号失败：" + e.getMessage()));
+                }
+            } finally {
+                batch.clear();
+                partition.inFlight = List.of();
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中处理整批请求；批量写入失败时逐条重试，保证每个请求都有独立结果
+     */
+    private void process(List<Command> batch) {
+        List<Result<?>> results;
+        try {
+            results = txTemplate.execute(status -> applyBatch(batch));
+        } catch (RuntimeException e) {
+            log.warn("批量挂号写入失败，改为逐条处理：{}", e.getMessage());
+            bookingMetrics.batchFallbacks.increment();
+            results = new ArrayList<>(batch.size());
+            for (Command command : batch) {
+                results.add(applyOne(command));
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(results.get(i));
+        }
+    }
+
+    private List<Result<?>> applyBatch(List<Command> batch) {
+        Result<?>[] results = new Result<?>[batch.size()];
+        List<Appointment> toSave = new ArrayList<>();
+        List<Integer> savedIndexes = new ArrayList<>();
+        // 同一批次内已成功准备的挂号（尚未写库，数据库查不到），用于拦截批次内的重复挂号
+        Set<String> bookedInBatch = new HashSet<>();
+
+        for (int i = 0; i < batch.size(); i++) {
+            Command command = batch.get(i);
+            if (command.cancelId != null) {
+                results[i] = appointmentService.cancelAppointment(command.cancelId);
+                continue;
+            }
+            AppointmentRequest request = command.request;
+            String key = request.getPatientId() + ":" + request.getDoctorId() + ":" + request.getAppointmentDate();
+            if (bookedInBatch.contains(key)) {
+                bookingMetrics.duplicate.increment();
+                results[i] = Result.badRequest("您已在该日期预约过该医生，请勿重复挂号");
+                continue;
+            }
+            Result<Appointment> prepared = appointmentService.prepareAppointment(request);
+            if (prepared.getData() == null) {
+                results[i] = Result.error(prepared.getCode(), prepared.getMessage());
+                continue;
+            }
+            // 准备失败的请求不占用，同一病人在本批次内改约其他时间段不算重复
+            bookedInBatch.add(key);
+            toSave.add(prepared.getData());
+            savedIndexes.add(i);
+        }
+
+        List<AppointmentResponse> saved = appointmentService.saveAppointments(toSave);
+        for (int j = 0; j < saved.size(); j++) {
+            results[savedIndexes.get(j)] = Result.success("挂号成功", saved.get(j));
+        }
+        return Arrays.asList(results);
+    }
+
+    private Result<?> applyOne(Command command) {
+        try {
+            return command.cancelId != null
+                    ? appointmentService.cancelAppointment(command.cancelId)
+                    : appointmentService.createAppointment(command.request);
+        } catch (RuntimeException e) {
+            return Result.error("挂号失败：" + e.getMessage());
+        }
+    }
+
+    private BookingTicket toTicket(Command command) {
+        Result<?> result = command.future.getNow(null);
+        AppointmentResponse appointment = result.getData() instanceof AppointmentResponse response ? response : null;
+        return new BookingTicket(command.ticketId, "已完成", result.getCode(), result.getMessage(), appointment);
+    }
+
+    /**
+     * 清理长时间无人查询的票据
+     */
+    private void reapTickets() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(ticketTtlSeconds);
+        tickets.values().removeIf(command -> command.future.isDone() && command.createdAt < expireBefore);
+    }
+
+    /**
+     * 一个分区：有界环形队列 + 单个消费线程
+     */
+    private static final class Partition {
+        final ArrayBlockingQueue<Command> queue;
+        Thread consumer;
+        // 消费线程正在处理的批次，停止时用来结束超时未完成的请求
+        volatile List<Command> inFlight = List.of();
+
+        Partition(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    /**
+     * 队列中的一条命令：挂号（request 非空）或取消（cancelId 非空）
+     */
+    private static final class Command {
+        final String ticketId = UUID.randomUUID().toString();
+        final long createdAt = System.currentTimeMillis();
+        final AppointmentRequest request;
+        final Long cancelId;
+        final CompletableFuture<Result<?>> future = new CompletableFuture<>();
+
+        Command(AppointmentRequest request, Long cancelId) {
+            this.request = request;
+            this.cancelId = cancelId;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.repository.AppointmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 医生候诊队列
+ * 每个 (医生, 日期) 一个优先级堆：优先级高的在前，同优先级按预约时间、排队号先后。
+ * 挂号、取消、完成就诊在事务提交后增量更新堆，叫号 O(log n) 弹出堆顶；
+ * 队列首次被访问时（包括重启后）从数据库中的候诊记录重建，之后的读取不访问数据库。
+ */
+@Component
+public class DoctorQueueManager {
+
+    // 出队顺序：优先级降序、预约时间升序、排队号升序
+    private static final Comparator<QueueEntry> ORDER = Comparator
+            .comparingInt((QueueEntry e) -> -e.priority)
+            .thenComparing(e -> e.appointmentTime, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(e -> e.queueNumber, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingLong(e -> e.id);
+
+    @Autowired
+    private AppointmentRepository appointmentRepo;
+
+    private final TransactionTemplate readOnlyTx;
+
+    private final ConcurrentHashMap<Key, DoctorQueue> queues = new ConcurrentHashMap<>();
+
+    public DoctorQueueManager(PlatformTransactionManager transactionManager) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * 当前候诊列表（按出队顺序）
+     */
+    public List<AppointmentResponse> snapshot(Long doctorId, LocalDate date, Function<Appointment, AppointmentResponse> converter) {
+        DoctorQueue queue = load(doctorId, date, converter);
+        queue.lock.lock();
+        try {
+            if (queue.snapshot == null) {
+                List<QueueEntry> entries = new ArrayList<>(queue.byId.values());
+                entries.sort(ORDER);
+                List<AppointmentResponse> responses = new ArrayList<>(entries.size());
+                for (QueueEntry entry : entries) {
+                    responses.add(entry.response);
+                }
+                queue.snapshot = Collections.unmodifiableList(responses);
+            }
+            return queue.snapshot;
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    /**
+     * 候诊人数：队列已加载时直接读内存，否则按数据库统计（不触发加载）
+     */
+    public int waitingCount(Long doctorId, LocalDate date) {
+        DoctorQueue queue = queues.get(new Key(doctorId, date));
+        if (queue != null && queue.loaded) {
+            queue.lock.lock();
+            try {
+                return queue.byId.size();
+            } finally {
+                queue.lock.unlock();
+            }
+        }
+        return (int) appointmentRepo.countByDoctorIdAndAppointmentDateAndStatus(doctorId, date,
+                Appointment.AppointmentStatus.已预约);
+    }
+
+    /**
+     * 弹出队首病人，队列为空返回 null
+     */
+    public AppointmentResponse poll(Long doctorId, LocalDate date, Function<Appointment, AppointmentResponse> converter) {
+        DoctorQueue queue = load(doctorId, date, converter);
+        queue.lock.lock();
+        try {
+            for (;;) {
+                QueueEntry head = queue.heap.poll();
+                if (head == null) {
+                    return null;
+                }
+                // 取消/完成只从 byId 中删除，堆中的旧条目在这里跳过
+                if (queue.byId.remove(head.id, head)) {
+                    queue.snapshot = null;
+                    return head.response;
+                }
+            }
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    /**
+     * 新挂号（或叫号失败后放回）进入队列；队列尚未加载时忽略，首次访问时会从数据库读到
+     */
+    public void add(Long doctorId, LocalDate date, AppointmentResponse response) {
+        DoctorQueue queue = queues.get(new Key(doctorId, date));
+        if (queue == null) {
+            return;
+        }
+        queue.lock.lock();
+        try {
+            if (queue.loaded && !queue.byId.containsKey(response.getId())) {
+                QueueEntry entry = new QueueEntry(response);
+                queue.byId.put(entry.id, entry);
+                queue.heap.add(entry);
+                queue.snapshot = null;
+            }
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    /**
+     * 取消或完成就诊后移出队列（堆中条目延迟删除）
+     */
+    public void remove(Long doctorId, LocalDate date, Long appointmentId) {
+        DoctorQueue queue = queues.get(new Key(doctorId, date));
+        if (queue == null) {
+            return;
+        }
+        queue.lock.lock();
+        try {
+            if (queue.byId.remove(appointmentId) != null) {
+                queue.snapshot = null;
+                // 延迟删除的条目过多时重建堆，避免堆无限膨胀
+                if (queue.heap.size() > 2 * queue.byId.size() + 16) {
+                    queue.heap.clear();
+                    queue.heap.addAll(queue.byId.values());
+                }
+            }
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    /**
+     * 获取队列，首次访问时从数据库重建
+     * 加载在队列锁内进行：加载期间提交的挂号/取消会等待加载完成后再应用，按挂号ID去重
+     */
+    private DoctorQueue load(Long doctorId, LocalDate date, Function<Appointment, AppointmentResponse> converter) {
+        Key key = new Key(doctorId, date);
+        DoctorQueue queue = queues.get(key);
+        if (queue == null) {
+            // 新的一天出现时顺带清理过去日期的队列
+            LocalDate today = LocalDate.now();
+            queues.keySet().removeIf(k -> k.date().isBefore(today));
+            queue = queues.computeIfAbsent(key, k -> new DoctorQueue());
+        }
+        if (queue.loaded) {
+            return queue;
+        }
+        queue.lock.lock();
+        try {
+            if (!queue.loaded) {
+                List<AppointmentResponse> waiting = readOnlyTx.execute(status ->
+                        appointmentRepo.findQueueByDoctorAndDate(doctorId, date, Appointment.AppointmentStatus.已预约)
+                                .stream()
+                                .map(converter)
+                                .toList());
+                for (AppointmentResponse response : waiting) {
+                    QueueEntry entry = new QueueEntry(response);
+                    queue.byId.put(entry.id, entry);
+                    queue.heap.add(entry);
+                }
+                queue.loaded = true;
+            }
+        } finally {
+            queue.lock.unlock();
+        }
+        return queue;
+    }
+
+    private record Key(Long doctorId, LocalDate date) {
+    }
+
+    /**
+     * 一个医生一天的候诊队列，所有字段由 lock 保护（loaded 可无锁读取）
+     */
+    private static final class DoctorQueue {
+        final ReentrantLock lock = new ReentrantLock();
+        final PriorityQueue<QueueEntry> heap = new PriorityQueue<>(ORDER);
+        final Map<Long, QueueEntry> byId = new HashMap<>();
+        // 按出队顺序排好的只读列表，队列变化时置空，下次读取时重建
+        List<AppointmentResponse> snapshot;
+        volatile boolean loaded;
+    }
+
+    /**
+     * 队列中的一个病人
+     */
+    private static final class QueueEntry {
+        final Long id;
+        final int priority;
+        final LocalTime appointmentTime;
+        final Integer queueNumber;
+        final AppointmentResponse response;
+
+        QueueEntry(AppointmentResponse response) {
+            this.id = response.getId();
+            this.priority = response.getPriority() == null ? 0 : response.getPriority();
+            this.appointmentTime = response.getAppointmentTime();
+            this.queueNumber = response.getQueueNumber();
+            this.response = response;
+        }
+    }
+}
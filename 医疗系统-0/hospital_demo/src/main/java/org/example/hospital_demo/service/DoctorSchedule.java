@@ -0,0 +1,110 @@
+package org.example.hospital_demo.service;
+
+import java.time.DayOfWeek;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 医生排班（由 Doctor.schedule 文本解析）
+ * 支持的写法（以逗号、顿号、分号或空格分隔）：
+ *  - 周一上午、星期三下午、周五全天、周六（不写时段为全天）
+ *  - 周一至周五上午、周二到四下午、周一-周三
+ *  - 每天、每日、工作日、周末、全天候，后面同样可以跟时段
+ * 无法识别的片段记录在 unrecognized 中，不影响其余片段。
+ */
+public final class DoctorSchedule {
+
+    /**
+     * 出诊时段
+     */
+    public enum Period {
+        上午, 下午
+    }
+
+    private static final Pattern SEPARATOR = Pattern.compile("[,，、;；\\s]+");
+
+    private static final String DAY = "(?:周|星期)?([一二三四五六日天])";
+
+    private static final Pattern ITEM = Pattern.compile(
+            "^(?:(全天候|每天|每日|工作日|周末)|(?:周|星期)([一二三四五六日天])(?:(?:至|到|-|~|—)" + DAY + ")?)"
+                    + "(上午|下午|全天)?$");
+
+    private static final String WEEKDAY_CHARS = "一二三四五六日";
+
+    private final Map<DayOfWeek, EnumSet<Period>> days = new EnumMap<>(DayOfWeek.class);
+
+    private final List<String> unrecognized = new ArrayList<>();
+
+    private DoctorSchedule() {
+    }
+
+    /**
+     * 解析排班文本，null 或空白返回空排班
+     */
+    public static DoctorSchedule parse(String text) {
+        DoctorSchedule schedule = new DoctorSchedule();
+        if (text == null || text.isBlank()) {
+            return schedule;
+        }
+        for (String item : SEPARATOR.split(text.trim())) {
+            if (!item.isEmpty() && !schedule.add(item)) {
+                schedule.unrecognized.add(item);
+            }
+        }
+        return schedule;
+    }
+
+    private boolean add(String item) {
+        Matcher m = ITEM.matcher(item);
+        if (!m.matches()) {
+            return false;
+        }
+        EnumSet<Period> periods = m.group(4) == null || "全天".equals(m.group(4))
+                ? EnumSet.allOf(Period.class)
+                : EnumSet.of(Period.valueOf(m.group(4)));
+        List<DayOfWeek> range = new ArrayList<>();
+        if (m.group(1) != null) {
+            switch (m.group(1)) {
+                case "工作日" -> range.addAll(EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY));
+                case "周末" -> range.addAll(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY));
+                default -> range.addAll(EnumSet.allOf(DayOfWeek.class));
+            }
+        } else {
+            DayOfWeek from = dayOf(m.group(2));
+            DayOfWeek to = m.group(3) == null ? from : dayOf(m.group(3));
+            // 跨周末的范围（如周六至周一）按顺序绕回
+            for (DayOfWeek day = from; ; day = day.plus(1)) {
+                range.add(day);
+                if (day == to) {
+                    break;
+                }
+            }
+        }
+        for (DayOfWeek day : range) {
+            days.computeIfAbsent(day, d -> EnumSet.noneOf(Period.class)).addAll(periods);
+        }
+        return true;
+    }
+
+    private static DayOfWeek dayOf(String ch) {
+        int index = "天".equals(ch) ? 6 : WEEKDAY_CHARS.indexOf(ch);
+        return DayOfWeek.of(index + 1);
+    }
+
+    /**
+     * 某个星期几的出诊时段（不出诊返回空集合）
+     */
+    public Set<Period> periods(DayOfWeek day) {
+        EnumSet<Period> periods = days.get(day);
+        return periods == null ? Collections.emptySet() : Collections.unmodifiableSet(periods);
+    }
+
+    public boolean isEmpty() {
+        return days.isEmpty();
+    }
+
+    public List<String> unrecognized() {
+        return Collections.unmodifiableList(unrecognized);
+    }
+}
@@ -2,9 +2,12 @@ package org.example.hospital_demo.service;
 
 import org.example.hospital_demo.dto.Result;
 import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.repository.AppointmentArchiveRepository;
 import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.SlotTemplateRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -17,6 +20,15 @@ public class DoctorService {
     @Autowired
     private DoctorRepository doctorRepo;
 
+    @Autowired
+    private AppointmentArchiveRepository archiveRepo;
+
+    @Autowired
+    private AppointmentStatsRollup statsRollup;
+
+    @Autowired
+    private SlotTemplateRepository templateRepo;
+
     // 获取所有医生
     public Result<List<Doctor>> getAllDoctors() {
         return Result.success(doctorRepo.findAll());
@@ -48,11 +60,15 @@ public class DoctorService {
         return Result.success("更新成功", doctorRepo.save(doctor));
     }
 
-    // 删除医生
+    // 删除医生（在线挂号和号源级联删除，归档的历史挂号和号源模板一并删除）
+    @Transactional
     public Result<Void> deleteDoctor(Long id) {
         if (!doctorRepo.existsById(id)) {
             return Result.notFound("医生不存在");
         }
+        statsRollup.recordRemoval(null, id);
+        archiveRepo.deleteByDoctorId(id);
+        templateRepo.deleteByDoctorId(id);
         doctorRepo.deleteById(id);
         return Result.success("删除成功", null);
     }
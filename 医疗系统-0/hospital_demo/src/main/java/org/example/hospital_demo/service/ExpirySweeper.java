@@ -0,0 +1,354 @@
+package org.example.hospital_demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.repository.AppointmentArchiveRepository;
+import org.example.hospital_demo.repository.AppointmentRepository;
+import org.example.hospital_demo.repository.AppointmentSlotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 过期数据清理
+ * 就诊日期已过仍为"已预约"的挂号改为"已过期"，仍为"就诊中"（叫号后未点完成就诊）的改为"已就诊"，
+ * 已结束且超过归档天数的挂号移入归档表，
+ * 超过保留天数的历史号源删除。在线挂号表只保留近期数据，表和索引的大小与累计历史无关。
+ * 按ID游标分批处理：每批先只查ID，再按ID集合执行一条 UPDATE/DELETE，每批一个短事务，
+ * 批间暂停，单批耗时超过上限时减小批大小，避免长时间持锁影响正常挂号。
+ * 过期数据只涉及今天以前的日期，与当天及以后的挂号、号源不会争用同一行。
+ */
+@Service
+public class ExpirySweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpirySweeper.class);
+
+    // 自适应缩小批大小时的下限
+    private static final int MIN_CHUNK_SIZE = 50;
+
+    // 可归档的挂号状态（已结束，不会再被修改）；过期的"就诊中"在归档前已改为"已就诊"
+    private static final List<Appointment.AppointmentStatus> ARCHIVABLE = List.of(
+            Appointment.AppointmentStatus.已就诊, Appointment.AppointmentStatus.已取消, Appointment.AppointmentStatus.已过期);
+
+    @Value("${hospital.expiry.enabled:true}")
+    private boolean enabled;
+
+    // 执行间隔（分钟），启动后延迟 initial-delay-seconds 首次执行
+    @Value("${hospital.expiry.interval-minutes:60}")
+    private long intervalMinutes;
+
+    @Value("${hospital.expiry.initial-delay-seconds:60}")
+    private long initialDelaySeconds;
+
+    @Value("${hospital.expiry.chunk-size:500}")
+    private int chunkSize;
+
+    // 单批事务耗时上限（毫秒），超过时批大小减半
+    @Value("${hospital.expiry.max-chunk-ms:200}")
+    private long maxChunkMs;
+
+    // 批间暂停（毫秒）
+    @Value("${hospital.expiry.pause-ms:50}")
+    private long pauseMs;
+
+    // 号源保留天数：早于 今天 - slot-retention-days 的号源删除
+    @Value("${hospital.expiry.slot-retention-days:30}")
+    private int slotRetentionDays;
+
+    @Value("${hospital.archive.enabled:true}")
+    private boolean archiveEnabled;
+
+    // 就诊日期早于 今天 - after-days 的已结束挂号移入归档表（不小于号源保留天数，
+    // 否则号源一致性校验会把归档走的挂号算作缺失）
+    @Value("${hospital.archive.after-days:90}")
+    private int archiveAfterDays;
+
+    @Autowired
+    private AppointmentRepository appointmentRepo;
+
+    @Autowired
+    private AppointmentArchiveRepository archiveRepo;
+
+    @Autowired
+    private AppointmentSlotRepository slotRepo;
+
+    @Autowired
+    private SlotInventoryEngine inventory;
+
+    @Autowired
+    private AppointmentStatsRollup statsRollup;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private final TransactionTemplate txTemplate;
+
+    private final TransactionTemplate readOnlyTx;
+
+    // 同一时间只允许一次清理（定时任务与手动触发）
+    private final ReentrantLock running = new ReentrantLock();
+
+    // 当前进度：正在清理的数据类型、本次已处理行数、批次数
+    private volatile String phase;
+    private volatile long progressRows;
+    private volatile long progressChunks;
+
+    private volatile Map<String, Object> lastRun = Map.of("state", "未执行");
+
+    private volatile long lastSuccessEpochSeconds;
+
+    private LongAdder expiredAppointments;
+    private LongAdder archivedAppointments;
+    private LongAdder deletedSlots;
+    private LongAdder appointmentChunks;
+    private LongAdder archiveChunks;
+    private LongAdder slotChunks;
+    private MetricsRegistry.Histogram appointmentChunkTime;
+    private MetricsRegistry.Histogram archiveChunkTime;
+    private MetricsRegistry.Histogram slotChunkTime;
+    private MetricsRegistry.Histogram runTime;
+
+    private ScheduledExecutorService scheduler;
+
+    public ExpirySweeper(PlatformTransactionManager transactionManager) {
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void init() {
+        expiredAppointments = metrics.counter("hospital_expiry_rows_total", "过期清理处理的行数", "kind", "appointment");
+        archivedAppointments = metrics.counter("hospital_expiry_rows_total", "过期清理处理的行数", "kind", "archive");
+        deletedSlots = metrics.counter("hospital_expiry_rows_total", "过期清理处理的行数", "kind", "slot");
+        appointmentChunks = metrics.counter("hospital_expiry_chunks_total", "过期清理执行的批次数", "kind", "appointment");
+        archiveChunks = metrics.counter("hospital_expiry_chunks_total", "过期清理执行的批次数", "kind", "archive");
+        slotChunks = metrics.counter("hospital_expiry_chunks_total", "过期清理执行的批次数", "kind", "slot");
+        appointmentChunkTime = metrics.histogram("hospital_expiry_chunk_seconds", "过期清理单批事务耗时", "kind", "appointment");
+        archiveChunkTime = metrics.histogram("hospital_expiry_chunk_seconds", "过期清理单批事务耗时", "kind", "archive");
+        slotChunkTime = metrics.histogram("hospital_expiry_chunk_seconds", "过期清理单批事务耗时", "kind", "slot");
+        runTime = metrics.histogram("hospital_expiry_run_seconds", "一次过期清理的总耗时");
+        metrics.gauge("hospital_expiry_running", "过期清理是否正在执行", () -> running.isLocked() ? 1 : 0);
+        metrics.gauge("hospital_expiry_progress_rows", "本次过期清理已处理的行数", () -> progressRows);
+        metrics.gauge("hospital_expiry_last_success_timestamp_seconds", "上一次过期清理完成的时间",
+                () -> lastSuccessEpochSeconds);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "expiry-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException e) {
+                log.error("过期清理失败", e);
+            }
+        }, initialDelaySeconds, TimeUnit.MINUTES.toSeconds(intervalMinutes), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 当前进度和上一次清理的统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        boolean active = running.isLocked();
+        stats.put("running", active);
+        if (active) {
+            stats.put("phase", phase);
+            stats.put("processedRows", progressRows);
+            stats.put("chunks", progressChunks);
+        }
+        stats.put("chunkSize", chunkSize);
+        stats.put("pauseMs", pauseMs);
+        stats.put("slotRetentionDays", slotRetentionDays);
+        stats.put("archiveBefore", archiveEnabled ? archiveCutoff(LocalDate.now()).toString() : null);
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    /**
+     * 立即执行一次清理，已有清理在执行时返回 409
+     */
+    public Result<Map<String, Object>> sweep() {
+        if (!running.tryLock()) {
+            return Result.error(409, "过期清理正在进行中");
+        }
+        try {
+            return Result.success(run(LocalDate.now()));
+        } finally {
+            phase = null;
+            running.unlock();
+        }
+    }
+
+    private Map<String, Object> run(LocalDate today) {
+        long start = System.nanoTime();
+        progressRows = 0;
+        progressChunks = 0;
+
+        phase = "appointment";
+        Sweep appointments = expire(Appointment.AppointmentStatus.已预约, Appointment.AppointmentStatus.已过期, today);
+        // 已叫号但医生没有点完成就诊：病人已经到诊，按已就诊结束，之后随已就诊的挂号归档
+        Sweep visits = expire(Appointment.AppointmentStatus.就诊中, Appointment.AppointmentStatus.已就诊, today);
+
+        Sweep archived = new Sweep();
+        LocalDate archiveBefore = archiveCutoff(today);
+        if (archiveEnabled) {
+            phase = "archive";
+            // 复制和删除在同一个事务中，删除只删已复制成功的行
+            archived = sweep(archiveChunks, archiveChunkTime, archivedAppointments,
+                    (afterId, limit) -> appointmentRepo.findArchivableIds(ARCHIVABLE, archiveBefore, afterId, limit),
+                    ids -> {
+                        archiveRepo.copyFromAppointments(ids, ARCHIVABLE, archiveBefore);
+                        return appointmentRepo.deleteArchived(ids);
+                    });
+        }
+
+        phase = "slot";
+        LocalDate slotBefore = today.minusDays(slotRetentionDays);
+        Sweep slots = sweep(slotChunks, slotChunkTime, deletedSlots,
+                (afterId, limit) -> slotRepo.findExpiredIds(slotBefore, afterId, limit),
+                ids -> slotRepo.deleteExpired(ids, slotBefore));
+        // 内存库存只需要今天及以后的号源
+        int evictedDays = inventory.evictBefore(today);
+
+        long elapsedNanos = System.nanoTime() - start;
+        runTime.recordNanos(elapsedNanos);
+        lastSuccessEpochSeconds = System.currentTimeMillis() / 1000;
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("expiredAppointments", appointments.rows);
+        stats.put("appointmentChunks", appointments.chunks + visits.chunks);
+        stats.put("closedVisits", visits.rows);
+        stats.put("archivedAppointments", archived.rows);
+        stats.put("archiveChunks", archived.chunks);
+        stats.put("archiveBefore", archiveEnabled ? archiveBefore.toString() : null);
+        stats.put("deletedSlots", slots.rows);
+        stats.put("slotChunks", slots.chunks);
+        stats.put("slotsBefore", slotBefore.toString());
+        stats.put("evictedDoctorDays", evictedDays);
+        stats.put("maxChunkMs", Math.max(Math.max(appointments.maxChunkMs, visits.maxChunkMs),
+                Math.max(archived.maxChunkMs, slots.maxChunkMs)));
+        stats.put("elapsedMs", elapsedMs);
+        stats.put("finishedAt", LocalDateTime.now().toString());
+        lastRun = stats;
+        if (appointments.rows > 0 || visits.rows > 0 || archived.rows > 0 || slots.rows > 0) {
+            log.info("过期清理完成：{} 条挂号过期，{} 条就诊中改为已就诊，{} 条挂号归档，删除 {} 个历史号源，耗时 {} ms",
+                    appointments.rows, visits.rows, archived.rows, slots.rows, elapsedMs);
+        }
+        return stats;
+    }
+
+    /**
+     * 把就诊日期已过、仍为 from 状态的挂号分批改为 to，并在同一事务中记录统计增量
+     */
+    private Sweep expire(Appointment.AppointmentStatus from, Appointment.AppointmentStatus to, LocalDate today) {
+        return sweep(appointmentChunks, appointmentChunkTime, expiredAppointments,
+                (afterId, limit) -> appointmentRepo.findExpiredIds(from, today, afterId, limit),
+                ids -> {
+                    int updated = appointmentRepo.updateStatusBatch(ids, from, to, today);
+                    statsRollup.recordBulkTransition(ids, from, to);
+                    return updated;
+                });
+    }
+
+    private LocalDate archiveCutoff(LocalDate today) {
+        return today.minusDays(Math.max(archiveAfterDays, slotRetentionDays));
+    }
+
+    /**
+     * 按ID游标分批处理一类数据，直到没有符合条件的行或线程被中断
+     * @param findIds 在只读事务中查询游标之后的一批ID
+     * @param apply 在写事务中对一批ID执行 UPDATE/DELETE，返回影响行数
+     */
+    private Sweep sweep(LongAdder chunkCounter, MetricsRegistry.Histogram chunkTime, LongAdder rowCounter,
+                        BiFunction<Long, Limit, List<Long>> findIds, Function<List<Long>, Integer> apply) {
+        Sweep result = new Sweep();
+        int size = chunkSize;
+        long afterId = 0L;
+        while (!Thread.currentThread().isInterrupted()) {
+            long cursor = afterId;
+            int limit = size;
+            List<Long> ids = readOnlyTx.execute(status -> findIds.apply(cursor, Limit.of(limit)));
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+
+            long chunkStart = System.nanoTime();
+            Integer affected = txTemplate.execute(status -> apply.apply(ids));
+            long chunkNanos = System.nanoTime() - chunkStart;
+            int rows = affected == null ? 0 : affected;
+
+            chunkTime.recordNanos(chunkNanos);
+            chunkCounter.increment();
+            rowCounter.add(rows);
+            result.rows += rows;
+            result.chunks++;
+            result.maxChunkMs = Math.max(result.maxChunkMs, TimeUnit.NANOSECONDS.toMillis(chunkNanos));
+            progressRows += rows;
+            progressChunks++;
+
+            // 单批持锁时间过长时减小批大小，恢复后逐步加回配置值
+            if (TimeUnit.NANOSECONDS.toMillis(chunkNanos) > maxChunkMs) {
+                size = Math.max(MIN_CHUNK_SIZE, size / 2);
+            } else if (size < chunkSize) {
+                size = Math.min(chunkSize, size * 2);
+            }
+            if (ids.size() < limit) {
+                break;
+            }
+            if (pauseMs > 0) {
+                try {
+                    Thread.sleep(pauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return result;
+    }
+
+    private static final class Sweep {
+        long rows;
+        long chunks;
+        long maxChunkMs;
+    }
+}
@@ -0,0 +1,207 @@
+package org.example.hospital_demo.service;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.example.hospital_demo.dto.Result;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 按需飞行记录（JDK Flight Recorder）
+ * 同一时间只允许一个记录；记录时长和文件大小都有上限，到时自动停止并写入文件，停止后可下载 .jfr 文件。
+ * 记录中包含挂号阶段事件（BookingPhaseEvent），未开始记录时这些事件不产生任何数据。
+ * 记录目录中只保留最近 max-files 个 hospital-*.jfr 文件，开始新记录时删除更早的文件。
+ */
+@Service
+public class FlightRecorderService {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final Pattern FILE_NAME = Pattern.compile("hospital-\\d{8}-\\d{6}\\.jfr");
+
+    // 单次记录的最长时间（秒）
+    @Value("${hospital.jfr.max-duration-seconds:300}")
+    private long maxDurationSeconds;
+
+    // 单次记录的最大文件大小（MB）
+    @Value("${hospital.jfr.max-size-mb:100}")
+    private long maxSizeMb;
+
+    // 记录文件目录，默认系统临时目录
+    @Value("${hospital.jfr.directory:${java.io.tmpdir}}")
+    private String directory;
+
+    // 保留的记录文件数（包括正在进行的记录）
+    @Value("${hospital.jfr.max-files:5}")
+    private int maxFiles;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 以下字段由 lock 保护
+    private Recording recording;
+    private Path file;
+
+    /**
+     * 开始记录
+     * @param durationSeconds 记录时长，超过上限按上限处理
+     * @param settings JFR 配置名：default（低开销）或 profile（含更多采样）
+     */
+    public Result<Map<String, Object>> start(long durationSeconds, String settings) {
+        if (durationSeconds <= 0) {
+            return Result.badRequest("记录时长必须大于 0");
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings);
+        } catch (IOException | ParseException e) {
+            return Result.badRequest("无效的记录配置：" + settings);
+        }
+        lock.lock();
+        try {
+            if (recording != null && isActive()) {
+                return Result.error(409, "已有正在进行的记录，请先停止");
+            }
+            closeRecording();
+            pruneFiles(Math.max(0, maxFiles - 1));
+            Path target = Paths.get(directory, "hospital-" + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+            Recording next = new Recording(configuration);
+            next.setName("hospital-on-demand");
+            next.setToDisk(true);
+            next.setDuration(Duration.ofSeconds(Math.min(durationSeconds, maxDurationSeconds)));
+            next.setMaxSize(maxSizeMb * 1024 * 1024);
+            next.setDestination(target);
+            next.start();
+            recording = next;
+            file = target;
+            return Result.success("开始记录", describe());
+        } catch (IOException e) {
+            return Result.error("无法创建记录文件：" + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 停止记录并写入文件
+     */
+    public Result<Map<String, Object>> stop() {
+        lock.lock();
+        try {
+            if (recording == null) {
+                return Result.notFound("当前没有记录");
+            }
+            if (isActive()) {
+                recording.stop();
+            }
+            return Result.success("记录已停止", describe());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前记录状态
+     */
+    public Map<String, Object> status() {
+        lock.lock();
+        try {
+            return describe();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 已停止记录的文件，记录中或没有记录时返回 null
+     */
+    public Path recordedFile() {
+        lock.lock();
+        try {
+            if (recording == null || isActive() || !Files.exists(file)) {
+                return null;
+            }
+            return file;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            closeRecording();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录是否仍在进行；设置了输出文件的记录停止后会写入文件并直接关闭（CLOSED）
+     */
+    private boolean isActive() {
+        RecordingState state = recording.getState();
+        return state == RecordingState.NEW || state == RecordingState.DELAYED || state == RecordingState.RUNNING;
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    /**
+     * 删除较早的记录文件，只保留最近 keep 个（文件名中的时间按字典序即时间顺序）；目录不存在时创建
+     */
+    private void pruneFiles(int keep) throws IOException {
+        Path dir = Files.createDirectories(Paths.get(directory));
+        List<Path> files;
+        try (Stream<Path> listed = Files.list(dir)) {
+            files = listed.filter(p -> FILE_NAME.matcher(p.getFileName().toString()).matches())
+                    .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                    .toList();
+        }
+        for (Path old : files.subList(0, Math.max(0, files.size() - keep))) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    private Map<String, Object> describe() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", recording == null ? "NONE" : recording.getState().name());
+        if (recording != null) {
+            status.put("startTime", recording.getStartTime() == null ? null : recording.getStartTime().toString());
+            status.put("durationSeconds", recording.getDuration() == null ? null : recording.getDuration().toSeconds());
+            status.put("file", file.getFileName().toString());
+            if (!isActive() && Files.exists(file)) {
+                try {
+                    status.put("sizeBytes", Files.size(file));
+                } catch (IOException e) {
+                    status.put("sizeBytes", null);
+                }
+            }
+        }
+        status.put("maxDurationSeconds", maxDurationSeconds);
+        status.put("maxSizeMb", maxSizeMb);
+        return status;
+    }
+}
@@ -0,0 +1,193 @@
+package org.example.hospital_demo.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 指标注册表
+ * 计数器和直方图基于 LongAdder（按 CPU 分段计数，并发记录时不争用同一个变量）；
+ * 仪表在采集时读取当前值。采集接口按 Prometheus 文本格式输出全部指标。
+ * 记录方应缓存 counter/histogram 返回的对象，热路径上只做一次 LongAdder 累加。
+ */
+@Component
+public class MetricsRegistry {
+
+    // 延迟直方图桶上限（秒）
+    private static final double[] LATENCY_BUCKETS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private final ConcurrentHashMap<String, Family> families = new ConcurrentHashMap<>();
+
+    /**
+     * 获取（或创建）计数器，labels 为成对的标签名和标签值
+     */
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, "counter").series.computeIfAbsent(labelString(labels), k -> new LongAdder());
+    }
+
+    /**
+     * 获取（或创建）延迟直方图，单位秒
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "histogram").series.computeIfAbsent(labelString(labels), k -> new Histogram());
+    }
+
+    /**
+     * 注册仪表，采集时调用 value 读取当前值
+     */
+    public void gauge(String name, String help, Supplier<Number> value, String... labels) {
+        family(name, help, "gauge").series.put(labelString(labels), value);
+    }
+
+    /**
+     * 注册由其他组件自行累计的计数器（只增不减），采集时调用 value 读取当前值
+     */
+    public void counter(String name, String help, Supplier<Number> value, String... labels) {
+        family(name, help, "counter").series.put(labelString(labels), value);
+    }
+
+    /**
+     * 按 Prometheus 文本格式输出全部指标
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        for (Family family : new TreeMap<>(families).values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> series : new TreeMap<>(family.series).entrySet()) {
+                String labels = series.getKey();
+                Object metric = series.getValue();
+                if (metric instanceof LongAdder counter) {
+                    sample(out, family.name, labels, counter.sum());
+                } else if (metric instanceof Histogram histogram) {
+                    histogram.write(out, family.name, labels);
+                } else if (metric instanceof Supplier<?> supplier) {
+                    Object value;
+                    try {
+                        value = supplier.get();
+                    } catch (RuntimeException e) {
+                        continue;
+                    }
+                    if (value instanceof Number number) {
+                        sample(out, family.name, labels, number.doubleValue());
+                    }
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("指标 " + name + " 已注册为 " + family.type);
+        }
+        return family;
+    }
+
+    private static String labelString(String... labels) {
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String value) {
+        return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * 一个指标名下的全部标签组合
+     */
+    private static final class Family {
+        final String name;
+        final String help;
+        final String type;
+        final ConcurrentHashMap<String, Object> series = new ConcurrentHashMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    /**
+     * 固定桶延迟直方图：每个桶、总和、总数各一个 LongAdder
+     */
+    public static final class Histogram {
+
+        private static final long[] BOUNDS_NANOS = new long[LATENCY_BUCKETS.length];
+
+        static {
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                BOUNDS_NANOS[i] = (long) (LATENCY_BUCKETS[i] * TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+
+        // 最后一个桶为 +Inf
+        private final LongAdder[] buckets = new LongAdder[LATENCY_BUCKETS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+        private final LongAdder count = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void recordNanos(long nanos) {
+            int i = 0;
+            while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            sumNanos.add(nanos);
+            count.increment();
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        void write(StringBuilder out, String name, String labels) {
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                String le = i < LATENCY_BUCKETS.length ? Double.toString(LATENCY_BUCKETS[i]) : "+Inf";
+                sample(out, name + "_bucket", prefix + "le=\"" + le + "\"", cumulative);
+            }
+            sample(out, name + "_sum", labels, sumNanos.sum() / 1e9);
+            sample(out, name + "_count", labels, cumulative);
+        }
+    }
+}
@@ -2,9 +2,11 @@ package org.example.hospital_demo.service;
 
 import org.example.hospital_demo.dto.Result;
 import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentArchiveRepository;
 import org.example.hospital_demo.repository.PatientRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -17,6 +19,12 @@ public class PatientService {
     @Autowired
     private PatientRepository patientRepo;
 
+    @Autowired
+    private AppointmentArchiveRepository archiveRepo;
+
+    @Autowired
+    private AppointmentStatsRollup statsRollup;
+
     // 获取所有病人
     public Result<List<Patient>> getAllPatients() {
         return Result.success(patientRepo.findAll());
@@ -53,11 +61,14 @@ public class PatientService {
         return Result.success("更新成功", patientRepo.save(patient));
     }
 
-    // 删除病人
+    // 删除病人（在线挂号级联删除，归档的历史挂号一并删除）
+    @Transactional
     public Result<Void> deletePatient(Long id) {
         if (!patientRepo.existsById(id)) {
             return Result.notFound("病人不存在");
         }
+        statsRollup.recordRemoval(id, null);
+        archiveRepo.deleteByPatientId(id);
         patientRepo.deleteById(id);
         return Result.success("删除成功", null);
     }
@@ -0,0 +1,140 @@
+package org.example.hospital_demo.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.example.hospital_demo.config.HikariPoolMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 排队号分配器
+ * 排队号按 (医生, 日期) 编号，从 1 开始。每个实例一次向 queue_sequence 表申请一个号段（hi/lo），
+ * 号段内的分配只是一次内存 CAS；号段用完才访问数据库。
+ * 号段申请在独立事务中提交，挂号事务回滚也不会让号段被其他实例重复申请，重启后从数据库中的 hi 值继续。
+ * 号段申请使用独立的小连接池：申请发生在挂号事务内部，若与挂号共用连接池，高并发时所有连接
+ * 都被等待号段的挂号事务占住，申请号段本身拿不到连接，只能等到连接超时。
+ */
+@Component
+public class QueueNumberAllocator {
+
+    @Value("${hospital.queue-number.block-size:20}")
+    private int blockSize;
+
+    private final HikariDataSource sequenceDataSource;
+
+    private final JdbcTemplate jdbc;
+
+    private final TransactionTemplate sequenceTx;
+
+    private final ConcurrentHashMap<Key, Holder> holders = new ConcurrentHashMap<>();
+
+    public QueueNumberAllocator(DataSourceProperties dataSourceProperties, HikariPoolMetrics poolMetrics,
+                                @Value("${hospital.queue-number.pool-size:2}") int poolSize) {
+        this.sequenceDataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        this.sequenceDataSource.setPoolName("queue-number-pool");
+        this.sequenceDataSource.setMaximumPoolSize(poolSize);
+        this.sequenceDataSource.setMinimumIdle(0);
+        this.sequenceDataSource.setMetricsTrackerFactory(poolMetrics);
+        this.jdbc = new JdbcTemplate(sequenceDataSource);
+        this.sequenceTx = new TransactionTemplate(new DataSourceTransactionManager(sequenceDataSource));
+    }
+
+    @PreDestroy
+    public void close() {
+        sequenceDataSource.close();
+    }
+
+    /**
+     * 分配下一个排队号
+     */
+    public int next(Long doctorId, LocalDate date) {
+        Key key = new Key(doctorId, date);
+        Holder holder = holders.get(key);
+        if (holder == null) {
+            // 新的一天出现时顺带清理过去日期的号段
+            LocalDate today = LocalDate.now();
+            holders.keySet().removeIf(k -> k.date().isBefore(today));
+            holder = holders.computeIfAbsent(key, k -> new Holder());
+        }
+        for (;;) {
+            Block block = holder.current.get();
+            if (block != null) {
+                int value = block.next.getAndIncrement();
+                if (value < block.end) {
+                    return value;
+                }
+            }
+            holder.refillLock.lock();
+            try {
+                // 只有一个线程负责申请新号段，其他线程拿到新号段后继续 CAS
+                if (holder.current.get() == block) {
+                    holder.current.set(allocateBlock(key));
+                }
+            } finally {
+                holder.refillLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 向数据库申请一个号段 [start, start + blockSize)
+     */
+    private Block allocateBlock(Key key) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Integer end = sequenceTx.execute(status -> {
+                    // 原子推进序列（行锁保证多实例不会拿到重叠号段），该医生当天还没有序列行时插入
+                    int updated = jdbc.update("UPDATE queue_sequence SET next_value = next_value + ? "
+                            + "WHERE doctor_id = ? AND seq_date = ?", blockSize, key.doctorId(), key.date());
+                    if (updated == 0) {
+                        jdbc.update("INSERT INTO queue_sequence (doctor_id, seq_date, next_value) VALUES (?, ?, ?)",
+                                key.doctorId(), key.date(), 1 + blockSize);
+                        return 1 + blockSize;
+                    }
+                    return jdbc.queryForObject("SELECT next_value FROM queue_sequence "
+                            + "WHERE doctor_id = ? AND seq_date = ?", Integer.class, key.doctorId(), key.date());
+                });
+                return new Block(end - blockSize, end);
+            } catch (DataIntegrityViolationException e) {
+                // 其他实例同时创建了该序列行，重试走 UPDATE 分支
+                if (attempt >= 3) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private record Key(Long doctorId, LocalDate date) {
+    }
+
+    private static final class Holder {
+        final AtomicReference<Block> current = new AtomicReference<>();
+        final ReentrantLock refillLock = new ReentrantLock();
+    }
+
+    /**
+     * 本实例持有的一个号段
+     */
+    private static final class Block {
+        final AtomicInteger next;
+        final int end;
+
+        Block(int start, int end) {
+            this.next = new AtomicInteger(start);
+            this.end = end;
+        }
+    }
+}
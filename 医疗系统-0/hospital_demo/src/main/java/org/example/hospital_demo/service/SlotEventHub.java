@@ -0,0 +1,328 @@
+package org.example.hospital_demo.service;
+
+import jakarta.annotation.PostConstruct;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.dto.SlotDelta;
+import org.example.hospital_demo.dto.SlotResponse;
+import org.example.hospital_demo.dto.SlotUpdateMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 号源/排队变化推送中心（Server-Sent Events）
+ * 浏览器按 (医生, 日期) 订阅；挂号、取消、叫号提交后只记录"哪些号源/队列变了"，
+ * 由推送线程每个周期把同一医生同一天的变化合并成一条消息，序列化一次后发给该 key 的所有连接。
+ * 空闲连接不占用线程，只在推送和心跳时写出。
+ * 写出由发送线程池完成，每个连接有自己的待发队列，同一时间只有一个线程在写；
+ * 客户端读得慢、待发消息积压超过上限时断开该连接（客户端重连后重新收到全量状态），慢连接不会拖住推送线程和其他连接。
+ */
+@Component
+public class SlotEventHub {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotEventHub.class);
+
+    @Autowired
+    private SlotInventoryEngine inventory;
+
+    @Autowired
+    private DoctorQueueManager doctorQueues;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${hospital.sse.push-interval-ms:500}")
+    private long pushIntervalMs;
+
+    @Value("${hospital.sse.heartbeat-seconds:25}")
+    private long heartbeatSeconds;
+
+    @Value("${hospital.sse.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${hospital.sse.sender-threads:4}")
+    private int senderThreads;
+
+    @Value("${hospital.sse.max-queued-messages:32}")
+    private int maxQueuedMessages;
+
+    @Autowired
+    private SlotService slotService;
+
+    private final ConcurrentHashMap<Key, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    // 待推送的变化，只在 compute 中修改，推送线程 remove 后独占读取
+    private final ConcurrentHashMap<Key, Pending> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder messagesSent = new LongAdder();
+
+    // 因待发消息积压而断开的慢连接数
+    private final LongAdder slowDropped = new LongAdder();
+
+    private ScheduledExecutorService pusher;
+
+    private ExecutorService senders;
+
+    @PostConstruct
+    public void start() {
+        pusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "slot-event-pusher");
+            t.setDaemon(true);
+            return t;
+        });
+        pusher.scheduleWithFixedDelay(this::push, pushIntervalMs, pushIntervalMs, TimeUnit.MILLISECONDS);
+        pusher.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        AtomicInteger senderIds = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread t = new Thread(r, "slot-event-sender-" + senderIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 关闭前主动结束所有推送连接：Web 服务器优雅停机会等待未结束的异步请求，
+     * 放在 @PreDestroy 中会晚于停机等待
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void stop() {
+        pusher.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+        subscribers.clear();
+        senders.shutdownNow();
+    }
+
+    /**
+     * 订阅某医生某天的号源和排队变化，订阅后立即推送一次当前全部号源和候诊人数
+     * 医生必须存在、日期必须在号源生成窗口内，否则不建立连接（400/404）
+     */
+    public SseEmitter subscribe(Long doctorId, LocalDate date) {
+        Result<Void> checked = slotService.checkDay(doctorId, date, true);
+        if (checked != null) {
+            throw new ResponseStatusException(HttpStatus.valueOf(checked.getCode()), checked.getMessage());
+        }
+        return register(doctorId, date, new SseEmitter(timeoutMs));
+    }
+
+    /**
+     * 登记一个已校验的连接并发送全量状态
+     */
+    SseEmitter register(Long doctorId, LocalDate date, SseEmitter emitter) {
+        Key key = new Key(doctorId, date);
+        Subscriber subscriber = new Subscriber(key, emitter);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        subscribers.compute(key, (k, set) -> {
+            Set<Subscriber> current = set != null ? set : ConcurrentHashMap.newKeySet();
+            current.add(subscriber);
+            return current;
+        });
+
+        List<SlotDelta> slots = inventory.getSlots(doctorId, date, false).stream()
+                .map(this::toDelta)
+                .toList();
+        SlotUpdateMessage initial = new SlotUpdateMessage(doctorId, date, slots, doctorQueues.waitingCount(doctorId, date));
+        enqueue(subscriber, new Outgoing(objectMapper.writeValueAsString(initial)));
+        return emitter;
+    }
+
+    /**
+     * 号源剩余数量变化（事务提交后调用）
+     */
+    public void slotChanged(Long doctorId, LocalDate date, Long slotId) {
+        Key key = new Key(doctorId, date);
+        if (slotId == null || !subscribers.containsKey(key)) {
+            return;
+        }
+        pending.compute(key, (k, p) -> {
+            Pending changes = p != null ? p : new Pending();
+            changes.slotIds.add(slotId);
+            return changes;
+        });
+    }
+
+    /**
+     * 候诊队列变化（事务提交后调用）
+     */
+    public void queueChanged(Long doctorId, LocalDate date) {
+        Key key = new Key(doctorId, date);
+        if (!subscribers.containsKey(key)) {
+            return;
+        }
+        pending.compute(key, (k, p) -> {
+            Pending changes = p != null ? p : new Pending();
+            changes.queueChanged = true;
+            return changes;
+        });
+    }
+
+    /**
+     * 推送统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("topics", subscribers.size());
+        stats.put("connections", subscribers.values().stream().mapToInt(Set::size).sum());
+        stats.put("messagesSent", messagesSent.sum());
+        stats.put("slowDropped", slowDropped.sum());
+        return stats;
+    }
+
+    /**
+     * 每个周期把累积的变化合并推送
+     */
+    void push() {
+        for (Key key : pending.keySet()) {
+            Pending changes = pending.remove(key);
+            Set<Subscriber> set = subscribers.get(key);
+            if (changes == null || set == null || set.isEmpty()) {
+                continue;
+            }
+            try {
+                List<SlotDelta> slots = changes.slotIds.isEmpty() ? null
+                        : inventory.getSlots(key.doctorId(), key.date(), false).stream()
+                                .filter(slot -> changes.slotIds.contains(slot.getSlotId()))
+                                .map(this::toDelta)
+                                .toList();
+                Integer waiting = changes.queueChanged ? doctorQueues.waitingCount(key.doctorId(), key.date()) : null;
+                Outgoing update = new Outgoing(objectMapper.writeValueAsString(
+                        new SlotUpdateMessage(key.doctorId(), key.date(), slots, waiting)));
+                for (Subscriber subscriber : set) {
+                    enqueue(subscriber, update);
+                }
+            } catch (RuntimeException e) {
+                log.warn("号源变化推送失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 定期发送注释行，及时发现已断开的连接，也防止中间代理关闭空闲连接
+     */
+    private void heartbeat() {
+        subscribers.values().forEach(set -> set.forEach(subscriber -> enqueue(subscriber, Outgoing.HEARTBEAT)));
+    }
+
+    /**
+     * 放入连接的待发队列，没有线程在写时交给发送线程
+     * 积压超过上限说明客户端跟不上，断开连接而不是继续堆积
+     */
+    private void enqueue(Subscriber subscriber, Outgoing message) {
+        if (subscriber.queued.incrementAndGet() > maxQueuedMessages) {
+            slowDropped.increment();
+            log.warn("号源推送连接积压超过 {} 条消息，断开（医生ID {}，日期 {}）",
+                    maxQueuedMessages, subscriber.key.doctorId(), subscriber.key.date());
+            unsubscribe(subscriber);
+            subscriber.emitter.complete();
+            return;
+        }
+        subscriber.outbox.add(message);
+        if (subscriber.writing.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> drain(subscriber));
+            } catch (RuntimeException e) {
+                // 已停机
+                subscriber.writing.set(false);
+            }
+        }
+    }
+
+    /**
+     * 在发送线程上依次写出一个连接的待发消息
+     */
+    private void drain(Subscriber subscriber) {
+        do {
+            Outgoing message;
+            while ((message = subscriber.outbox.poll()) != null) {
+                subscriber.queued.decrementAndGet();
+                try {
+                    if (message.isHeartbeat()) {
+                        subscriber.emitter.send(SseEmitter.event().comment("ping"));
+                    } else {
+                        subscriber.emitter.send(SseEmitter.event().name("update").data(message.json()));
+                        messagesSent.increment();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    unsubscribe(subscriber);
+                    subscriber.outbox.clear();
+                    break;
+                }
+            }
+            subscriber.writing.set(false);
+            // 释放写标记后若又有新消息且没有其他线程接手，继续写
+        } while (!subscriber.outbox.isEmpty() && subscriber.writing.compareAndSet(false, true));
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.key, (k, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private SlotDelta toDelta(SlotResponse slot) {
+        return new SlotDelta(slot.getSlotId(), slot.getTimeSlot(), slot.getAvailableSlots(), slot.getAvailableEmergencySlots());
+    }
+
+    private record Key(Long doctorId, LocalDate date) {
+    }
+
+    /**
+     * 待发队列中的一条：号源变化消息（json），或 json 为 null 的心跳
+     */
+    private record Outgoing(String json) {
+        static final Outgoing HEARTBEAT = new Outgoing(null);
+
+        boolean isHeartbeat() {
+            return json == null;
+        }
+    }
+
+    /**
+     * 一个推送连接及其待发队列
+     */
+    private static final class Subscriber {
+        final Key key;
+        final SseEmitter emitter;
+        final ConcurrentLinkedQueue<Outgoing> outbox = new ConcurrentLinkedQueue<>();
+        // 已入队未写出的消息数
+        final AtomicInteger queued = new AtomicInteger();
+        // 是否已有发送线程在写该连接
+        final AtomicBoolean writing = new AtomicBoolean();
+
+        Subscriber(Key key, SseEmitter emitter) {
+            this.key = key;
+            this.emitter = emitter;
+        }
+    }
+
+    /**
+     * 一个推送周期内累积的变化
+     */
+    private static final class Pending {
+        final Set<Long> slotIds = new HashSet<>();
+        boolean queueChanged;
+    }
+}
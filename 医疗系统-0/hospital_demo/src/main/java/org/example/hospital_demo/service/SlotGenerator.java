@@ -0,0 +1,366 @@
+package org.example.hospital_demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.AppointmentSlot;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.SlotTemplate;
+import org.example.hospital_demo.repository.AppointmentSlotRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.SlotTemplateRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 号源批量生成（滚动窗口）
+ * 按医生排班（Doctor.schedule）和号源模板，为今天起若干天内缺少的时间段生成号源；已存在的时间段不动，
+ * 因此可以重复执行。医生按 ID 分页处理，每页一次查出已有号源的键，新号源用无状态会话按 JDBC 批量插入，
+ * 提交后登记到内存号源库存。每天定时执行一次，启动时也执行一次。
+ */
+@Service
+public class SlotGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotGenerator.class);
+
+    @Value("${hospital.slot.generator.enabled:true}")
+    private boolean enabled;
+
+    // 生成今天起多少天的号源
+    @Value("${hospital.slot.generator.horizon-days:30}")
+    private int horizonDays;
+
+    // 每天执行时间
+    @Value("${hospital.slot.generator.run-at:02:00}")
+    private String runAt;
+
+    @Value("${hospital.slot.generator.run-on-startup:true}")
+    private boolean runOnStartup;
+
+    // 每页处理的医生数
+    @Value("${hospital.slot.generator.doctor-page-size:500}")
+    private int doctorPageSize;
+
+    @Value("${hospital.slot.generator.jdbc-batch-size:500}")
+    private int jdbcBatchSize;
+
+    // 上午、下午出诊时间（时间段从开始时间起按模板长度切分，不超过结束时间）
+    @Value("${hospital.slot.generator.morning:08:00-11:30}")
+    private String morning;
+
+    @Value("${hospital.slot.generator.afternoon:14:00-17:00}")
+    private String afternoon;
+
+    // 没有模板的医生使用的默认值
+    @Value("${hospital.slot.generator.default-slot-minutes:30}")
+    private int defaultSlotMinutes;
+
+    @Value("${hospital.slot.generator.default-total-slots:3}")
+    private int defaultTotalSlots;
+
+    @Value("${hospital.slot.generator.default-emergency-reserved:1}")
+    private int defaultEmergencyReserved;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private SlotTemplateRepository templateRepo;
+
+    @Autowired
+    private AppointmentSlotRepository slotRepo;
+
+    @Autowired
+    private SlotInventoryEngine inventory;
+
+    @Autowired
+    private SlotReadCache slotCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private final TransactionTemplate readOnlyTx;
+
+    // 同一时间只允许一次生成（定时任务与手动触发）
+    private final ReentrantLock running = new ReentrantLock();
+
+    private volatile Map<String, Object> lastRun = Map.of("state", "未执行");
+
+    private LongAdder generated;
+
+    private ScheduledExecutorService scheduler;
+
+    public SlotGenerator(PlatformTransactionManager transactionManager) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void init() {
+        generated = metrics.counter("hospital_slot_generated_total", "按排班批量生成的号源数");
+    }
+
+    /**
+     * 启动后在生成线程上补齐窗口内的号源（不阻塞启动事件），并安排每天定时执行
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "slot-generator");
+            t.setDaemon(true);
+            return t;
+        });
+        if (runOnStartup) {
+            scheduler.execute(() -> {
+                try {
+                    generate(LocalDate.now(), horizonDays);
+                } catch (RuntimeException e) {
+                    log.error("启动时生成号源失败", e);
+                }
+            });
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(LocalTime.parse(runAt.trim()));
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        long delay = Duration.between(now, next).toMillis();
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                generate(LocalDate.now(), horizonDays);
+            } catch (RuntimeException e) {
+                log.error("定时生成号源失败", e);
+            }
+        }, delay, TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public int getHorizonDays() {
+        return horizonDays;
+    }
+
+    /**
+     * 上一次生成的统计
+     */
+    public Map<String, Object> lastRun() {
+        return lastRun;
+    }
+
+    /**
+     * 生成 [from, from + days) 内缺少的号源
+     */
+    public Result<Map<String, Object>> generate(LocalDate from, int days) {
+        if (days <= 0 || days > 366) {
+            return Result.badRequest("生成天数必须在 1 到 366 之间");
+        }
+        if (!running.tryLock()) {
+            return Result.error(409, "号源生成正在进行中");
+        }
+        try {
+            return Result.success(run(from, from.plusDays(days - 1)));
+        } finally {
+            running.unlock();
+        }
+    }
+
+    private Map<String, Object> run(LocalDate from, LocalDate to) {
+        long start = System.nanoTime();
+        Window[] windows = {Window.parse(morning), Window.parse(afternoon)};
+        // 同一模板长度、同一时段的时间段列表只切分一次
+        Map<Integer, List<List<String>>> labels = new HashMap<>();
+        int doctors = 0;
+        int skippedDoctors = 0;
+        long created = 0;
+        long existing = 0;
+        long failed = 0;
+
+        Long afterId = 0L;
+        for (;;) {
+            Long cursor = afterId;
+            Page page = readOnlyTx.execute(status -> loadPage(cursor, from, to));
+            if (page.doctors.isEmpty()) {
+                break;
+            }
+            afterId = page.doctors.get(page.doctors.size() - 1).getId();
+
+            List<AppointmentSlot> toInsert = new ArrayList<>();
+            for (Doctor doctor : page.doctors) {
+                doctors++;
+                DoctorSchedule schedule = DoctorSchedule.parse(doctor.getSchedule());
+                if (!schedule.unrecognized().isEmpty()) {
+                    log.warn("医生 {}（ID {}）的排班中有无法识别的内容：{}", doctor.getName(), doctor.getId(),
+                            schedule.unrecognized());
+                }
+                if (schedule.isEmpty()) {
+                    skippedDoctors++;
+                    continue;
+                }
+                SlotTemplate template = page.templates.get(doctor.getId());
+                int slotMinutes = template != null ? template.getSlotMinutes() : defaultSlotMinutes;
+                int total = template != null ? template.getTotalSlots() : defaultTotalSlots;
+                int reserved = Math.min(total, template != null ? template.getEmergencyReserved() : defaultEmergencyReserved);
+                List<List<String>> byPeriod = labels.computeIfAbsent(slotMinutes, minutes -> split(windows, minutes));
+
+                for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                    for (DoctorSchedule.Period period : schedule.periods(date.getDayOfWeek())) {
+                        for (String timeSlot : byPeriod.get(period.ordinal())) {
+                            if (page.existing.contains(new SlotKey(doctor.getId(), date, timeSlot))) {
+                                existing++;
+                                continue;
+                            }
+                            AppointmentSlot slot = new AppointmentSlot();
+                            slot.setDoctor(doctor);
+                            slot.setDate(date);
+                            slot.setTimeSlot(timeSlot);
+                            slot.setTotalSlots(total);
+                            slot.setUsedSlots(0);
+                            slot.setEmergencyReserved(reserved);
+                            slot.setStatus(AppointmentSlot.SlotStatus.可用);
+                            toInsert.add(slot);
+                        }
+                    }
+                }
+            }
+
+            if (toInsert.isEmpty()) {
+                continue;
+            }
+            try {
+                insert(toInsert);
+            } catch (RuntimeException e) {
+                // 多个实例同时生成时可能撞上唯一约束，本页留给下一次执行
+                log.warn("号源批量写入失败（医生ID {} 之前的一页），下次执行时重试：{}", afterId, e.getMessage());
+                failed += toInsert.size();
+                continue;
+            }
+            created += toInsert.size();
+            generated.add(toInsert.size());
+            Set<SlotKey> touchedDays = new HashSet<>();
+            for (AppointmentSlot slot : toInsert) {
+                inventory.register(slot);
+                if (touchedDays.add(new SlotKey(slot.getDoctor().getId(), slot.getDate(), null))) {
+                    slotCache.invalidate(slot.getDoctor().getId(), slot.getDate());
+                }
+            }
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("from", from.toString());
+        stats.put("to", to.toString());
+        stats.put("doctors", doctors);
+        stats.put("doctorsWithoutSchedule", skippedDoctors);
+        stats.put("created", created);
+        stats.put("alreadyExisting", existing);
+        stats.put("failed", failed);
+        stats.put("elapsedMs", elapsedMs);
+        stats.put("finishedAt", LocalDateTime.now().toString());
+        lastRun = stats;
+        log.info("号源生成完成：{} 至 {}，{} 名医生，新增 {} 个号源，已存在 {} 个，耗时 {} ms",
+                from, to, doctors, created, existing, elapsedMs);
+        return stats;
+    }
+
+    private Page loadPage(Long afterId, LocalDate from, LocalDate to) {
+        List<Doctor> doctors = doctorRepo.findPageWithDepartment(afterId, Limit.of(doctorPageSize));
+        if (doctors.isEmpty()) {
+            return new Page(doctors, Map.of(), Set.of());
+        }
+        List<Long> ids = doctors.stream().map(Doctor::getId).toList();
+        Map<Long, SlotTemplate> templates = new HashMap<>();
+        for (SlotTemplate template : templateRepo.findByDoctorIds(ids)) {
+            templates.put(template.getDoctor().getId(), template);
+        }
+        Set<SlotKey> existing = new HashSet<>();
+        for (Object[] row : slotRepo.findSlotKeys(ids, from, to)) {
+            existing.add(new SlotKey((Long) row[0], (LocalDate) row[1], (String) row[2]));
+        }
+        return new Page(doctors, templates, existing);
+    }
+
+    /**
+     * 无状态会话批量插入：不进持久化上下文，按 jdbcBatchSize 条一批发送 INSERT
+     */
+    private void insert(List<AppointmentSlot> slots) {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            session.setJdbcBatchSize(jdbcBatchSize);
+            Transaction tx = session.beginTransaction();
+            try {
+                for (AppointmentSlot slot : slots) {
+                    session.insert(slot);
+                }
+                tx.commit();
+            } catch (RuntimeException e) {
+                if (tx.isActive()) {
+                    tx.rollback();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 按时间段长度切分上午、下午的出诊时间，下标与 DoctorSchedule.Period 的顺序一致
+     */
+    private static List<List<String>> split(Window[] windows, int minutes) {
+        List<List<String>> result = new ArrayList<>(windows.length);
+        for (int i = 0; i < windows.length; i++) {
+            List<String> slots = new ArrayList<>();
+            for (LocalTime t = windows[i].start(); !t.plusMinutes(minutes).isAfter(windows[i].end())
+                    && t.plusMinutes(minutes).isAfter(t); t = t.plusMinutes(minutes)) {
+                slots.add(t + "-" + t.plusMinutes(minutes));
+            }
+            result.add(slots);
+        }
+        return result;
+    }
+
+    /**
+     * 出诊时间窗口，如 08:00-11:30
+     */
+    private record Window(LocalTime start, LocalTime end) {
+        static Window parse(String text) {
+            String[] parts = text.trim().split("-");
+            return new Window(LocalTime.parse(parts[0].trim()), LocalTime.parse(parts[1].trim()));
+        }
+    }
+
+    private record SlotKey(Long doctorId, LocalDate date, String timeSlot) {
+    }
+
+    private record Page(List<Doctor> doctors, Map<Long, SlotTemplate> templates, Set<SlotKey> existing) {
+    }
+}
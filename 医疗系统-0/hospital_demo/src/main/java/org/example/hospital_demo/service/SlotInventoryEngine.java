@@ -0,0 +1,645 @@
+package org.example.hospital_demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.hospital_demo.dto.SlotResponse;
+import org.example.hospital_demo.entity.AppointmentSlot;
+import org.example.hospital_demo.repository.AppointmentSlotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 内存号源库存引擎
+ * 按 (医生, 日期, 时间段) 保存剩余普通号/急诊号，按医生分段（stripe），计数使用 CAS 无锁扣减。
+ * 挂号时先在内存中完成预占，数据库回写分两种模式：
+ *  - sync：内存预占成功后仍执行数据库条件 UPDATE，数据库是最终裁决者（默认）
+ *  - async：只在内存预占，事务提交后由后台线程合并增量异步回写数据库
+ * 同时维护一份可预约号源索引（按科室/医生、普通号/急诊号分轨，按日期和时间段排序），
+ * 号源在"有号/约满"之间切换时增量更新，用于查找最早可预约的号源。
+ */
+@Component
+public class SlotInventoryEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotInventoryEngine.class);
+
+    /**
+     * 预占结果
+     */
+    public enum Outcome {
+        RESERVED, FULL, NOT_FOUND
+    }
+
+    @Autowired
+    private AppointmentSlotRepository slotRepo;
+
+    private final TransactionTemplate txTemplate;
+
+    private final TransactionTemplate readOnlyTx;
+
+    @Value("${hospital.slot.inventory.write-mode:sync}")
+    private String writeMode;
+
+    @Value("${hospital.slot.inventory.warm-days:14}")
+    private int warmDays;
+
+    @Value("${hospital.slot.inventory.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    private final Stripe[] stripes;
+
+    // 待回写的增量：slotId -> delta（同一号源的多次挂号/取消合并为一次 UPDATE），合并为 0 或回写后即移除
+    private final ConcurrentHashMap<Long, Integer> pendingDeltas = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    private final AvailabilityIndex index = new AvailabilityIndex();
+
+    // 已整天加载进内存的日期（预热或搜索时加载），索引只覆盖这些日期
+    private final Set<LocalDate> loadedDates = ConcurrentHashMap.newKeySet();
+
+    // 预占时 CAS 失败重试次数（同一号源的并发争用程度）
+    private final LongAdder casRetries;
+
+    public SlotInventoryEngine(PlatformTransactionManager transactionManager, MetricsRegistry metrics,
+                               @Value("${hospital.slot.inventory.stripes:16}") int stripeCount) {
+        this.casRetries = metrics.counter("hospital_slot_cas_retries_total", "内存号源预占 CAS 冲突重试次数");
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * 启动后从数据库预热未来若干天的号源
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        LocalDate today = LocalDate.now();
+        List<AppointmentSlot> slots = readOnlyTx.execute(status ->
+                slotRepo.findByDateBetweenOrderByDateAscTimeSlot(today, today.plusDays(warmDays)));
+        Map<DoctorDay, List<SlotCounter>> grouped = new HashMap<>();
+        for (AppointmentSlot slot : slots) {
+            grouped.computeIfAbsent(new DoctorDay(slot.getDoctor().getId(), slot.getDate()), k -> new ArrayList<>())
+                    .add(new SlotCounter(slot));
+        }
+        // 预热前已被请求懒加载的日期以内存中的计数为准，不覆盖
+        grouped.forEach((key, counters) -> install(key, new DaySlots(counters)));
+        today.datesUntil(today.plusDays(warmDays + 1)).forEach(loadedDates::add);
+        log.info("号源库存预热完成：{} 个医生日，{} 个号源，回写模式 {}", grouped.size(), slots.size(), writeMode);
+
+        if (isWriteBehind()) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "slot-inventory-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 是否为异步回写模式
+     */
+    public boolean isWriteBehind() {
+        return "async".equalsIgnoreCase(writeMode);
+    }
+
+    /**
+     * 在内存中预占一个号源
+     */
+    public Outcome tryReserve(Long doctorId, LocalDate date, String timeSlot, boolean emergency) {
+        SlotCounter counter = find(doctorId, date, timeSlot);
+        if (counter == null) {
+            return Outcome.NOT_FOUND;
+        }
+        int used = counter.tryAcquire(emergency, casRetries);
+        if (used < 0) {
+            return Outcome.FULL;
+        }
+        if (used == counter.limit(false) || used == counter.limit(true)) {
+            index.sync(counter);
+        }
+        return Outcome.RESERVED;
+    }
+
+    /**
+     * 释放一个内存号源
+     */
+    public void release(Long doctorId, LocalDate date, String timeSlot) {
+        SlotCounter counter = find(doctorId, date, timeSlot);
+        if (counter == null) {
+            return;
+        }
+        int previous = counter.release();
+        if (previous == counter.limit(false) || previous == counter.limit(true)) {
+            index.sync(counter);
+        }
+    }
+
+    /**
+     * 查询号源ID（异步回写时使用）
+     */
+    public Long slotId(Long doctorId, LocalDate date, String timeSlot) {
+        SlotCounter counter = find(doctorId, date, timeSlot);
+        return counter == null ? null : counter.slotId;
+    }
+
+    /**
+     * 记录一次待回写的增量，由后台线程合并后写入数据库
+     */
+    public void persistDelta(Long slotId, int delta) {
+        pendingDeltas.merge(slotId, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    /**
+     * 内存与数据库不一致时，按数据库重新加载该医生当天的号源
+     */
+    public void reload(Long doctorId, LocalDate date) {
+        DoctorDay key = new DoctorDay(doctorId, date);
+        DaySlots loaded = loadDay(key);
+        DaySlots previous = loaded.ordered.isEmpty()
+                ? stripe(doctorId).days.remove(key)
+                : stripe(doctorId).days.put(key, loaded);
+        if (previous != null) {
+            previous.ordered.forEach(index::retire);
+        }
+        loaded.ordered.forEach(index::sync);
+    }
+
+    /**
+     * 注册新生成的号源（已存在则忽略），号源须已提交，医生及其科室须已加载
+     * 该医生当天尚未加载、日期也不在已加载范围内时不做处理，之后按需加载时会从数据库读到
+     */
+    public void register(AppointmentSlot slot) {
+        DoctorDay key = new DoctorDay(slot.getDoctor().getId(), slot.getDate());
+        Stripe stripe = stripe(key.doctorId());
+        DaySlots day = stripe.days.get(key);
+        if (day == null && !loadedDates.contains(key.date())) {
+            return;
+        }
+        if (day != null && day.byTimeSlot.containsKey(slot.getTimeSlot())) {
+            return;
+        }
+        List<SlotCounter> counters = new ArrayList<>();
+        if (day != null) {
+            counters.addAll(day.ordered);
+        }
+        SlotCounter counter = new SlotCounter(slot);
+        counters.add(counter);
+        stripe.days.put(key, new DaySlots(counters));
+        index.sync(counter);
+    }
+
+    /**
+     * 移除 date 之前的号源（过期清理后调用），返回移除的医生日数
+     * 之后再访问这些日期会按需从数据库重新加载
+     */
+    public int evictBefore(LocalDate date) {
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            Iterator<Map.Entry<DoctorDay, DaySlots>> it = stripe.days.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<DoctorDay, DaySlots> entry = it.next();
+                if (entry.getKey().date().isBefore(date)) {
+                    it.remove();
+                    entry.getValue().ordered.forEach(index::retire);
+                    evicted++;
+                }
+            }
+        }
+        loadedDates.removeIf(d -> d.isBefore(date));
+        return evicted;
+    }
+
+    /**
+     * 直接从内存返回医生某天的号源（onlyAvailable 为 true 时只返回可预约普通号的时间段）
+     */
+    public List<SlotResponse> getSlots(Long doctorId, LocalDate date, boolean onlyAvailable) {
+        DaySlots day = day(doctorId, date);
+        List<SlotResponse> responses = new ArrayList<>(day.ordered.size());
+        for (SlotCounter counter : day.ordered) {
+            if (!onlyAvailable || counter.canBook(false)) {
+                responses.add(counter.toResponse());
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * 从索引中查找 [from, to] 内最早的可预约号源，按日期、时间段排序，最多返回 limit 条
+     * 指定医生时只查该医生，否则查整个科室；范围内尚未加载的日期先整天加载进内存
+     */
+    public List<SlotResponse> findEarliest(Long departmentId, Long doctorId, boolean emergency,
+                                           LocalDate from, LocalDate to, int limit) {
+        ensureLoaded(from, to);
+        NavigableSet<SlotCounter> track = doctorId != null
+                ? index.track(emergency ? index.emergencyByDoctor : index.normalByDoctor, doctorId)
+                : index.track(emergency ? index.emergencyByDepartment : index.normalByDepartment, departmentId);
+        List<SlotResponse> responses = new ArrayList<>(Math.min(limit, 16));
+        for (SlotCounter counter : track.tailSet(SlotCounter.probe(from), true)) {
+            if (counter.date.isAfter(to)) {
+                break;
+            }
+            // 索引更新与计数变化之间有很短的窗口，返回前按当前计数再确认一次
+            if (!counter.canBook(emergency)
+                    || (departmentId != null && !departmentId.equals(counter.departmentId))) {
+                continue;
+            }
+            responses.add(counter.toResponse());
+            if (responses.size() >= limit) {
+                break;
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * 将合并后的增量写回数据库
+     */
+    void flush() {
+        if (pendingDeltas.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> batch = new HashMap<>();
+        // 逐个取走：remove 与 persistDelta 的 merge 对同一号源是原子的，不会丢增量，也不会留下空条目
+        for (Long slotId : pendingDeltas.keySet()) {
+            Integer delta = pendingDeltas.remove(slotId);
+            if (delta != null && delta != 0) {
+                batch.put(slotId, delta);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            txTemplate.executeWithoutResult(status ->
+                    batch.forEach((slotId, delta) -> slotRepo.addUsedSlots(slotId, delta)));
+        } catch (RuntimeException e) {
+            // 回写失败时把增量放回，下一轮重试
+            log.warn("号源库存回写失败，将在下一轮重试：{}", e.getMessage());
+            batch.forEach(this::persistDelta);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flush();
+        }
+    }
+
+    private SlotCounter find(Long doctorId, LocalDate date, String timeSlot) {
+        if (doctorId == null || date == null || timeSlot == null) {
+            return null;
+        }
+        return day(doctorId, date).byTimeSlot.get(timeSlot);
+    }
+
+    private DaySlots day(Long doctorId, LocalDate date) {
+        DoctorDay key = new DoctorDay(doctorId, date);
+        Stripe stripe = stripe(doctorId);
+        DaySlots day = stripe.days.get(key);
+        if (day == null) {
+            if (loadedDates.contains(date)) {
+                // 整天已加载的日期里没有这个医生日，说明当天没有号源（新生成的号源由 register 补上）
+                return DaySlots.EMPTY;
+            }
+            // 未预热的日期：在 map 外加载，避免在 computeIfAbsent 中访问数据库
+            DaySlots loaded = loadDay(key);
+            // 没有号源的医生日不放进内存：否则任意 (医生, 日期) 的查询都会留下一个空条目，内存无限增长
+            day = loaded.ordered.isEmpty() ? loaded : install(key, loaded);
+        }
+        return day;
+    }
+
+    /**
+     * 内存中的医生日数量
+     */
+    int cachedDays() {
+        int days = 0;
+        for (Stripe stripe : stripes) {
+            days += stripe.days.size();
+        }
+        return days;
+    }
+
+    /**
+     * 尚未回写的号源数
+     */
+    int pendingSlots() {
+        return pendingDeltas.size();
+    }
+
+    /**
+     * 放入一天的号源（已存在则保留已有的计数）并加入索引，返回实际生效的那一份
+     */
+    private DaySlots install(DoctorDay key, DaySlots day) {
+        DaySlots existing = stripe(key.doctorId()).days.putIfAbsent(key, day);
+        if (existing != null) {
+            return existing;
+        }
+        day.ordered.forEach(index::sync);
+        return day;
+    }
+
+    /**
+     * 确保日期范围内所有医生的号源都已加载进内存
+     */
+    private void ensureLoaded(LocalDate from, LocalDate to) {
+        List<LocalDate> missing = from.datesUntil(to.plusDays(1))
+                .filter(date -> !loadedDates.contains(date))
+                .toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        LocalDate first = missing.get(0);
+        LocalDate last = missing.get(missing.size() - 1);
+        List<AppointmentSlot> slots = readOnlyTx.execute(status ->
+                slotRepo.findByDateBetweenOrderByDateAscTimeSlot(first, last));
+        Map<DoctorDay, List<SlotCounter>> grouped = new HashMap<>();
+        for (AppointmentSlot slot : slots) {
+            if (!loadedDates.contains(slot.getDate())) {
+                grouped.computeIfAbsent(new DoctorDay(slot.getDoctor().getId(), slot.getDate()), k -> new ArrayList<>())
+                        .add(new SlotCounter(slot));
+            }
+        }
+        grouped.forEach((key, counters) -> install(key, new DaySlots(counters)));
+        loadedDates.addAll(missing);
+    }
+
+    private DaySlots loadDay(DoctorDay key) {
+        List<SlotCounter> counters = readOnlyTx.execute(status -> {
+            List<SlotCounter> list = new ArrayList<>();
+            for (AppointmentSlot slot : slotRepo.findByDoctorIdAndDateOrderByTimeSlot(key.doctorId(), key.date())) {
+                list.add(new SlotCounter(slot));
+            }
+            return list;
+        });
+        return new DaySlots(counters);
+    }
+
+    private Stripe stripe(Long doctorId) {
+        int h = Long.hashCode(doctorId);
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    private record DoctorDay(Long doctorId, LocalDate date) {
+    }
+
+    /**
+     * 一个分段：持有一部分医生的号源
+     */
+    private static final class Stripe {
+        final ConcurrentHashMap<DoctorDay, DaySlots> days = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 医生某一天的全部号源（按时间段有序，不可变结构，变化时整体替换）
+     */
+    private static final class DaySlots {
+        static final DaySlots EMPTY = new DaySlots(List.of());
+
+        final List<SlotCounter> ordered;
+        final Map<String, SlotCounter> byTimeSlot;
+
+        DaySlots(List<SlotCounter> counters) {
+            List<SlotCounter> sorted = new ArrayList<>(counters);
+            sorted.sort(Comparator.comparing(c -> c.timeSlot));
+            Map<String, SlotCounter> index = new HashMap<>();
+            for (SlotCounter counter : sorted) {
+                index.put(counter.timeSlot, counter);
+            }
+            this.ordered = List.copyOf(sorted);
+            this.byTimeSlot = index;
+        }
+    }
+
+    /**
+     * 可预约号源索引
+     * 每条轨道是一个按 (日期, 时间段) 排序的跳表，只包含当前还能挂号的号源；
+     * 计数在上限处切换时才更新，普通挂号/取消不触碰索引。
+     */
+    private static final class AvailabilityIndex {
+        final ConcurrentHashMap<Long, ConcurrentSkipListSet<SlotCounter>> normalByDepartment = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, ConcurrentSkipListSet<SlotCounter>> emergencyByDepartment = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, ConcurrentSkipListSet<SlotCounter>> normalByDoctor = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, ConcurrentSkipListSet<SlotCounter>> emergencyByDoctor = new ConcurrentHashMap<>();
+
+        NavigableSet<SlotCounter> track(ConcurrentHashMap<Long, ConcurrentSkipListSet<SlotCounter>> tracks, Long id) {
+            NavigableSet<SlotCounter> track = id == null ? null : tracks.get(id);
+            return track != null ? track : Collections.emptyNavigableSet();
+        }
+
+        /**
+         * 按计数器当前状态更新它在各轨道中的位置
+         * 在计数器自己的锁内读取状态，并发的挂号和取消中最后拿到锁的一方看到的是最终计数
+         */
+        void sync(SlotCounter counter) {
+            counter.indexLock.lock();
+            try {
+                boolean normal = !counter.retired && counter.canBook(false);
+                boolean emergency = !counter.retired && counter.canBook(true);
+                if (normal != counter.indexedNormal) {
+                    toggle(normalByDepartment, counter.departmentId, counter, normal);
+                    toggle(normalByDoctor, counter.doctorId, counter, normal);
+                    counter.indexedNormal = normal;
+                }
+                if (emergency != counter.indexedEmergency) {
+                    toggle(emergencyByDepartment, counter.departmentId, counter, emergency);
+                    toggle(emergencyByDoctor, counter.doctorId, counter, emergency);
+                    counter.indexedEmergency = emergency;
+                }
+            } finally {
+                counter.indexLock.unlock();
+            }
+        }
+
+        /**
+         * 计数器被重新加载的新计数器替换后，从索引中移除
+         */
+        void retire(SlotCounter counter) {
+            counter.indexLock.lock();
+            try {
+                counter.retired = true;
+            } finally {
+                counter.indexLock.unlock();
+            }
+            sync(counter);
+        }
+
+        private void toggle(ConcurrentHashMap<Long, ConcurrentSkipListSet<SlotCounter>> tracks, Long id,
+                            SlotCounter counter, boolean present) {
+            if (id == null) {
+                return;
+            }
+            if (present) {
+                tracks.computeIfAbsent(id, k -> new ConcurrentSkipListSet<>(SlotCounter.ORDER)).add(counter);
+            } else {
+                ConcurrentSkipListSet<SlotCounter> track = tracks.get(id);
+                if (track != null) {
+                    track.remove(counter);
+                }
+            }
+        }
+    }
+
+    /**
+     * 单个号源的无锁计数器
+     */
+    private static final class SlotCounter {
+        // 索引中的顺序：日期、时间段，再按医生和号源ID区分同一时间段的不同号源
+        static final Comparator<SlotCounter> ORDER = Comparator
+                .comparing((SlotCounter c) -> c.date)
+                .thenComparing(c -> c.timeSlot)
+                .thenComparingLong(c -> c.doctorId)
+                .thenComparingLong(c -> c.slotId);
+
+        final Long slotId;
+        final Long doctorId;
+        final Long departmentId;
+        final String doctorName;
+        final String doctorTitle;
+        final String departmentName;
+        final LocalDate date;
+        final String timeSlot;
+        final int totalSlots;
+        final int emergencyReserved;
+        final boolean suspended;
+        final AtomicInteger used;
+
+        // 索引状态，由 indexLock 保护
+        final ReentrantLock indexLock = new ReentrantLock();
+        boolean indexedNormal;
+        boolean indexedEmergency;
+        boolean retired;
+
+        SlotCounter(AppointmentSlot slot) {
+            this.slotId = slot.getId();
+            this.doctorId = slot.getDoctor().getId();
+            this.departmentId = slot.getDoctor().getDepartment() != null ?
+                    slot.getDoctor().getDepartment().getId() : null;
+            this.doctorName = slot.getDoctor().getName();
+            this.doctorTitle = slot.getDoctor().getTitle();
+            this.departmentName = slot.getDoctor().getDepartment() != null ?
+                    slot.getDoctor().getDepartment().getName() : "";
+            this.date = slot.getDate();
+            this.timeSlot = slot.getTimeSlot();
+            this.totalSlots = slot.getTotalSlots();
+            this.emergencyReserved = slot.getEmergencyReserved();
+            this.suspended = slot.getStatus() == AppointmentSlot.SlotStatus.停诊;
+            this.used = new AtomicInteger(slot.getUsedSlots());
+        }
+
+        /**
+         * 索引查找用的探针：排在该日期所有号源之前
+         */
+        private SlotCounter(LocalDate date) {
+            this.slotId = Long.MIN_VALUE;
+            this.doctorId = Long.MIN_VALUE;
+            this.departmentId = null;
+            this.doctorName = null;
+            this.doctorTitle = null;
+            this.departmentName = null;
+            this.date = date;
+            this.timeSlot = "";
+            this.totalSlots = 0;
+            this.emergencyReserved = 0;
+            this.suspended = true;
+            this.used = new AtomicInteger();
+        }
+
+        static SlotCounter probe(LocalDate date) {
+            return new SlotCounter(date);
+        }
+
+        int limit(boolean emergency) {
+            return emergency ? totalSlots : totalSlots - emergencyReserved;
+        }
+
+        boolean canBook(boolean emergency) {
+            return !suspended && used.get() < limit(emergency);
+        }
+
+        /**
+         * 预占一个号，成功返回预占后的已用数，已满返回 -1；CAS 失败时计入 retries
+         */
+        int tryAcquire(boolean emergency, LongAdder retries) {
+            if (suspended) {
+                return -1;
+            }
+            int limit = limit(emergency);
+            for (;;) {
+                int current = used.get();
+                if (current >= limit) {
+                    return -1;
+                }
+                if (used.compareAndSet(current, current + 1)) {
+                    return current + 1;
+                }
+                retries.increment();
+            }
+        }
+
+        /**
+         * 归还一个号，返回归还前的已用数（已为 0 时返回 -1）
+         */
+        int release() {
+            for (;;) {
+                int current = used.get();
+                if (current <= 0) {
+                    return -1;
+                }
+                if (used.compareAndSet(current, current - 1)) {
+                    return current;
+                }
+            }
+        }
+
+        SlotResponse toResponse() {
+            int usedNow = used.get();
+            AppointmentSlot.SlotStatus status = suspended ? AppointmentSlot.SlotStatus.停诊
+                    : usedNow >= totalSlots ? AppointmentSlot.SlotStatus.已满 : AppointmentSlot.SlotStatus.可用;
+            SlotResponse response = new SlotResponse();
+            response.setSlotId(slotId);
+            response.setDoctorId(doctorId);
+            response.setDoctorName(doctorName);
+            response.setDoctorTitle(doctorTitle);
+            response.setDepartmentName(departmentName);
+            response.setDate(date);
+            response.setTimeSlot(timeSlot);
+            response.setTotalSlots(totalSlots);
+            response.setUsedSlots(usedNow);
+            response.setAvailableSlots(Math.max(0, totalSlots - usedNow - emergencyReserved));
+            response.setEmergencyReserved(emergencyReserved);
+            response.setAvailableEmergencySlots(Math.max(0, totalSlots - usedNow));
+            response.setStatus(status.name());
+            response.setStatusDescription(status.getDescription());
+            response.setCanBookNormal(!suspended && usedNow < totalSlots - emergencyReserved);
+            response.setCanBookEmergency(!suspended && usedNow < totalSlots);
+            return response;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.SlotResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 号源查询缓存
+ * 按 (医生, 日期) 缓存当天全部号源，容量和存活时间都有上限。
+ * 挂号/取消提交后按 key 精确失效；失效时写入一个版本更高的占位，
+ * 失效前开始、失效后才查完的加载结果版本落后，不会写回缓存，避免把已满的号源重新缓存成可用。
+ * 未命中时先登记一个加载版本的占位再查库，失效只替换已缓存或正在加载的 key：
+ * 没有条目的 key 不写占位，大量从未被查询的医生日的挂号不会占满缓存容量。
+ */
+@Component
+public class SlotReadCache {
+
+    @Value("${hospital.slot.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${hospital.slot.cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${hospital.slot.cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    // 版本时钟：每次失效加一
+    private final AtomicLong clock = new AtomicLong();
+
+    // 超出容量时只让一个线程做淘汰
+    private final ReentrantLock evictLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * 读取某医生某天的号源，未命中时调用 loader 从数据库加载并写入缓存
+     */
+    public List<SlotResponse> get(Long doctorId, LocalDate date, Supplier<List<SlotResponse>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Key key = new Key(doctorId, date);
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.slots != null) {
+            if (now - entry.loadedAt < ttlNanos()) {
+                hits.increment();
+                return entry.slots;
+            }
+            if (entries.remove(key, entry)) {
+                expirations.increment();
+            }
+        }
+        misses.increment();
+
+        // 记录加载开始时的版本并登记占位，加载期间发生失效则丢弃本次结果；
+        // 登记之前发生的失效已提交，本次加载能读到
+        long version = clock.get();
+        entries.putIfAbsent(key, new Entry(version, null, now));
+        List<SlotResponse> slots = List.copyOf(loader.get());
+        Entry loaded = new Entry(version, slots, System.nanoTime());
+        entries.compute(key, (k, current) ->
+                current == null || current.version <= version ? loaded : current);
+        if (entries.size() > maxSize) {
+            evict();
+        }
+        return slots;
+    }
+
+    /**
+     * 号源数量变化后使该医生该天的缓存失效
+     */
+    public void invalidate(Long doctorId, LocalDate date) {
+        if (!enabled || doctorId == null || date == null) {
+            return;
+        }
+        Entry placeholder = new Entry(clock.incrementAndGet(), null, System.nanoTime());
+        if (entries.replace(new Key(doctorId, date), placeholder) != null) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        clock.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    /**
+     * 超出容量时先清理过期条目，仍超出则按加载时间淘汰最旧的一成，摊薄每次淘汰的扫描开销
+     */
+    private void evict() {
+        if (!evictLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            long ttl = ttlNanos();
+            entries.forEach((key, entry) -> {
+                if (now - entry.loadedAt >= ttl && entries.remove(key, entry) && entry.slots != null) {
+                    expirations.increment();
+                }
+            });
+            int overflow = entries.size() - maxSize;
+            if (overflow <= 0) {
+                return;
+            }
+            int toEvict = Math.max(overflow, maxSize / 10);
+            // 失效占位要保留到过期，否则落后版本的加载结果可能被写回
+            entries.entrySet().stream()
+                    .filter(e -> e.getValue().slots != null)
+                    .sorted(Comparator.comparingLong(e -> e.getValue().loadedAt))
+                    .limit(toEvict)
+                    .forEach(e -> {
+                        if (entries.remove(e.getKey(), e.getValue())) {
+                            evictions.increment();
+                        }
+                    });
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    private long ttlNanos() {
+        return TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    private record Key(Long doctorId, LocalDate date) {
+    }
+
+    /**
+     * 缓存条目：slots 为空表示失效或加载中的占位
+     */
+    private record Entry(long version, List<SlotResponse> slots, long loadedAt) {
+    }
+}
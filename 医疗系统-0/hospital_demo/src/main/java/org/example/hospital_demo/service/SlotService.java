@@ -1,14 +1,22 @@
 package org.example.hospital_demo.service;
 
 import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.dto.SlotQueryRequest;
 import org.example.hospital_demo.dto.SlotResponse;
+import org.example.hospital_demo.entity.Appointment;
 import org.example.hospital_demo.entity.AppointmentSlot;
+import org.example.hospital_demo.repository.AppointmentRepository;
 import org.example.hospital_demo.repository.AppointmentSlotRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
-import java.util.List;
+import java.time.LocalTime;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -21,24 +29,217 @@ public class SlotService {
     @Autowired
     private AppointmentSlotRepository slotRepo;
 
+    @Autowired
+    private AppointmentRepository appointmentRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private SlotInventoryEngine inventory;
+
+    @Autowired
+    private SlotGenerator slotGenerator;
+
+    @Autowired
+    private SlotReadCache slotCache;
+
+    // 查找最早号源时允许的最大日期跨度（天）
+    @Value("${hospital.slot.search.max-days:31}")
+    private int searchMaxDays;
+
+    // 查找最早号源时默认/最大返回条数
+    private static final int DEFAULT_SEARCH_LIMIT = 5;
+    private static final int MAX_SEARCH_LIMIT = 50;
+
+    // 一致性校验报告中每类问题最多列出的号源数
+    private static final int MAX_REPORTED_SLOTS = 100;
+
+    // 是否直接从内存号源库存返回查询结果
+    @Value("${hospital.slot.inventory.serve-reads:false}")
+    private boolean serveFromInventory;
+
+    private final TransactionTemplate readOnlyTx;
+
+    public SlotService(PlatformTransactionManager transactionManager) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
     // 获取医生某天的所有号源
     public Result<List<SlotResponse>> getDoctorSlots(Long doctorId, LocalDate date) {
-        List<AppointmentSlot> slots = slotRepo.findByDoctorIdAndDateOrderByTimeSlot(doctorId, date);
-        List<SlotResponse> responses = slots.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
-        return Result.success(responses);
+        boolean viaInventory = inventory.isWriteBehind() && inWindow(date);
+        Result<List<SlotResponse>> checked = checkDay(doctorId, date, viaInventory);
+        if (checked != null) {
+            return checked;
+        }
+        return Result.success(loadDay(doctorId, date, viaInventory));
     }
 
-    // 获取可用号源
+    // 获取可用号源（从当天全部号源中筛选，与全部号源共用同一份缓存）
     public Result<List<SlotResponse>> getAvailableSlots(Long doctorId, LocalDate date) {
-        List<AppointmentSlot> slots = slotRepo.findAvailableSlots(doctorId, date);
-        List<SlotResponse> responses = slots.stream()
-                .map(this::convertToResponse)
+        boolean viaInventory = (serveFromInventory || inventory.isWriteBehind()) && inWindow(date);
+        Result<List<SlotResponse>> checked = checkDay(doctorId, date, viaInventory);
+        if (checked != null) {
+            return checked;
+        }
+        if (serveFromInventory && viaInventory) {
+            return Result.success(inventory.getSlots(doctorId, date, true));
+        }
+        List<SlotResponse> responses = loadDay(doctorId, date, viaInventory).stream()
+                .filter(slot -> Boolean.TRUE.equals(slot.getCanBookNormal()))
                 .collect(Collectors.toList());
         return Result.success(responses);
     }
 
+    /**
+     * 查找日期范围内最早的可预约号源（按科室或医生，区分普通号/急诊号）
+     * 直接查内存中的可预约号源索引，不扫描号源表
+     */
+    public Result<List<SlotResponse>> searchEarliestSlots(SlotQueryRequest request) {
+        if (request.getDepartmentId() == null && request.getDoctorId() == null) {
+            return Result.badRequest("请指定科室或医生");
+        }
+        if (request.getDate() == null) {
+            return Result.badRequest("查询日期不能为空");
+        }
+        LocalDate from = request.getDate();
+        LocalDate to = request.getEndDate() != null ? request.getEndDate() : from.plusDays(6);
+        if (to.isBefore(from)) {
+            return Result.badRequest("结束日期不能早于开始日期");
+        }
+        if (from.plusDays(searchMaxDays).isBefore(to)) {
+            return Result.badRequest("查询范围不能超过" + searchMaxDays + "天");
+        }
+        // 只在号源生成窗口内查找，窗口外的日期不会有号源，也不加载进内存库存
+        LocalDate today = LocalDate.now();
+        LocalDate lastDay = today.plusDays(slotGenerator.getHorizonDays());
+        if (from.isBefore(today)) {
+            from = today;
+        }
+        if (to.isAfter(lastDay)) {
+            to = lastDay;
+        }
+        if (to.isBefore(from)) {
+            return Result.success(List.of());
+        }
+        int limit = request.getLimit() == null ? DEFAULT_SEARCH_LIMIT
+                : Math.max(1, Math.min(request.getLimit(), MAX_SEARCH_LIMIT));
+        boolean emergency = "急诊".equals(request.getAppointmentType());
+        return Result.success(inventory.findEarliest(request.getDepartmentId(), request.getDoctorId(),
+                emergency, from, to, limit));
+    }
+
+    /**
+     * 号源一致性校验（压测后检查是否超卖）
+     * 1. 已用数量不能超过总数；
+     * 2. 已用数量应等于该号源上仍占用号源的挂号数（已取消的挂号已归还号源，不计入）。
+     * 异步回写模式下先把内存中的增量写回（在只读事务之外提交），再在只读事务中读数据库比对；
+     * 校验期间仍有挂号时结果可能短暂不一致。
+     */
+    public Result<Map<String, Object>> checkConsistency() {
+        if (inventory.isWriteBehind()) {
+            inventory.flush();
+        }
+        return Result.success(readOnlyTx.execute(status -> consistencyReport()));
+    }
+
+    private Map<String, Object> consistencyReport() {
+        Map<String, Long> holders = new HashMap<>();
+        for (Object[] row : appointmentRepo.countSlotHolders(Appointment.AppointmentStatus.已取消)) {
+            String timeSlot = row[2] != null ? (String) row[2] : AppointmentService.formatTimeSlot((LocalTime) row[3]);
+            holders.merge(row[0] + ":" + row[1] + ":" + timeSlot, (Long) row[4], Long::sum);
+        }
+
+        List<Map<String, Object>> oversold = new ArrayList<>();
+        List<Map<String, Object>> mismatched = new ArrayList<>();
+        int oversoldCount = 0;
+        int mismatchedCount = 0;
+        List<Object[]> slots = slotRepo.findSlotUsage();
+        for (Object[] row : slots) {
+            int total = (Integer) row[4];
+            int used = (Integer) row[5];
+            long booked = holders.getOrDefault(row[1] + ":" + row[2] + ":" + row[3], 0L);
+            if (used > total) {
+                oversoldCount++;
+                if (oversold.size() < MAX_REPORTED_SLOTS) {
+                    oversold.add(slotIssue(row, booked));
+                }
+            }
+            if (used != booked) {
+                mismatchedCount++;
+                if (mismatched.size() < MAX_REPORTED_SLOTS) {
+                    mismatched.add(slotIssue(row, booked));
+                }
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("consistent", oversoldCount == 0 && mismatchedCount == 0);
+        report.put("checkedSlots", slots.size());
+        report.put("oversoldCount", oversoldCount);
+        report.put("mismatchedCount", mismatchedCount);
+        report.put("oversold", oversold);
+        report.put("mismatched", mismatched);
+        return report;
+    }
+
+    private Map<String, Object> slotIssue(Object[] row, long booked) {
+        Map<String, Object> issue = new LinkedHashMap<>();
+        issue.put("slotId", row[0]);
+        issue.put("doctorId", row[1]);
+        issue.put("date", row[2]);
+        issue.put("timeSlot", row[3]);
+        issue.put("totalSlots", row[4]);
+        issue.put("usedSlots", row[5]);
+        issue.put("bookedAppointments", booked);
+        return issue;
+    }
+
+    /**
+     * 按医生、日期查询号源前的校验，通过时返回 null
+     * 查询经过内存库存时（viaInventory）日期必须在今天到号源生成窗口末尾之间、医生必须存在，
+     * 避免任意 (医生, 日期) 进入内存库存；窗口外的历史日期由调用方改为查数据库。
+     * 走查询缓存时缓存自身有容量上限，不额外校验。
+     */
+    <T> Result<T> checkDay(Long doctorId, LocalDate date, boolean viaInventory) {
+        if (doctorId == null || date == null) {
+            return Result.badRequest("医生和日期不能为空");
+        }
+        if (!viaInventory) {
+            return null;
+        }
+        if (!inWindow(date)) {
+            return Result.badRequest("只能查询今天起 " + slotGenerator.getHorizonDays() + " 天内的号源");
+        }
+        if (!doctorRepo.existsById(doctorId)) {
+            return Result.notFound("医生不存在");
+        }
+        return null;
+    }
+
+    /**
+     * 日期是否在号源生成窗口内（今天到窗口末尾），只有窗口内的医生日会进入内存库存
+     */
+    private boolean inWindow(LocalDate date) {
+        LocalDate today = LocalDate.now();
+        return date != null && !date.isBefore(today) && !date.isAfter(today.plusDays(slotGenerator.getHorizonDays()));
+    }
+
+    /**
+     * 某医生某天的全部号源
+     * 异步回写模式下数据库落后于内存库存，窗口内的日期直接以内存库存为准；否则走查询缓存
+     */
+    private List<SlotResponse> loadDay(Long doctorId, LocalDate date, boolean viaInventory) {
+        if (viaInventory) {
+            return inventory.getSlots(doctorId, date, false);
+        }
+        return slotCache.get(doctorId, date, () -> slotRepo.findByDoctorIdAndDateOrderByTimeSlot(doctorId, date)
+                .stream()
+                .map(this::convertToResponse)
+                .collect(Collectors.toList()));
+    }
+
     // 转换为响应DTO
     private SlotResponse convertToResponse(AppointmentSlot slot) {
         SlotResponse response = new SlotResponse();
@@ -0,0 +1,352 @@
+package org.example.hospital_demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 慢 SQL / 慢请求日志
+ * 记录方把条目写入预分配的环形缓冲区（槽位复用，不为每条日志新建对象），缓冲区满时丢弃并计数，从不等待；
+ * 后台线程定期取出条目，格式化后追加到日志文件，文件超过大小上限时滚动（slow.log → slow.log.1 → ...）。
+ * 只有超过阈值的 SQL 和请求才会进入缓冲区，正常请求不产生任何日志。
+ */
+@Component
+public class SlowLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowLog.class);
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    // 单个参数、SQL 文本的最大输出长度
+    private static final int MAX_PARAM_LENGTH = 100;
+    private static final int MAX_SQL_LENGTH = 4000;
+
+    @Value("${hospital.slow-log.enabled:true}")
+    private boolean enabled;
+
+    @Value("${hospital.slow-log.sql-threshold-ms:100}")
+    private long sqlThresholdMs;
+
+    @Value("${hospital.slow-log.request-threshold-ms:500}")
+    private long requestThresholdMs;
+
+    @Value("${hospital.slow-log.file:logs/slow.log}")
+    private String file;
+
+    @Value("${hospital.slow-log.max-file-size-mb:10}")
+    private long maxFileSizeMb;
+
+    @Value("${hospital.slow-log.max-history:5}")
+    private int maxHistory;
+
+    // 环形缓冲区槽位数（取 2 的幂）
+    @Value("${hospital.slow-log.buffer-size:4096}")
+    private int bufferSize;
+
+    @Value("${hospital.slow-log.drain-interval-ms:200}")
+    private long drainIntervalMs;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private Slot[] slots;
+    private int mask;
+
+    // 下一个待写入的序号（记录方竞争）、下一个待取出的序号（只有写文件线程修改）
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private LongAdder sqlEntries;
+    private LongAdder requestEntries;
+    private LongAdder dropped;
+
+    // 文件写入只在写文件线程（以及关闭时）进行，由 writeLock 保护
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private BufferedWriter writer;
+    private Path path;
+    private long fileSize;
+
+    private ScheduledExecutorService drainer;
+
+    @PostConstruct
+    public void start() {
+        int size = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot(i - size);
+        }
+        mask = size - 1;
+        sqlEntries = metrics.counter("hospital_slow_log_entries_total", "写入慢日志的条目数", "type", "sql");
+        requestEntries = metrics.counter("hospital_slow_log_entries_total", "写入慢日志的条目数", "type", "request");
+        dropped = metrics.counter("hospital_slow_log_dropped_total", "慢日志缓冲区已满丢弃的条目数");
+        if (!enabled) {
+            return;
+        }
+        path = Paths.get(file);
+        drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "slow-log-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        drainer.scheduleWithFixedDelay(this::drain, drainIntervalMs, drainIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (drainer == null) {
+            return;
+        }
+        drainer.shutdownNow();
+        drain();
+        writeLock.lock();
+        try {
+            closeWriter();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long sqlThresholdNanos() {
+        return enabled ? TimeUnit.MILLISECONDS.toNanos(sqlThresholdMs) : Long.MAX_VALUE;
+    }
+
+    public long requestThresholdNanos() {
+        return enabled ? TimeUnit.MILLISECONDS.toNanos(requestThresholdMs) : Long.MAX_VALUE;
+    }
+
+    /**
+     * 记录一条慢 SQL
+     * @param params 绑定参数（调用方传入副本，写文件线程格式化），可为 null
+     * @param rows 返回或影响的行数，未知为 -1
+     * @param batch 批量执行的语句数，非批量为 0
+     */
+    public void sql(long elapsedNanos, String sql, Object[] params, long rows, int batch, String caller) {
+        if (publish(Slot.SQL, elapsedNanos, sql, params, rows, batch, caller)) {
+            sqlEntries.increment();
+        }
+    }
+
+    /**
+     * 记录一个慢请求
+     * @param request 请求方法和路径
+     * @param handler 处理请求的控制器方法，未进入控制器时为 null
+     */
+    public void request(long elapsedNanos, String request, int status, String handler) {
+        if (publish(Slot.REQUEST, elapsedNanos, request, null, status, 0, handler)) {
+            requestEntries.increment();
+        }
+    }
+
+    /**
+     * 占用一个槽位写入条目；缓冲区已满时丢弃
+     */
+    private boolean publish(int type, long elapsedNanos, String text, Object[] params, long rows, int batch,
+                            String caller) {
+        long seq;
+        for (;;) {
+            seq = tail.get();
+            if (seq - head >= slots.length) {
+                dropped.increment();
+                return false;
+            }
+            if (tail.compareAndSet(seq, seq + 1)) {
+                break;
+            }
+        }
+        Slot slot = slots[(int) (seq & mask)];
+        slot.type = type;
+        slot.timestamp = System.currentTimeMillis();
+        slot.elapsedNanos = elapsedNanos;
+        slot.text = text;
+        slot.params = params;
+        slot.rows = rows;
+        slot.batch = batch;
+        slot.caller = caller;
+        // 最后写入序号，写文件线程看到序号后才读取其余字段
+        slot.published = seq;
+        return true;
+    }
+
+    /**
+     * 取出已发布的条目写入文件（写文件线程调用，测试中也可直接调用）
+     */
+    void drain() {
+        writeLock.lock();
+        try {
+            StringBuilder line = new StringBuilder(256);
+            long seq = head;
+            for (;;) {
+                Slot slot = slots[(int) (seq & mask)];
+                if (slot.published != seq) {
+                    break;
+                }
+                line.setLength(0);
+                format(slot, line);
+                // 释放引用后再归还槽位
+                slot.text = null;
+                slot.params = null;
+                slot.caller = null;
+                head = ++seq;
+                write(line);
+            }
+            if (writer != null) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            log.warn("写入慢日志失败：{}", e.getMessage());
+            closeWriter();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void format(Slot slot, StringBuilder line) {
+        line.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(slot.timestamp), ZoneId.systemDefault()).format(TIME));
+        line.append(slot.type == Slot.SQL ? " SQL " : " HTTP ");
+        line.append(Math.round(slot.elapsedNanos / 1e5) / 10.0).append("ms");
+        if (slot.type == Slot.SQL) {
+            line.append(" rows=").append(slot.rows);
+            if (slot.batch > 0) {
+                line.append(" batch=").append(slot.batch);
+            }
+            line.append(" caller=").append(slot.caller == null ? "-" : slot.caller);
+            line.append(" sql=[");
+            appendTruncated(line, slot.text, MAX_SQL_LENGTH);
+            line.append(']');
+            if (slot.params != null) {
+                line.append(" params=[");
+                for (int i = 0; i < slot.params.length; i++) {
+                    if (i > 0) {
+                        line.append(", ");
+                    }
+                    appendParam(line, slot.params[i]);
+                }
+                line.append(']');
+            }
+        } else {
+            line.append(" status=").append(slot.rows);
+            line.append(" handler=").append(slot.caller == null ? "-" : slot.caller);
+            line.append(" request=[").append(slot.text).append(']');
+        }
+        line.append('\n');
+    }
+
+    private static void appendParam(StringBuilder line, Object value) {
+        if (value == null) {
+            line.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            line.append(value);
+        } else if (value instanceof byte[] bytes) {
+            line.append("<").append(bytes.length).append(" bytes>");
+        } else {
+            line.append('\'');
+            appendTruncated(line, value.toString(), MAX_PARAM_LENGTH);
+            line.append('\'');
+        }
+    }
+
+    private static void appendTruncated(StringBuilder line, String text, int max) {
+        if (text.length() <= max) {
+            line.append(text);
+        } else {
+            line.append(text, 0, max).append("...");
+        }
+    }
+
+    private void write(StringBuilder line) throws IOException {
+        if (writer == null) {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            fileSize = Files.size(path);
+        }
+        writer.append(line);
+        // 按字符数估算文件大小（中文按 3 字节计会偏小，滚动时机略晚，不影响使用）
+        fileSize += line.length();
+        if (fileSize >= maxFileSizeMb * 1024 * 1024) {
+            roll();
+        }
+    }
+
+    /**
+     * 滚动日志文件：slow.log.(n-1) → slow.log.n，最旧的删除
+     */
+    private void roll() throws IOException {
+        closeWriter();
+        Files.deleteIfExists(Paths.get(file + "." + maxHistory));
+        for (int i = maxHistory - 1; i >= 1; i--) {
+            Path from = Paths.get(file + "." + i);
+            if (Files.exists(from)) {
+                Files.move(from, Paths.get(file + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxHistory > 0) {
+            Files.move(path, Paths.get(file + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("关闭慢日志文件失败：{}", e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * 环形缓冲区槽位：published 为 volatile，写入其余字段后最后写入，保证读取方看到完整条目
+     */
+    private static final class Slot {
+        static final int SQL = 0;
+        static final int REQUEST = 1;
+
+        volatile long published;
+        int type;
+        long timestamp;
+        long elapsedNanos;
+        String text;
+        Object[] params;
+        long rows;
+        int batch;
+        String caller;
+
+        Slot(long initial) {
+            this.published = initial;
+        }
+    }
+}
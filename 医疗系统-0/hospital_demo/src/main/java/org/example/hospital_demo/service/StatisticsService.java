@@ -0,0 +1,97 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.entity.Department;
+import org.example.hospital_demo.repository.AppointmentDailyStatRepository;
+import org.example.hospital_demo.repository.DepartmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * 挂号统计服务（图表数据）
+ * 读取统计汇总表（见 AppointmentStatsRollup），查询量只与天数和科室数有关，与挂号总量无关；
+ * 汇总按创建日期归类并包括已归档的挂号
+ */
+@Service
+public class StatisticsService {
+
+    // 统计的最大天数
+    private static final int MAX_DAYS = 366;
+
+    @Autowired
+    private AppointmentDailyStatRepository statRepo;
+
+    @Autowired
+    private DepartmentRepository departmentRepo;
+
+    /**
+     * 最近 days 天各科室的挂号数量和挂号费（按数量降序），附按状态、按类型的挂号数
+     */
+    @Transactional(readOnly = true)
+    public Result<List<Map<String, Object>>> countByDepartment(int days) {
+        if (days <= 0 || days > MAX_DAYS) {
+            return Result.badRequest("统计天数必须在 1 到 " + MAX_DAYS + " 之间");
+        }
+        Map<Long, String> names = new HashMap<>();
+        for (Department department : departmentRepo.findAll()) {
+            names.put(department.getId(), department.getName());
+        }
+        Map<Long, Map<String, Object>> byDepartment = new LinkedHashMap<>();
+        for (Object[] row : statRepo.sumByDepartment(LocalDate.now().minusDays(days - 1))) {
+            long count = (Long) row[3];
+            if (count == 0) {
+                continue;
+            }
+            Map<String, Object> entry = byDepartment.computeIfAbsent((Long) row[0], id -> {
+                Map<String, Object> created = new LinkedHashMap<>();
+                created.put("departmentId", id);
+                created.put("departmentName", names.get(id));
+                created.put("count", 0L);
+                created.put("feeSum", BigDecimal.ZERO);
+                created.put("byStatus", new LinkedHashMap<String, Long>());
+                created.put("byType", new LinkedHashMap<String, Long>());
+                return created;
+            });
+            entry.put("count", (Long) entry.get("count") + count);
+            entry.put("feeSum", ((BigDecimal) entry.get("feeSum")).add((BigDecimal) row[4]));
+            merge(entry, "byStatus", ((Appointment.AppointmentStatus) row[2]).name(), count);
+            merge(entry, "byType", ((Appointment.AppointmentType) row[1]).name(), count);
+        }
+        List<Map<String, Object>> result = new ArrayList<>(byDepartment.values());
+        result.sort(Comparator.comparing((Map<String, Object> row) -> (Long) row.get("count")).reversed());
+        return Result.success(result);
+    }
+
+    /**
+     * 最近 days 天每天的挂号数量和挂号费（按创建日期，升序，没有挂号的日期不出现）
+     */
+    @Transactional(readOnly = true)
+    public Result<List<Map<String, Object>>> dailyTrend(int days) {
+        if (days <= 0 || days > MAX_DAYS) {
+            return Result.badRequest("统计天数必须在 1 到 " + MAX_DAYS + " 之间");
+        }
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Object[] row : statRepo.sumByDate(LocalDate.now().minusDays(days - 1))) {
+            if ((Long) row[1] == 0) {
+                continue;
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("date", row[0]);
+            entry.put("count", row[1]);
+            entry.put("feeSum", row[2]);
+            result.add(entry);
+        }
+        return Result.success(result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void merge(Map<String, Object> entry, String field, String key, long count) {
+        ((Map<String, Long>) entry.get(field)).merge(key, count, Long::sum);
+    }
+}
@@ -0,0 +1,350 @@
+package org.example.hospital_demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.dto.WaitingRoomTicket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 挂号等候室（准入控制）
+ * 令牌桶按当前速率发放挂号名额：等候队列为空且有令牌时直接放行，否则按到达顺序排队，
+ * 由放行线程每个周期按令牌数从队首放行。客户端拿到票据后轮询位置，放行后携带票据重新提交挂号。
+ * 放行速率根据实测挂号耗时调整：平均耗时超过目标时按比例降速，未超过且有人排队时逐步提速。
+ * 急诊挂号不进入等候室。批量挂号按其中的普通挂号条数一次扣除令牌（令牌可以扣成负数，之后的请求相应多等），
+ * 不能绕过等候室；票据只能用于不超过排队时名额数的请求。
+ */
+@Component
+public class WaitingRoom {
+
+    @Value("${hospital.waiting-room.enabled:false}")
+    private boolean enabled;
+
+    // 每秒放行的挂号数（初始值、上下限）
+    @Value("${hospital.waiting-room.initial-rate:200}")
+    private double initialRate;
+
+    @Value("${hospital.waiting-room.min-rate:10}")
+    private double minRate;
+
+    @Value("${hospital.waiting-room.max-rate:2000}")
+    private double maxRate;
+
+    // 令牌桶容量：空闲后允许的突发放行数
+    @Value("${hospital.waiting-room.burst:50}")
+    private int burst;
+
+    @Value("${hospital.waiting-room.max-queue:50000}")
+    private int maxQueue;
+
+    // 挂号平均耗时目标，超过时降速
+    @Value("${hospital.waiting-room.target-latency-ms:200}")
+    private long targetLatencyMs;
+
+    // 放行后多久内必须提交挂号，超时名额作废
+    @Value("${hospital.waiting-room.admission-ttl-seconds:60}")
+    private long admissionTtlSeconds;
+
+    // 排队中的票据多久未查询视为已离开，轮到时跳过，不占用名额
+    @Value("${hospital.waiting-room.abandon-seconds:30}")
+    private long abandonSeconds;
+
+    private static final long TICK_MS = 50;
+    private static final long ADJUST_INTERVAL_MS = 1000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 以下字段由 lock 保护
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private double tokens;
+    private long lastRefill;
+    private long nextSeq;
+
+    private final ConcurrentHashMap<String, Waiter> waiters = new ConcurrentHashMap<>();
+
+    private volatile double rate;
+
+    // 当前调整周期内的挂号耗时
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+    private volatile double lastAvgLatencyMs;
+
+    private final LongAdder directAdmits = new LongAdder();
+    private final LongAdder queuedAdmits = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    private ScheduledExecutorService gate;
+
+    @PostConstruct
+    public void start() {
+        rate = initialRate;
+        tokens = burst;
+        lastRefill = System.nanoTime();
+        if (!enabled) {
+            return;
+        }
+        gate = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "waiting-room-gate");
+            t.setDaemon(true);
+            return t;
+        });
+        gate.scheduleWithFixedDelay(this::release, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+        gate.scheduleWithFixedDelay(this::adjustRate, ADJUST_INTERVAL_MS, ADJUST_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        gate.scheduleWithFixedDelay(this::expireAdmissions, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (gate != null) {
+            gate.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 挂号请求进入等候室
+     * 返回 200 表示放行，可以继续挂号；202 表示排队中（携带票据和位置）；503 表示等候队列已满；
+     * 400 表示票据的名额数少于本次请求的普通挂号条数（票据保留，可用于名额数以内的请求）
+     * ticketId 为之前拿到的票据，未携带或票据已失效时按新到达处理
+     */
+    public Result<WaitingRoomTicket> enter(AppointmentRequest request, String ticketId) {
+        return enter("急诊".equals(request.getType()) ? 0 : 1, ticketId);
+    }
+
+    /**
+     * 批量挂号进入等候室：每条普通挂号占一个名额，全部为急诊时不排队；返回值同 enter
+     */
+    public Result<WaitingRoomTicket> enterBatch(List<AppointmentRequest> requests, String ticketId) {
+        int permits = 0;
+        if (requests != null) {
+            for (AppointmentRequest request : requests) {
+                if (request != null && !"急诊".equals(request.getType())) {
+                    permits++;
+                }
+            }
+        }
+        return enter(permits, ticketId);
+    }
+
+    private Result<WaitingRoomTicket> enter(int permits, String ticketId) {
+        if (!enabled || permits == 0) {
+            if (enabled) {
+                bypassed.increment();
+            }
+            return Result.success(null);
+        }
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Waiter waiter = ticketId == null ? null : waiters.get(ticketId);
+            if (waiter != null) {
+                waiter.lastSeen = now;
+                // 票据只覆盖排队时申请的名额数，不能拿单条挂号的票据提交更大的批量
+                if (permits > waiter.permits) {
+                    return Result.badRequest("该票据只能用于 " + waiter.permits + " 条普通挂号，本次请求需要 " + permits + " 条");
+                }
+                if (waiter.admittedAt == 0) {
+                    return queued(waiter);
+                }
+                // 放行名额只能使用一次
+                waiters.remove(ticketId);
+                return Result.success(toTicket(waiter));
+            }
+
+            refill(now);
+            if (queue.isEmpty() && tokens >= 1) {
+                tokens -= permits;
+                directAdmits.increment();
+                return Result.success(null);
+            }
+            if (queue.size() >= maxQueue) {
+                rejected.increment();
+                return Result.error(503, "挂号排队人数已满，请稍后重试");
+            }
+            waiter = new Waiter(UUID.randomUUID().toString(), nextSeq++, now, permits);
+            queue.addLast(waiter);
+            waiters.put(waiter.id, waiter);
+            return queued(waiter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 查询票据状态（同时刷新票据的活跃时间）
+     */
+    public Result<WaitingRoomTicket> getTicket(String ticketId) {
+        Waiter waiter = waiters.get(ticketId);
+        if (waiter == null) {
+            return Result.notFound("排队票据不存在或已过期");
+        }
+        lock.lock();
+        try {
+            waiter.lastSeen = System.nanoTime();
+            return Result.success(toTicket(waiter));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录一次挂号处理耗时，用于调整放行速率
+     */
+    public void recordLatency(long nanos) {
+        recordLatency(nanos, 1);
+    }
+
+    /**
+     * 记录一次批量挂号的处理耗时，按条数折算为平均每条的耗时
+     */
+    public void recordLatency(long nanos, int count) {
+        if (enabled && count > 0) {
+            latencyNanos.add(nanos);
+            latencyCount.add(count);
+        }
+    }
+
+    /**
+     * 等候室统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ratePerSecond", Math.round(rate * 10) / 10.0);
+        stats.put("avgLatencyMs", Math.round(lastAvgLatencyMs * 10) / 10.0);
+        stats.put("targetLatencyMs", targetLatencyMs);
+        lock.lock();
+        try {
+            stats.put("waiting", queue.size());
+            stats.put("tokens", (int) tokens);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("directAdmits", directAdmits.sum());
+        stats.put("queuedAdmits", queuedAdmits.sum());
+        stats.put("emergencyBypassed", bypassed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("abandoned", abandoned.sum());
+        stats.put("expiredAdmissions", expired.sum());
+        return stats;
+    }
+
+    /**
+     * 放行线程：按令牌数从队首放行，跳过长时间未查询的票据
+     */
+    void release() {
+        long now = System.nanoTime();
+        long abandonNanos = TimeUnit.SECONDS.toNanos(abandonSeconds);
+        lock.lock();
+        try {
+            refill(now);
+            while (tokens >= 1 && !queue.isEmpty()) {
+                Waiter waiter = queue.pollFirst();
+                if (now - waiter.lastSeen > abandonNanos) {
+                    waiters.remove(waiter.id);
+                    abandoned.increment();
+                    continue;
+                }
+                waiter.admittedAt = now;
+                tokens -= waiter.permits;
+                queuedAdmits.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按上一周期的平均挂号耗时调整放行速率
+     */
+    private void adjustRate() {
+        long count = latencyCount.sumThenReset();
+        long nanos = latencyNanos.sumThenReset();
+        if (count == 0) {
+            return;
+        }
+        double avgMs = nanos / 1e6 / count;
+        lastAvgLatencyMs = avgMs;
+        lock.lock();
+        try {
+            if (avgMs > targetLatencyMs) {
+                rate = Math.max(minRate, rate * Math.max(0.5, targetLatencyMs / avgMs));
+            } else if (!queue.isEmpty()) {
+                rate = Math.min(maxRate, rate * 1.1 + 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 清理放行后未在规定时间内提交挂号的票据
+     */
+    private void expireAdmissions() {
+        long deadline = System.nanoTime() - TimeUnit.SECONDS.toNanos(admissionTtlSeconds);
+        waiters.values().removeIf(waiter -> {
+            if (waiter.admittedAt != 0 && waiter.admittedAt < deadline) {
+                expired.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + rate * (now - lastRefill) / 1e9);
+        lastRefill = now;
+    }
+
+    private Result<WaitingRoomTicket> queued(Waiter waiter) {
+        return new Result<>(202, "挂号人数较多，正在排队，请凭票据查询位置", toTicket(waiter), System.currentTimeMillis());
+    }
+
+    /**
+     * 位置 = 与队首的序号差 + 1（已离开但尚未轮到的票据也计入，位置只会偏大）
+     */
+    private WaitingRoomTicket toTicket(Waiter waiter) {
+        if (waiter.admittedAt != 0) {
+            return new WaitingRoomTicket(waiter.id, "已放行", 0, 0);
+        }
+        Waiter head = queue.peekFirst();
+        int position = head == null ? 1 : (int) (waiter.seq - head.seq + 1);
+        int waitSeconds = (int) Math.ceil(position / Math.max(rate, minRate));
+        return new WaitingRoomTicket(waiter.id, "排队中", position, waitSeconds);
+    }
+
+    /**
+     * 一个排队中的挂号请求；admittedAt 在 lock 内写入，lastSeen 允许无锁读取
+     */
+    private static final class Waiter {
+        final String id;
+        final long seq;
+        // 放行时扣除的令牌数（批量挂号为普通挂号条数）
+        final int permits;
+        volatile long lastSeen;
+        volatile long admittedAt;
+
+        Waiter(String id, long seq, long now, int permits) {
+            this.id = id;
+            this.seq = seq;
+            this.lastSeen = now;
+            this.permits = permits;
+        }
+    }
+}
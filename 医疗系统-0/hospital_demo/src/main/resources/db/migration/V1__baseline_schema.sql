@@ -0,0 +1,147 @@
+-- 基线表结构（与实体类映射一致，持久化模式下 Hibernate 只做 validate）
+-- 修改实体类的表结构时新增 V<n>__<说明>.sql，不要修改已发布的迁移脚本
+
+-- 挂号、号源、统计汇总使用序列主键，步长与实体类的 allocationSize 一致
+create sequence appointment_seq start with 1 increment by 50;
+create sequence appointment_slot_seq start with 1 increment by 50;
+create sequence appointment_daily_stat_seq start with 1 increment by 50;
+
+create table department (
+    id bigint generated by default as identity,
+    name varchar(50) not null,
+    description text,
+    created_time timestamp(6),
+    primary key (id)
+);
+
+create table doctor (
+    id bigint generated by default as identity,
+    name varchar(50) not null,
+    title varchar(50),
+    department_id bigint,
+    specialty text,
+    schedule varchar(200),
+    max_patients_per_day integer,
+    created_time timestamp(6),
+    primary key (id),
+    constraint fk_doctor_department foreign key (department_id) references department
+);
+
+create table patient (
+    id bigint generated by default as identity,
+    name varchar(50) not null,
+    gender enum ('女','男'),
+    age integer,
+    phone varchar(20),
+    id_card varchar(18),
+    address varchar(200),
+    created_time timestamp(6),
+    primary key (id),
+    constraint uk_patient_phone unique (phone)
+);
+
+create table appointment (
+    id bigint not null,
+    patient_id bigint not null,
+    doctor_id bigint not null,
+    department_id bigint not null,
+    appointment_date date not null,
+    appointment_time time(0) not null,
+    type enum ('急诊','普通') not null,
+    priority integer not null,
+    status enum ('就诊中','已取消','已就诊','已过期','已预约') not null,
+    queue_number integer,
+    symptoms text,
+    fee numeric(10,2),
+    created_time timestamp(6),
+    updated_time timestamp(6),
+    primary key (id),
+    constraint uk_appointment_patient_doctor_date unique (patient_id, doctor_id, appointment_date),
+    constraint uk_appointment_doctor_date_queue unique (doctor_id, appointment_date, queue_number),
+    constraint fk_appointment_patient foreign key (patient_id) references patient,
+    constraint fk_appointment_doctor foreign key (doctor_id) references doctor,
+    constraint fk_appointment_department foreign key (department_id) references department
+);
+
+create index idx_appointment_created on appointment (created_time, id);
+create index idx_appointment_patient_created on appointment (patient_id, created_time, id);
+create index idx_appointment_status_created on appointment (status, created_time, id);
+create index idx_appointment_status_date on appointment (status, appointment_date, id);
+
+create table appointment_archive (
+    id bigint not null,
+    patient_id bigint not null,
+    doctor_id bigint not null,
+    department_id bigint not null,
+    appointment_date date not null,
+    appointment_time time(0) not null,
+    type enum ('急诊','普通') not null,
+    priority integer not null,
+    status enum ('就诊中','已取消','已就诊','已过期','已预约') not null,
+    queue_number integer,
+    symptoms text,
+    fee numeric(10,2),
+    created_time timestamp(6),
+    updated_time timestamp(6),
+    archived_time timestamp(6),
+    primary key (id),
+    constraint fk_archive_patient foreign key (patient_id) references patient,
+    constraint fk_archive_doctor foreign key (doctor_id) references doctor,
+    constraint fk_archive_department foreign key (department_id) references department
+);
+
+create index idx_archive_created on appointment_archive (created_time, id);
+create index idx_archive_patient_created on appointment_archive (patient_id, created_time, id);
+create index idx_archive_status_created on appointment_archive (status, created_time, id);
+
+create table appointment_daily_stat (
+    id bigint not null,
+    stat_date date not null,
+    department_id bigint not null,
+    type enum ('急诊','普通') not null,
+    status enum ('就诊中','已取消','已就诊','已过期','已预约') not null,
+    appointment_count bigint not null,
+    fee_sum numeric(14,2) not null,
+    pending boolean not null,
+    primary key (id)
+);
+
+create index idx_daily_stat_date on appointment_daily_stat (stat_date, department_id);
+create index idx_daily_stat_pending on appointment_daily_stat (pending, id);
+
+create table appointment_slot (
+    id bigint not null,
+    doctor_id bigint not null,
+    date date not null,
+    time_slot varchar(20) not null,
+    total_slots integer not null,
+    used_slots integer not null,
+    emergency_reserved integer not null,
+    status enum ('停诊','可用','已满') not null,
+    primary key (id),
+    constraint uk_slot_doctor_date_time unique (doctor_id, date, time_slot),
+    constraint fk_slot_doctor foreign key (doctor_id) references doctor
+);
+
+create index idx_slot_date on appointment_slot (date, id);
+
+create table slot_template (
+    id bigint generated by default as identity,
+    doctor_id bigint not null,
+    slot_minutes integer not null check (slot_minutes >= 5),
+    total_slots integer not null check (total_slots >= 1),
+    emergency_reserved integer not null check (emergency_reserved >= 0),
+    updated_time timestamp(6),
+    primary key (id),
+    constraint uk_slot_template_doctor unique (doctor_id),
+    constraint fk_slot_template_doctor foreign key (doctor_id) references doctor
+);
+
+create table queue_sequence (
+    id bigint generated by default as identity,
+    doctor_id bigint not null,
+    seq_date date not null,
+    next_value integer not null,
+    primary key (id),
+    constraint uk_queue_sequence_doctor_date unique (doctor_id, seq_date)
+);
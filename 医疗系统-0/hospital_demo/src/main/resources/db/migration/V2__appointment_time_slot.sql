@@ -0,0 +1,17 @@
+-- 挂号记录保存所占号源的时间段：号源时长由排班模板决定（如 15 分钟），不能再由预约时间加 30 分钟推算
+
+alter table appointment add column time_slot varchar(20);
+alter table appointment_archive add column time_slot varchar(20);
+
+-- 已有挂号按医生、日期和开始时间从号源表回填
+update appointment a set time_slot = (
+    select s.time_slot from appointment_slot s
+    where s.doctor_id = a.doctor_id and s.date = a.appointment_date
+      and left(s.time_slot, 5) = formatdatetime(a.appointment_time, 'HH:mm'));
+-- 号源已被清理的按原来的 30 分钟一段推算
+update appointment set time_slot = formatdatetime(appointment_time, 'HH:mm') || '-'
+        || formatdatetime(dateadd(minute, 30, appointment_time), 'HH:mm')
+    where time_slot is null;
+update appointment_archive set time_slot = formatdatetime(appointment_time, 'HH:mm') || '-'
+        || formatdatetime(dateadd(minute, 30, appointment_time), 'HH:mm')
+    where time_slot is null;
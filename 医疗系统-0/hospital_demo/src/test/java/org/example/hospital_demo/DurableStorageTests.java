@@ -0,0 +1,61 @@
+package org.example.hospital_demo;
+
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.DepartmentRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 持久化模式测试：Flyway 建表后 Hibernate 校验通过，重启后数据保留且不重复初始化测试数据
+ */
+class DurableStorageTests {
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void keepsDataAcrossRestartWithoutReseeding() {
+        Long patientId;
+        long departments;
+        long doctors;
+        try (ConfigurableApplicationContext first = start()) {
+            Flyway flyway = first.getBean(Flyway.class);
+            assertEquals(flyway.info().all().length, flyway.info().applied().length);
+            departments = first.getBean(DepartmentRepository.class).count();
+            doctors = first.getBean(DoctorRepository.class).count();
+            assertTrue(departments > 0);
+
+            Patient patient = new Patient();
+            patient.setName("持久化病人");
+            patient.setPhone("15300000001");
+            patientId = first.getBean(PatientRepository.class).save(patient).getId();
+        }
+
+        try (ConfigurableApplicationContext second = start()) {
+            Flyway flyway = second.getBean(Flyway.class);
+            assertEquals(flyway.info().all().length, flyway.info().applied().length);
+            assertEquals(0, flyway.info().pending().length);
+            assertEquals(departments, second.getBean(DepartmentRepository.class).count());
+            assertEquals(doctors, second.getBean(DoctorRepository.class).count());
+            assertEquals("持久化病人", second.getBean(PatientRepository.class).findById(patientId)
+                    .orElseThrow().getName());
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(HospitalDemoApplication.class)
+                .profiles("durable")
+                .run("--hospital.data-dir=" + dataDir.toAbsolutePath(),
+                        "--server.port=0",
+                        "--hospital.expiry.enabled=false");
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.hospital_demo.controller;
+
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.example.hospital_demo.service.AppointmentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量挂号接口测试：每一项独立返回结果，失败项（含与已取消挂号冲突的项）不影响其他项，
+ * 成功项的挂号记录按 JDBC 批量写入
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:batch_booking;DB_CLOSE_DELAY=-1",
+        "hospital.expiry.enabled=false",
+        // 阈值为 0 时每条 SQL 都写入慢日志，用来确认批量写入
+        "hospital.slow-log.sql-threshold-ms=0",
+        "hospital.slow-log.file=target/batch-booking-test/slow.log"
+})
+class BatchBookingTests {
+
+    private static final Path LOG_FILE = Path.of("target/batch-booking-test/slow.log");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void batchReturnsPerItemResultsAndInsertsInOneBatch() throws Exception {
+        Doctor doctor = doctorRepo.findAll().stream()
+                .filter(d -> "全天候".equals(d.getSchedule())).findFirst().orElseThrow();
+        LocalDate date = LocalDate.now().plusDays(6);
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Patient patient = new Patient();
+            patient.setName("批量病人" + i);
+            patient.setPhone("1570000000" + i);
+            patients.add(patientRepo.save(patient));
+        }
+
+        // 第 3 个病人之前挂过又取消了：取消的挂号仍占用 (病人, 医生, 日期) 唯一约束
+        Result<AppointmentResponse> cancelled = appointmentService.createAppointment(
+                request(patients.get(2).getId(), doctor, date, "10:00-10:30"));
+        assertEquals(200, cancelled.getCode(), cancelled.getMessage());
+        assertEquals(200, appointmentService.cancelAppointment(cancelled.getData().getId()).getCode());
+
+        List<AppointmentRequest> batch = List.of(
+                request(patients.get(0).getId(), doctor, date, "08:00-08:30"),
+                request(patients.get(1).getId(), doctor, date, "08:00-08:30"),
+                // 与第 0 项重复
+                request(patients.get(0).getId(), doctor, date, "08:30-09:00"),
+                // 与已取消的挂号冲突
+                request(patients.get(2).getId(), doctor, date, "08:30-09:00"),
+                // 病人不存在
+                request(Long.MAX_VALUE, doctor, date, "08:30-09:00"),
+                request(patients.get(3).getId(), doctor, date, "08:30-09:00"),
+                request(patients.get(4).getId(), doctor, date, "09:00-09:30"));
+
+        // 只看本次请求写入的部分（文件跨多次运行追加）
+        long offset = Files.exists(LOG_FILE) ? Files.size(LOG_FILE) : 0;
+        HttpResponse<String> response = post("/api/appointments/batch", objectMapper.writeValueAsString(batch));
+
+        assertEquals(200, response.statusCode(), response.body());
+        JsonNode body = objectMapper.readTree(response.body());
+        assertEquals(200, body.get("code").asInt());
+        JsonNode items = body.get("data");
+        int[] expected = {200, 200, 400, 400, 404, 200, 200};
+        assertEquals(expected.length, items.size());
+        for (int i = 0; i < expected.length; i++) {
+            JsonNode item = items.get(i);
+            assertEquals(i, item.get("index").asInt());
+            assertEquals(expected[i], item.get("code").asInt(), item.toString());
+            assertEquals(expected[i] == 200, item.hasNonNull("appointment"), item.toString());
+        }
+        assertEquals("批量病人5", items.get(6).get("appointment").get("patientName").asString());
+        assertEquals("09:00-09:30", items.get(6).get("appointment").get("timeSlot").asString());
+
+        // 4 条成功项的挂号记录在一次 executeBatch 中写入，日志行带最后一条的参数
+        // （慢日志异步落盘，等到批量写入的那一行出现）
+        String insert = null;
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (insert == null && System.currentTimeMillis() < deadline) {
+            byte[] content = Files.exists(LOG_FILE) ? Files.readAllBytes(LOG_FILE) : new byte[0];
+            insert = new String(content, (int) offset, content.length - (int) offset, StandardCharsets.UTF_8)
+                    .lines()
+                    .filter(l -> l.contains(" SQL ") && l.contains("insert into appointment ("))
+                    .filter(l -> l.contains("'09:00-09:30'"))
+                    .findFirst().orElse(null);
+            if (insert == null) {
+                Thread.sleep(50);
+            }
+        }
+        assertNotNull(insert, "慢日志中没有挂号的批量写入");
+        assertTrue(insert.contains("batch=4"), insert);
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private AppointmentRequest request(Long patientId, Doctor doctor, LocalDate date, String timeSlot) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setPatientId(patientId);
+        request.setDoctorId(doctor.getId());
+        request.setDepartmentId(doctor.getDepartment().getId());
+        request.setAppointmentDate(date);
+        request.setAppointmentTime(LocalTime.parse(timeSlot.substring(0, 5)));
+        request.setTimeSlot(timeSlot);
+        return request;
+    }
+}
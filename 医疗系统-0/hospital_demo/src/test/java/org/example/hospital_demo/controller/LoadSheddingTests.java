@@ -0,0 +1,158 @@
+package org.example.hospital_demo.controller;
+
+import org.example.hospital_demo.config.AdaptiveConcurrencyLimiter;
+import org.example.hospital_demo.config.AdaptiveConcurrencyLimiter.Priority;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 过载保护测试：并发名额用满时先拒绝查询，再拒绝普通挂号，急诊挂号只在达到关键请求硬上限时被拒绝；
+ * 挂号请求体超过上限时不读入内存，直接返回 413
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:load_shedding;DB_CLOSE_DELAY=-1",
+        "hospital.load-shedding.initial-limit=10",
+        "hospital.load-shedding.min-limit=10",
+        "hospital.load-shedding.max-limit=10",
+        "hospital.load-shedding.critical-max-in-flight=12",
+        "hospital.load-shedding.retry-after-seconds=2",
+        "hospital.load-shedding.max-body-bytes=1024"
+})
+class LoadSheddingTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void readsAreShedFirstAndEmergencyBookingsPassUpToHardCap() throws Exception {
+        Doctor doctor = doctorRepo.findAll().get(2);
+        Patient normal = patientRepo.save(patient("过载普通病人", "13300000001"));
+        Patient emergency = patientRepo.save(patient("过载急诊病人", "13300000002"));
+        LocalDate date = LocalDate.now().plusDays(3);
+
+        assertEquals(200, get("/api/doctors").statusCode());
+
+        // 占用 6 个名额：查询份额（上限 10 的 60%）用满，普通写请求仍可进入
+        int held = 0;
+        try {
+            for (; held < 6; held++) {
+                assertTrue(limiter.tryAcquire(Priority.普通写));
+            }
+            HttpResponse<String> shed = get("/api/doctors");
+            assertEquals(503, shed.statusCode());
+            assertEquals("2", shed.headers().firstValue("Retry-After").orElseThrow());
+            assertEquals(503, objectMapper.readTree(shed.body()).get("code").asInt());
+            assertEquals(200, code(book(normal, doctor, date, "普通", "09:00-09:30")));
+
+            // 再占用 2 个名额：普通写份额（80%）用满，只剩急诊等关键请求
+            for (; held < 8; held++) {
+                assertTrue(limiter.tryAcquire(Priority.普通写));
+            }
+            assertEquals(503, book(normal, doctor, date.plusDays(1), "普通", "09:30-10:00").statusCode());
+            assertEquals(200, code(book(emergency, doctor, date, "急诊", "10:00-10:30")));
+
+            // 关键请求超出自适应上限后仍放行，直到同时处理的请求数达到硬上限 12
+            for (; held < 12; held++) {
+                assertTrue(limiter.tryAcquire(Priority.关键));
+            }
+            assertEquals(503, book(emergency, doctor, date.plusDays(1), "急诊", "10:30-11:00").statusCode());
+        } finally {
+            for (int i = 0; i < held; i++) {
+                limiter.release(0);
+            }
+        }
+        assertEquals(200, get("/api/doctors").statusCode());
+
+        JsonNode stats = objectMapper.readTree(get("/api/admin/load-shedding").body()).get("data");
+        assertTrue(stats.get("shed").get("可重试读").asLong() >= 1);
+        assertTrue(stats.get("shed").get("普通写").asLong() >= 1);
+        assertEquals(1, stats.get("shed").get("关键").asLong());
+    }
+
+    @Test
+    void oversizedBookingBodyIsRejected() throws Exception {
+        String body = "{\"type\":\"" + "急".repeat(1000) + "\"}";
+        // 声明了 Content-Length
+        HttpRequest sized = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/appointments"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = client.send(sized, HttpResponse.BodyHandlers.ofString());
+        assertEquals(413, response.statusCode());
+        assertEquals(413, objectMapper.readTree(response.body()).get("code").asInt());
+
+        // 分块传输，没有 Content-Length
+        HttpRequest chunked = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/appointments"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofInputStream(
+                        () -> new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))))
+                .build();
+        assertEquals(413, client.send(chunked, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        // 上限以内的请求体照常交给挂号接口处理
+        Patient patient = patientRepo.save(patient("过载请求体病人", "13300000003"));
+        assertEquals(200, code(book(patient, doctorRepo.findAll().get(2), LocalDate.now().plusDays(5), "普通", "08:00-08:30")));
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> book(Patient patient, Doctor doctor, LocalDate date, String type, String timeSlot)
+            throws Exception {
+        String start = timeSlot.substring(0, 5);
+        String body = String.format("{\"patientId\":%d,\"doctorId\":%d,\"departmentId\":%d,"
+                        + "\"appointmentDate\":\"%s\",\"appointmentTime\":\"%s:00\",\"timeSlot\":\"%s\",\"type\":\"%s\"}",
+                patient.getId(), doctor.getId(), doctor.getDepartment().getId(), date, start, timeSlot, type);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/appointments"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private int code(HttpResponse<String> response) {
+        assertEquals(200, response.statusCode(), response.body());
+        return objectMapper.readTree(response.body()).get("code").asInt();
+    }
+
+    private Patient patient(String name, String phone) {
+        Patient patient = new Patient();
+        patient.setName(name);
+        patient.setPhone(phone);
+        return patient;
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.hospital_demo.controller;
+
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 指标采集接口测试：挂号和查询后，采集结果包含接口耗时直方图、挂号结果计数、连接池和 Hibernate 统计
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:metrics_endpoint;DB_CLOSE_DELAY=-1",
+        // Hibernate 统计默认关闭，这里开启以断言查询计数
+        "hospital.metrics.hibernate-statistics=true"
+})
+class MetricsEndpointTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void scrapeExposesLatencyOutcomesAndPoolStats() throws Exception {
+        Doctor doctor = doctorRepo.findAll().get(1);
+        Patient patient = new Patient();
+        patient.setName("指标测试病人");
+        patient.setPhone("14700000001");
+        patient = patientRepo.save(patient);
+        LocalDate date = LocalDate.now().plusDays(2);
+
+        assertEquals(200, get("/api/doctors").statusCode());
+        String body = String.format("{\"patientId\":%d,\"doctorId\":%d,\"departmentId\":%d,"
+                        + "\"appointmentDate\":\"%s\",\"appointmentTime\":\"09:00:00\",\"timeSlot\":\"09:00-09:30\",\"type\":\"普通\"}",
+                patient.getId(), doctor.getId(), doctor.getDepartment().getId(), date);
+        assertTrue(post("/api/appointments", body).body().contains("\"code\":200"));
+        // 同一天同一医生再挂一次：重复挂号
+        assertTrue(post("/api/appointments", body).body().contains("\"code\":400"));
+
+        HttpResponse<String> scrape = get("/api/admin/metrics");
+        assertEquals(200, scrape.statusCode());
+        assertTrue(scrape.headers().firstValue("Content-Type").orElseThrow().startsWith("text/plain"));
+        String text = scrape.body();
+
+        assertTrue(text.contains("# TYPE hospital_http_request_seconds histogram"));
+        assertTrue(text.contains("hospital_http_request_seconds_count{handler=\"AppointmentController.createAppointment\",method=\"POST\",status=\"200\"} 2"));
+        assertTrue(text.contains("hospital_http_request_seconds_bucket{handler=\"DoctorController.getAllDoctors\",method=\"GET\",status=\"200\",le=\"+Inf\"} 1"), text);
+        assertTrue(metricValue(text, "hospital_booking_outcomes_total{outcome=\"success\"}") >= 1);
+        assertTrue(metricValue(text, "hospital_booking_outcomes_total{outcome=\"duplicate\"}") >= 1);
+        assertTrue(text.contains("hospital_slot_cas_retries_total "));
+        assertTrue(text.contains("hospital_pool_acquire_seconds_count{pool="));
+        assertTrue(text.contains("hospital_pool_connections_active{pool="));
+        assertTrue(metricValue(text, "hospital_hibernate_queries_total") > 0);
+    }
+
+    private static double metricValue(String text, String series) {
+        for (String line : text.split("\n")) {
+            if (line.startsWith(series + " ")) {
+                return Double.parseDouble(line.substring(series.length() + 1));
+            }
+        }
+        fail("缺少指标 " + series);
+        return 0;
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
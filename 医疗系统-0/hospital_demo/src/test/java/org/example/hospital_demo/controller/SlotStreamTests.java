@@ -0,0 +1,128 @@
+package org.example.hospital_demo.controller;
+
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.example.hospital_demo.service.AppointmentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 号源推送测试：订阅后收到全量状态，一批挂号合并为一条增量消息；医生不存在或日期超出号源窗口时不建立连接
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:slot_stream;DB_CLOSE_DELAY=-1",
+        "hospital.sse.push-interval-ms=300"
+})
+class SlotStreamTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void burstOfBookingsIsPushedAsOneDelta() throws Exception {
+        Doctor doctor = doctorRepo.findAll().get(5);
+        LocalDate date = LocalDate.now().plusDays(2);
+
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/slots/stream/" + doctor.getId() + "?date=" + date)).build();
+        HttpResponse<Stream<String>> response = HttpClient.newHttpClient()
+                .send(request, HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, response.statusCode());
+        Thread reader = new Thread(() -> response.body()
+                .filter(line -> line.startsWith("data:"))
+                .forEach(line -> events.add(line.substring(5))));
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            assertBurstCoalesced(doctor, date, events);
+        } finally {
+            response.body().close();
+        }
+    }
+
+    @Test
+    void rejectsUnknownDoctorAndDateOutsideHorizon() throws Exception {
+        Long doctorId = doctorRepo.findAll().get(0).getId();
+        assertEquals(404, subscribeStatus(Long.MAX_VALUE, LocalDate.now().plusDays(1)));
+        assertEquals(400, subscribeStatus(doctorId, LocalDate.now().minusDays(1)));
+        assertEquals(400, subscribeStatus(doctorId, LocalDate.now().plusYears(1)));
+    }
+
+    private int subscribeStatus(Long doctorId, LocalDate date) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/slots/stream/" + doctorId + "?date=" + date)).build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private void assertBurstCoalesced(Doctor doctor, LocalDate date, BlockingQueue<String> events) throws Exception {
+        JsonNode initial = objectMapper.readTree(events.poll(10, TimeUnit.SECONDS));
+        assertTrue(initial.get("slots").size() > 10);
+        assertEquals(0, initial.get("waiting").asInt());
+
+        String[] timeSlots = {"08:00-08:30", "08:30-09:00", "09:00-09:30"};
+        for (int i = 0; i < timeSlots.length; i++) {
+            Patient patient = new Patient();
+            patient.setName("推送病人" + i);
+            patient.setPhone(String.format("199%08d", i));
+            patient = patientRepo.save(patient);
+
+            AppointmentRequest booking = new AppointmentRequest();
+            booking.setPatientId(patient.getId());
+            booking.setDoctorId(doctor.getId());
+            booking.setDepartmentId(doctor.getDepartment().getId());
+            booking.setAppointmentDate(date);
+            booking.setAppointmentTime(LocalTime.parse(timeSlots[i].substring(0, 5)));
+            booking.setTimeSlot(timeSlots[i]);
+            Result<?> result = appointmentService.createAppointment(booking);
+            assertEquals(200, result.getCode(), result.getMessage());
+        }
+
+        JsonNode delta = objectMapper.readTree(events.poll(10, TimeUnit.SECONDS));
+        // 同一推送周期内的挂号可能被拆到相邻两个周期，最多两条消息
+        int changedSlots = delta.get("slots").size();
+        int waiting = delta.get("waiting").asInt();
+        String next = events.poll(1, TimeUnit.SECONDS);
+        if (next != null) {
+            JsonNode second = objectMapper.readTree(next);
+            changedSlots += second.get("slots").size();
+            waiting = second.get("waiting").asInt();
+        }
+        assertEquals(3, changedSlots);
+        assertEquals(3, waiting);
+        assertNull(events.poll(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.hospital_demo.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压测延迟记录器
+ * 预分配数组按下标写入微秒延迟，结束后排序计算分位数，记录过程不加锁
+ */
+public class LatencyRecorder {
+
+    private final long[] samples;
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    private final LongAdder errors = new LongAdder();
+
+    private volatile String firstError;
+
+    public LatencyRecorder(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public void record(long startNanos) {
+        int index = count.getAndIncrement();
+        if (index < samples.length) {
+            samples[index] = (System.nanoTime() - startNanos) / 1000;
+        }
+    }
+
+    public void error(String cause) {
+        if (errors.sum() == 0) {
+            firstError = cause;
+        }
+        errors.increment();
+    }
+
+    public String firstError() {
+        return firstError;
+    }
+
+    public Summary summarize(long elapsedNanos) {
+        int n = Math.min(count.get(), samples.length);
+        long[] sorted = Arrays.copyOf(samples, n);
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+        return new Summary(n, errors.sum(), n / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), n == 0 ? 0 : sorted[n - 1] / 1000.0);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000.0;
+    }
+
+    /**
+     * 一轮压测的结果，延迟单位为毫秒
+     */
+    public record Summary(int requests, long errors, double throughput,
+                          double p50, double p90, double p99, double p999, double max) {
+
+        public static String header() {
+            return String.format("%8s %7s %10s %9s %9s %9s %9s %9s",
+                    "requests", "errors", "req/s", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%8d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f",
+                    requests, errors, throughput, p50, p90, p99, p999, max);
+        }
+    }
+}
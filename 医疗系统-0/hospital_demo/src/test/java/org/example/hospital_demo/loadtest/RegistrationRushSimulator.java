@@ -0,0 +1,294 @@
+package org.example.hospital_demo.loadtest;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 放号高峰模拟与超卖检查
+ * 模拟次日号源放出时大量病人同时抢号：对运行中的实例并发发送挂号（POST /api/appointments），
+ * 医生按 Zipf 分布倾斜（少数热门医生承担大部分请求），部分挂号成功后随即取消（DELETE /api/appointments/{id}）。
+ * 实例开启挂号等候室时，排队的请求按提示的等待时间携带票据重新提交。
+ * 结束后输出吞吐量、延迟分位数和按结果分类的失败明细，并调用 GET /api/admin/consistency
+ * 检查号源是否超卖、已用数量是否与有效挂号数一致，不一致时以退出码 1 结束。
+ *
+ * 运行方式：
+ *   1. 启动实例并生成压测病人（号源容量可按需放大）：
+ *        mvn spring-boot:run -Dspring-boot.run.arguments="--hospital.seed.patients=20000 --spring.jpa.show-sql=false"
+ *   2. 运行模拟器：
+ *        mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ *        java -cp target/test-classes:target/classes:$(cat target/classpath.txt) \
+ *             org.example.hospital_demo.loadtest.RegistrationRushSimulator http://localhost:8080 20000 500 0.1 1.2
+ * 参数：实例地址（默认 http://localhost:8080）、挂号请求总数（默认 20000）、并发客户端数（默认 500）、
+ *       挂号成功后取消的比例（默认 0.1）、医生热度倾斜指数（默认 1.2，越大越集中）
+ */
+public class RegistrationRushSimulator {
+
+    private static final String[] TIME_SLOTS = {
+            "08:00-08:30", "08:30-09:00", "09:00-09:30", "09:30-10:00",
+            "10:00-10:30", "10:30-11:00", "11:00-11:30",
+            "14:00-14:30", "14:30-15:00", "15:00-15:30", "15:30-16:00",
+            "16:00-16:30", "16:30-17:00"
+    };
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder().build();
+
+    public static void main(String[] args) throws Exception {
+        String base = args.length > 0 ? args[0] : "http://localhost:8080";
+        int totalBookings = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        double cancelRatio = args.length > 3 ? Double.parseDouble(args[3]) : 0.1;
+        double skew = args.length > 4 ? Double.parseDouble(args[4]) : 1.2;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+
+        List<Long> patientIds = new ArrayList<>();
+        for (JsonNode patient : get(client, base + "/api/patients").path("data")) {
+            patientIds.add(patient.path("id").asLong());
+        }
+        List<long[]> doctors = new ArrayList<>();
+        for (JsonNode doctor : get(client, base + "/api/doctors").path("data")) {
+            doctors.add(new long[]{doctor.path("id").asLong(), doctor.path("department").path("id").asLong()});
+        }
+        if (patientIds.isEmpty() || doctors.isEmpty()) {
+            System.out.println("实例中没有病人或医生数据，请先以 --hospital.seed.patients=N 启动");
+            System.exit(2);
+        }
+        System.out.printf("病人 %d 名，医生 %d 名，挂号请求 %d 个，并发 %d，取消比例 %.2f，倾斜指数 %.2f%n",
+                patientIds.size(), doctors.size(), totalBookings, clients, cancelRatio, skew);
+
+        Rush rush = new Rush(client, base, patientIds, doctors, zipfCumulative(doctors.size(), skew),
+                LocalDate.now().plusDays(1), cancelRatio, totalBookings);
+        long start = System.nanoTime();
+        rush.run(clients);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println();
+        System.out.println(String.format("%-18s ", "operation") + LatencyRecorder.Summary.header());
+        System.out.println(String.format("%-18s ", "createAppointment") + rush.bookings.summarize(elapsed));
+        System.out.println(String.format("%-18s ", "cancelAppointment") + rush.cancels.summarize(elapsed));
+
+        System.out.println();
+        System.out.println("结果分类：");
+        new TreeMap<>(rush.outcomes).forEach((outcome, count) ->
+                System.out.printf("  %-40s %8d%n", outcome, count.sum()));
+        if (rush.waitingRoomRetries.sum() > 0) {
+            System.out.printf("  %-40s %8d%n", "等候室排队后重新提交", rush.waitingRoomRetries.sum());
+        }
+
+        System.out.println();
+        System.out.println("各医生成功挂号数：");
+        rush.bookedByDoctor.forEach((doctorId, count) ->
+                System.out.printf("  医生 %-6d %8d%n", doctorId, count.sum()));
+
+        JsonNode report = get(client, base + "/api/admin/consistency").path("data");
+        System.out.println();
+        System.out.printf("号源一致性：检查 %d 个号源，超卖 %d 个，已用数量与有效挂号数不符 %d 个%n",
+                report.path("checkedSlots").asInt(), report.path("oversoldCount").asInt(),
+                report.path("mismatchedCount").asInt());
+        if (!report.path("consistent").asBoolean()) {
+            System.out.println(MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Zipf 分布的累积概率：第 k 个医生的权重为 1 / k^skew
+     */
+    private static double[] zipfCumulative(int n, double skew) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static JsonNode get(HttpClient client, String url) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(120))
+                .GET()
+                .build();
+        return MAPPER.readTree(client.send(request, HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    /**
+     * 一次抢号：clients 条异步请求链共享挂号请求配额，每条链上一个请求返回后立即发下一个
+     */
+    private static final class Rush {
+
+        final HttpClient client;
+        final String base;
+        final List<Long> patientIds;
+        final List<long[]> doctors;
+        final double[] doctorWeights;
+        final LocalDate date;
+        final double cancelRatio;
+        final int totalBookings;
+
+        final LatencyRecorder bookings;
+        final LatencyRecorder cancels;
+        final ConcurrentHashMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        final ConcurrentSkipListMap<Long, LongAdder> bookedByDoctor = new ConcurrentSkipListMap<>();
+        final AtomicInteger issued = new AtomicInteger();
+        final LongAdder waitingRoomRetries = new LongAdder();
+
+        Rush(HttpClient client, String base, List<Long> patientIds, List<long[]> doctors, double[] doctorWeights,
+             LocalDate date, double cancelRatio, int totalBookings) {
+            this.client = client;
+            this.base = base;
+            this.patientIds = patientIds;
+            this.doctors = doctors;
+            this.doctorWeights = doctorWeights;
+            this.date = date;
+            this.cancelRatio = cancelRatio;
+            this.totalBookings = totalBookings;
+            this.bookings = new LatencyRecorder(totalBookings);
+            this.cancels = new LatencyRecorder(totalBookings);
+        }
+
+        void run(int clients) {
+            CompletableFuture<?>[] chains = new CompletableFuture<?>[clients];
+            for (int c = 0; c < clients; c++) {
+                chains[c] = next();
+            }
+            CompletableFuture.allOf(chains).join();
+        }
+
+        /**
+         * 链上的下一个请求：配额用完时结束
+         */
+        private CompletableFuture<Void> next() {
+            int i = issued.getAndIncrement();
+            if (i >= totalBookings) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return book(i).thenCompose(appointmentId -> {
+                if (appointmentId != null && ThreadLocalRandom.current().nextDouble() < cancelRatio) {
+                    return cancel(appointmentId);
+                }
+                return CompletableFuture.completedFuture(null);
+            }).thenCompose(ignored -> next());
+        }
+
+        private CompletableFuture<Long> book(int i) {
+            long[] doctor = doctors.get(pickDoctor());
+            String timeSlot = TIME_SLOTS[ThreadLocalRandom.current().nextInt(TIME_SLOTS.length)];
+            String body = String.format("{\"patientId\":%d,\"doctorId\":%d,\"departmentId\":%d,"
+                            + "\"appointmentDate\":\"%s\",\"appointmentTime\":\"%s:00\",\"timeSlot\":\"%s\",\"type\":\"普通\"}",
+                    patientIds.get(i % patientIds.size()), doctor[0], doctor[1],
+                    date, timeSlot.substring(0, 5), timeSlot);
+            return submit(body, doctor, null, System.nanoTime());
+        }
+
+        /**
+         * 提交挂号；进入等候室时按预计等待时间（最长 1 秒）后携带票据重新提交，延迟从第一次提交算起
+         */
+        private CompletableFuture<Long> submit(String body, long[] doctor, String ticketId, long sent) {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(base + "/api/appointments"))
+                    .timeout(Duration.ofSeconds(60))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+            if (ticketId != null) {
+                builder.header("X-Waiting-Room-Ticket", ticketId);
+            }
+            return client.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofString())
+                    .handle((response, error) -> {
+                        JsonNode ticket = waitingRoomTicket(response, error);
+                        if (ticket != null) {
+                            waitingRoomRetries.increment();
+                            long delayMs = Math.min(1000, Math.max(100, ticket.path("estimatedWaitSeconds").asLong() * 1000));
+                            return CompletableFuture.supplyAsync(() -> ticket.path("ticketId").asString(),
+                                            CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS))
+                                    .thenCompose(id -> submit(body, doctor, id, sent));
+                        }
+                        JsonNode result = handle("挂号", bookings, sent, response, error);
+                        if (result == null || result.path("code").asInt() != 200) {
+                            return CompletableFuture.<Long>completedFuture(null);
+                        }
+                        bookedByDoctor.computeIfAbsent(doctor[0], k -> new LongAdder()).increment();
+                        // 排队处理模式下可能只返回票据，没有挂号ID
+                        JsonNode id = result.path("data").path("id");
+                        return CompletableFuture.completedFuture(id.isNumber() ? id.asLong() : null);
+                    })
+                    .thenCompose(future -> future);
+        }
+
+        /**
+         * 等候室排队响应（202 且带排队位置）中的票据，其他响应返回 null
+         */
+        private JsonNode waitingRoomTicket(HttpResponse<String> response, Throwable error) {
+            if (error != null || response.statusCode() != 200 || !response.body().contains("\"position\"")) {
+                return null;
+            }
+            JsonNode result = MAPPER.readTree(response.body());
+            return result.path("code").asInt() == 202 ? result.path("data") : null;
+        }
+
+        private CompletableFuture<Void> cancel(Long appointmentId) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/api/appointments/" + appointmentId))
+                    .timeout(Duration.ofSeconds(60))
+                    .DELETE()
+                    .build();
+            long sent = System.nanoTime();
+            return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .handle((response, error) -> {
+                        handle("取消", cancels, sent, response, error);
+                        return null;
+                    });
+        }
+
+        /**
+         * 记录延迟并按结果分类计数：网络异常和非 200 状态码计为失败请求，业务拒绝（如号源已满）按返回消息分类
+         */
+        private JsonNode handle(String operation, LatencyRecorder recorder, long sent,
+                                HttpResponse<String> response, Throwable error) {
+            if (error != null) {
+                recorder.error(error.toString());
+                count(operation + " 异常 " + error.getClass().getSimpleName());
+                return null;
+            }
+            if (response.statusCode() != 200) {
+                recorder.error("HTTP " + response.statusCode());
+                count(operation + " HTTP " + response.statusCode());
+                return null;
+            }
+            recorder.record(sent);
+            JsonNode result = MAPPER.readTree(response.body());
+            int code = result.path("code").asInt();
+            count(code == 200 ? operation + " 成功" : operation + " " + code + " " + result.path("message").asString(""));
+            return result;
+        }
+
+        private void count(String outcome) {
+            outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+        }
+
+        private int pickDoctor() {
+            int index = Arrays.binarySearch(doctorWeights, ThreadLocalRandom.current().nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, doctorWeights.length - 1);
+        }
+    }
+}
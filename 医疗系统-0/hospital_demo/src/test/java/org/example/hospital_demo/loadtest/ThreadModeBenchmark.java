@@ -0,0 +1,212 @@
+package org.example.hospital_demo.loadtest;
+
+import org.example.hospital_demo.HospitalDemoApplication;
+import org.example.hospital_demo.entity.AppointmentSlot;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentSlotRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.example.hospital_demo.service.SlotInventoryEngine;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * 平台线程 / 虚拟线程请求处理模式对比压测
+ * 分别以 spring.threads.virtual.enabled=false/true 启动应用，对挂号（POST /api/appointments）
+ * 和医生号源查询（GET /api/slots/doctor/{id}）在不同并发客户端数下压测，输出吞吐量和延迟分位数。
+ * 每个客户端是一条异步请求链，上一个请求返回后立即发下一个，因此并发数即在途请求数。
+ *
+ * 运行方式（虚拟线程模式需要 JDK 21 及以上运行，低版本只跑平台线程模式）：
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/classpath.txt) \
+ *        org.example.hospital_demo.loadtest.ThreadModeBenchmark 1000,5000,10000 5
+ * 参数：并发客户端数（逗号分隔，默认 1000,5000,10000），每个客户端的请求数（默认 5）
+ */
+public class ThreadModeBenchmark {
+
+    private static final String[] TIME_SLOTS = {
+            "08:00-08:30", "08:30-09:00", "09:00-09:30", "09:30-10:00",
+            "10:00-10:30", "10:30-11:00", "11:00-11:30",
+            "14:00-14:30", "14:30-15:00", "15:00-15:30", "15:30-16:00",
+            "16:00-16:30", "16:30-17:00"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int[] clientCounts = Arrays.stream((args.length > 0 ? args[0] : "1000,5000,10000").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        int requestsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        List<Boolean> modes = new ArrayList<>(List.of(false));
+        if (Runtime.version().feature() >= 21) {
+            modes.add(true);
+        } else {
+            System.out.println("当前 JDK " + Runtime.version().feature() + " 不支持虚拟线程，只运行平台线程模式");
+        }
+
+        List<String> report = new ArrayList<>();
+        for (boolean virtual : modes) {
+            String mode = virtual ? "virtual" : "platform";
+            try (ConfigurableApplicationContext context = start(virtual, mode)) {
+                int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+                Fixture fixture = prepare(context, Arrays.stream(clientCounts).max().orElse(0) * requestsPerClient);
+                HttpClient client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(30))
+                        .build();
+                String base = "http://localhost:" + port;
+                AtomicInteger patientCursor = new AtomicInteger();
+
+                // 预热：让 JIT、连接池和号源库存进入稳定状态
+                run(client, 200, 5, i -> slotsRequest(base, fixture, i));
+
+                for (int clients : clientCounts) {
+                    LatencyRecorder.Summary slots = run(client, clients, requestsPerClient,
+                            i -> slotsRequest(base, fixture, i));
+                    report.add(row(mode, "getDoctorSlots", clients, slots));
+                    LatencyRecorder.Summary booking = run(client, clients, requestsPerClient,
+                            i -> bookingRequest(base, fixture, patientCursor.getAndIncrement()));
+                    report.add(row(mode, "createAppointment", clients, booking));
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println(String.format("%-9s %-18s %7s ", "mode", "endpoint", "clients") + LatencyRecorder.Summary.header());
+        report.forEach(System.out::println);
+    }
+
+    private static ConfigurableApplicationContext start(boolean virtual, String mode) {
+        // 以命令行参数传入，优先级高于 application.properties
+        return new SpringApplicationBuilder(HospitalDemoApplication.class).run(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--spring.datasource.url=jdbc:h2:mem:bench_" + mode + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.web=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+                // 比较的是两种线程模式本身的处理能力，关闭过载保护
+                "--hospital.load-shedding.enabled=false",
+                "--server.tomcat.max-connections=20000",
+                "--server.tomcat.accept-count=10000");
+    }
+
+    /**
+     * 放大号源容量并准备足够的病人，使挂号请求走完整的写库路径而不是"号源已满"的快速失败
+     */
+    private static Fixture prepare(ConfigurableApplicationContext context, int patientCount) {
+        AppointmentSlotRepository slotRepo = context.getBean(AppointmentSlotRepository.class);
+        SlotInventoryEngine inventory = context.getBean(SlotInventoryEngine.class);
+        List<AppointmentSlot> slots = slotRepo.findAll();
+        slots.forEach(slot -> slot.setTotalSlots(1_000_000));
+        slotRepo.saveAll(slots);
+
+        List<Doctor> doctors = context.getBean(DoctorRepository.class).findAll();
+        LocalDate today = LocalDate.now();
+        for (Doctor doctor : doctors) {
+            for (int day = 0; day < 7; day++) {
+                inventory.reload(doctor.getId(), today.plusDays(day));
+            }
+        }
+
+        PatientRepository patientRepo = context.getBean(PatientRepository.class);
+        List<Patient> batch = new ArrayList<>();
+        List<Long> patientIds = new ArrayList<>(patientCount + 1000);
+        for (int i = 0; i < patientCount + 1000; i++) {
+            Patient patient = new Patient();
+            patient.setName("压测病人" + i);
+            patient.setPhone(String.format("150%08d", i));
+            batch.add(patient);
+            if (batch.size() == 1000) {
+                patientRepo.saveAll(batch).forEach(p -> patientIds.add(p.getId()));
+                batch.clear();
+            }
+        }
+        patientRepo.saveAll(batch).forEach(p -> patientIds.add(p.getId()));
+
+        List<long[]> doctorDepartments = doctors.stream()
+                .map(d -> new long[]{d.getId(), d.getDepartment().getId()})
+                .toList();
+        return new Fixture(doctorDepartments, patientIds, today);
+    }
+
+    /**
+     * clients 条请求链同时运行，每条链顺序发送 requestsPerClient 个请求
+     */
+    private static LatencyRecorder.Summary run(HttpClient client, int clients, int requestsPerClient,
+                                               IntFunction<HttpRequest> requests) {
+        LatencyRecorder recorder = new LatencyRecorder(clients * requestsPerClient);
+        AtomicInteger sequence = new AtomicInteger();
+        long start = System.nanoTime();
+        CompletableFuture<?>[] chains = new CompletableFuture<?>[clients];
+        for (int c = 0; c < clients; c++) {
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            for (int r = 0; r < requestsPerClient; r++) {
+                chain = chain.thenCompose(ignored -> {
+                    long sent = System.nanoTime();
+                    return client.sendAsync(requests.apply(sequence.getAndIncrement()), HttpResponse.BodyHandlers.discarding())
+                            .handle((response, error) -> {
+                                if (error != null || response.statusCode() != 200) {
+                                    recorder.error(error != null ? error.toString() : "HTTP " + response.statusCode());
+                                } else {
+                                    recorder.record(sent);
+                                }
+                                return null;
+                            });
+                });
+            }
+            chains[c] = chain;
+        }
+        CompletableFuture.allOf(chains).join();
+        long elapsed = System.nanoTime() - start;
+        if (recorder.firstError() != null) {
+            System.out.println("并发 " + clients + " 出现失败请求，首个错误：" + recorder.firstError());
+        }
+        return recorder.summarize(elapsed);
+    }
+
+    private static HttpRequest slotsRequest(String base, Fixture fixture, int i) {
+        long[] doctor = fixture.doctors().get(i % fixture.doctors().size());
+        LocalDate date = fixture.today().plusDays(1 + i % 6);
+        return HttpRequest.newBuilder(URI.create(base + "/api/slots/doctor/" + doctor[0] + "?date=" + date))
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+    }
+
+    private static HttpRequest bookingRequest(String base, Fixture fixture, int i) {
+        long[] doctor = fixture.doctors().get(i % fixture.doctors().size());
+        LocalDate date = fixture.today().plusDays(1 + i % 6);
+        String timeSlot = TIME_SLOTS[i % TIME_SLOTS.length];
+        String body = String.format("{\"patientId\":%d,\"doctorId\":%d,\"departmentId\":%d,"
+                        + "\"appointmentDate\":\"%s\",\"appointmentTime\":\"%s:00\",\"timeSlot\":\"%s\",\"type\":\"普通\"}",
+                fixture.patientIds().get(i % fixture.patientIds().size()), doctor[0], doctor[1],
+                date, timeSlot.substring(0, 5), timeSlot);
+        return HttpRequest.newBuilder(URI.create(base + "/api/appointments"))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String row(String mode, String endpoint, int clients, LatencyRecorder.Summary summary) {
+        return String.format("%-9s %-18s %7d ", mode, endpoint, clients) + summary;
+    }
+
+    private record Fixture(List<long[]> doctors, List<Long> patientIds, LocalDate today) {
+    }
+}
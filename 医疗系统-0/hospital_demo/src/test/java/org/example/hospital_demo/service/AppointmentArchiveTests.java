@@ -0,0 +1,156 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.CursorPage;
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentArchiveRepository;
+import org.example.hospital_demo.repository.AppointmentRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 挂号归档测试：已结束的旧挂号分批移入归档表，病人挂号记录可合并归档数据，统计汇总不受归档影响
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:appointment_archive;DB_CLOSE_DELAY=-1",
+        "hospital.expiry.enabled=false",
+        "hospital.expiry.chunk-size=2",
+        "hospital.expiry.pause-ms=0",
+        "hospital.archive.after-days=90"
+})
+class AppointmentArchiveTests {
+
+    @Autowired
+    private ExpirySweeper sweeper;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private AppointmentStatsRollup statsRollup;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepo;
+
+    @Autowired
+    private AppointmentArchiveRepository archiveRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Test
+    void movesFinishedHistoryToArchiveAndUnionsOnRead() {
+        Doctor doctor = doctorRepo.findAll().get(0);
+        Long departmentId = doctor.getDepartment().getId();
+        Patient patient = new Patient();
+        patient.setName("归档病人");
+        patient.setPhone("13800000001");
+        patient = patientRepo.save(patient);
+
+        LocalDate today = LocalDate.now();
+        List<Appointment> old = appointmentRepo.saveAll(List.of(
+                appointment(patient, doctor, today.minusDays(100), Appointment.AppointmentStatus.已就诊),
+                appointment(patient, doctor, today.minusDays(120), Appointment.AppointmentStatus.已取消),
+                // 仍为已预约的旧挂号先被改为已过期，同一次清理中随后归档
+                appointment(patient, doctor, today.minusDays(150), Appointment.AppointmentStatus.已预约)));
+        List<Appointment> recent = appointmentRepo.saveAll(List.of(
+                appointment(patient, doctor, today.minusDays(5), Appointment.AppointmentStatus.已就诊),
+                appointment(patient, doctor, today.plusDays(1), Appointment.AppointmentStatus.已预约)));
+
+        // 直接写库的挂号不经过统计增量，先重建汇总
+        assertEquals(200, statsRollup.rebuild().getCode());
+        long completedBefore = appointmentService.getSummary().getData().get("completed");
+        long departmentBefore = departmentCount(departmentId);
+        long trendBefore = trendCount();
+
+        Map<String, Object> stats = sweeper.sweep().getData();
+        assertEquals(3L, stats.get("archivedAppointments"));
+        assertTrue((Long) stats.get("archiveChunks") >= 2);
+
+        for (Appointment appointment : old) {
+            assertFalse(appointmentRepo.existsById(appointment.getId()));
+            assertTrue(archiveRepo.existsById(appointment.getId()));
+        }
+        assertEquals(Appointment.AppointmentStatus.已过期, archiveRepo.findById(old.get(2).getId()).orElseThrow().getStatus());
+        for (Appointment appointment : recent) {
+            assertTrue(appointmentRepo.existsById(appointment.getId()));
+        }
+
+        // 默认只查在线表；合并查询时按游标翻页能取全且不重复
+        assertEquals(2, appointmentService.getPatientAppointments(patient.getId(), null, 100, false)
+                .getData().getItems().size());
+        Set<Long> ids = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<AppointmentResponse> page =
+                    appointmentService.getPatientAppointments(patient.getId(), cursor, 2, true).getData();
+            for (AppointmentResponse item : page.getItems()) {
+                assertTrue(ids.add(item.getId()));
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(5, ids.size());
+        assertEquals(3, pages);
+
+        // 统计不因归档而变化，重建后结果相同
+        assertEquals(departmentBefore, departmentCount(departmentId));
+        assertEquals(trendBefore, trendCount());
+        assertEquals(200, statsRollup.rebuild().getCode());
+        assertEquals(departmentBefore, departmentCount(departmentId));
+        assertEquals(trendBefore, trendCount());
+        assertEquals(completedBefore, appointmentService.getSummary().getData().get("completed"));
+
+        // 删除病人时归档记录一并删除
+        assertEquals(200, patientService.deletePatient(patient.getId()).getCode());
+        for (Appointment appointment : old) {
+            assertFalse(archiveRepo.existsById(appointment.getId()));
+        }
+    }
+
+    private long departmentCount(Long departmentId) {
+        return statisticsService.countByDepartment(30).getData().stream()
+                .filter(row -> departmentId.equals(row.get("departmentId")))
+                .mapToLong(row -> (Long) row.get("count"))
+                .sum();
+    }
+
+    private long trendCount() {
+        return statisticsService.dailyTrend(30).getData().stream()
+                .mapToLong(row -> (Long) row.get("count"))
+                .sum();
+    }
+
+    private static Appointment appointment(Patient patient, Doctor doctor, LocalDate date,
+                                           Appointment.AppointmentStatus status) {
+        Appointment appointment = new Appointment();
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setDepartment(doctor.getDepartment());
+        appointment.setAppointmentDate(date);
+        appointment.setAppointmentTime(LocalTime.of(9, 0));
+        appointment.setStatus(status);
+        return appointment;
+    }
+}
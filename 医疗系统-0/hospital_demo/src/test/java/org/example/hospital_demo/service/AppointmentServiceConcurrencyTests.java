@@ -0,0 +1,90 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.AppointmentSlot;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentSlotRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 并发挂号测试：同一热门号源被大量请求同时抢占时不能超卖
+ */
+@SpringBootTest
+class AppointmentServiceConcurrencyTests {
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private AppointmentSlotRepository slotRepo;
+
+    @Test
+    void concurrentBookingsNeverOversellSlot() throws Exception {
+        Doctor doctor = doctorRepo.findAll().get(0);
+        LocalDate date = LocalDate.now().plusDays(2);
+        String timeSlot = "09:00-09:30";
+        int clients = 200;
+
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Patient p = new Patient();
+            p.setName("并发病人" + i);
+            p.setPhone(String.format("139%08d", i));
+            patients.add(p);
+        }
+        patients = patientRepo.saveAll(patients);
+
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Result<AppointmentResponse>>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            AppointmentRequest request = new AppointmentRequest();
+            request.setPatientId(patients.get(i).getId());
+            request.setDoctorId(doctor.getId());
+            request.setDepartmentId(doctor.getDepartment().getId());
+            request.setAppointmentDate(date);
+            request.setAppointmentTime(LocalTime.of(9, 0));
+            request.setTimeSlot(timeSlot);
+            request.setType(i % 2 == 0 ? "普通" : "急诊");
+            futures.add(pool.submit(() -> {
+                start.await();
+                return appointmentService.createAppointment(request);
+            }));
+        }
+        start.countDown();
+
+        int success = 0;
+        for (Future<Result<AppointmentResponse>> future : futures) {
+            if (future.get(60, TimeUnit.SECONDS).getCode() == 200) {
+                success++;
+            }
+        }
+        pool.shutdown();
+
+        AppointmentSlot slot = slotRepo.findByDoctorIdAndDateAndTimeSlot(doctor.getId(), date, timeSlot).orElseThrow();
+        assertEquals(slot.getTotalSlots(), success);
+        assertEquals(slot.getTotalSlots(), slot.getUsedSlots());
+        assertEquals(AppointmentSlot.SlotStatus.已满, slot.getStatus());
+    }
+}
@@ -0,0 +1,311 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.BookingTicket;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 挂号排序器测试：分区线程把排队的挂号合并为一次批量写入，整批失败后逐条处理、每个请求仍有独立结果，
+ * 取消请求与挂号在同一分区内顺序处理，完成后无人查询的票据被清理；准备失败的挂号不算批次内重复，
+ * 停止时排队中和处理中的请求都以错误结束
+ * 用数据库行锁卡住分区线程正在处理的取消请求，让后续请求在队列中积压成一批。
+ */
+@SpringBootTest(properties = {
+        // 行锁等待时间要长于测试中卡住分区线程的时间
+        "spring.datasource.url=jdbc:h2:mem:booking_sequencer;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "hospital.expiry.enabled=false",
+        "hospital.booking.mode=sequencer",
+        "hospital.booking.sequencer.partitions=1",
+        "hospital.booking.sequencer.response-deadline-ms=100",
+        // 阈值为 0 时每条 SQL 都写入慢日志，用来确认批量写入
+        "hospital.slow-log.sql-threshold-ms=0",
+        "hospital.slow-log.file=target/booking-sequencer-test/slow.log"
+})
+class BookingSequencerTests {
+
+    private static final Path LOG_FILE = Path.of("target/booking-sequencer-test/slow.log");
+
+    @Autowired
+    private BookingSequencer sequencer;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private BookingMetrics bookingMetrics;
+
+    @Autowired
+    private AppointmentRepository appointmentRepo;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void queuedBookingsCommitInOneBatchAndTicketsExpire() throws Exception {
+        Doctor doctor = doctorRepo.findAll().get(3);
+        LocalDate date = LocalDate.now().plusDays(4);
+        Long blocker = book(patient(1), doctor, date, "08:00-08:30");
+        long offset = Files.exists(LOG_FILE) ? Files.size(LOG_FILE) : 0;
+
+        List<String> tickets = new ArrayList<>();
+        CompletableFuture<Result<?>> cancel;
+        try (Connection lock = lockAppointment(blocker)) {
+            cancel = CompletableFuture.supplyAsync(() -> sequencer.submitCancel(blocker));
+            Thread.sleep(200);
+            String[] slots = {"08:30-09:00", "09:00-09:30", "09:30-10:00"};
+            for (int i = 0; i < slots.length; i++) {
+                Result<?> queued = sequencer.submitBooking(request(patient(2 + i), doctor, date, slots[i]));
+                assertEquals(202, queued.getCode(), queued.getMessage());
+                tickets.add(((BookingTicket) queued.getData()).getTicketId());
+            }
+
+            // 未完成的票据不会被清理
+            ReflectionTestUtils.setField(sequencer, "ticketTtlSeconds", 0L);
+            Thread.sleep(5);
+            ReflectionTestUtils.invokeMethod(sequencer, "reapTickets");
+            assertEquals("排队中", sequencer.getTicket(tickets.get(0)).getData().getStatus());
+            lock.rollback();
+        }
+
+        // 取消在挂号之前处理
+        assertEquals(200, await(cancel.get(10, TimeUnit.SECONDS)).getCode());
+        assertEquals(Appointment.AppointmentStatus.已取消, appointmentRepo.findById(blocker).orElseThrow().getStatus());
+        for (String ticketId : tickets.subList(0, 2)) {
+            BookingTicket done = awaitTicket(ticketId);
+            assertEquals(200, done.getCode(), done.getMessage());
+            assertNotNull(done.getAppointment());
+        }
+
+        // 3 条挂号记录在一次 executeBatch 中写入（慢日志异步落盘，等到批量写入的那一行出现；
+        // 按日期区分，偏移之后仍可能落盘其他测试的写入）
+        String insert = awaitLogLine(offset, "'" + date + "'", "'09:30-10:00'");
+        assertNotNull(insert, "慢日志中没有挂号的批量写入");
+        assertTrue(insert.contains("batch=3"), insert);
+
+        // 完成后超过保留时间无人查询的票据被清理
+        try {
+            Thread.sleep(50);
+            ReflectionTestUtils.invokeMethod(sequencer, "reapTickets");
+            assertEquals(404, sequencer.getTicket(tickets.get(2)).getCode());
+        } finally {
+            ReflectionTestUtils.setField(sequencer, "ticketTtlSeconds", 300L);
+        }
+    }
+
+    @Test
+    void failedBatchFallsBackToPerItemResults() throws Exception {
+        Doctor doctor = doctorRepo.findAll().get(1);
+        LocalDate date = LocalDate.now().plusDays(5);
+        Long blocker = book(patient(11), doctor, date, "08:00-08:30");
+        // 取消过的挂号仍占用 (病人, 医生, 日期) 唯一约束：重复检查只看已预约，写库时才失败
+        Patient conflicting = patient(12);
+        Long cancelled = book(conflicting, doctor, date, "08:30-09:00");
+        assertEquals(200, appointmentService.cancelAppointment(cancelled).getCode());
+        long fallbacks = bookingMetrics.batchFallbacks.sum();
+
+        List<String> tickets = new ArrayList<>();
+        try (Connection lock = lockAppointment(blocker)) {
+            CompletableFuture.runAsync(() -> sequencer.submitCancel(blocker));
+            Thread.sleep(200);
+            tickets.add(ticketOf(sequencer.submitBooking(request(patient(13), doctor, date, "09:00-09:30"))));
+            tickets.add(ticketOf(sequencer.submitBooking(request(conflicting, doctor, date, "09:00-09:30"))));
+            tickets.add(ticketOf(sequencer.submitBooking(request(patient(14), doctor, date, "09:30-10:00"))));
+            lock.rollback();
+        }
+
+        BookingTicket first = awaitTicket(tickets.get(0));
+        BookingTicket failed = awaitTicket(tickets.get(1));
+        BookingTicket last = awaitTicket(tickets.get(2));
+        assertEquals(200, first.getCode(), first.getMessage());
+        assertNotEquals(200, failed.getCode());
+        assertNull(failed.getAppointment());
+        assertEquals(200, last.getCode(), last.getMessage());
+        assertEquals(fallbacks + 1, bookingMetrics.batchFallbacks.sum());
+        assertEquals(Appointment.AppointmentStatus.已取消, appointmentRepo.findById(blocker).orElseThrow().getStatus());
+        assertEquals(Appointment.AppointmentStatus.已取消, appointmentRepo.findById(cancelled).orElseThrow().getStatus());
+
+        // 不存在的挂号不进入队列
+        assertEquals(404, sequencer.submitCancel(Long.MAX_VALUE).getCode());
+    }
+
+    @Test
+    void failedBookingDoesNotCountAsDuplicateInBatch() throws Exception {
+        Doctor doctor = doctorRepo.findAll().get(2);
+        LocalDate date = LocalDate.now().plusDays(6);
+        Long blocker = book(patient(21), doctor, date, "08:00-08:30");
+        Patient retrying = patient(22);
+
+        List<String> tickets = new ArrayList<>();
+        try (Connection lock = lockAppointment(blocker)) {
+            CompletableFuture.runAsync(() -> sequencer.submitCancel(blocker));
+            Thread.sleep(200);
+            // 不存在的时间段准备失败，同一病人随后改约其他时间段，再约第三个时间段才算重复
+            tickets.add(ticketOf(sequencer.submitBooking(request(retrying, doctor, date, "23:00-23:30"))));
+            tickets.add(ticketOf(sequencer.submitBooking(request(retrying, doctor, date, "09:00-09:30"))));
+            tickets.add(ticketOf(sequencer.submitBooking(request(retrying, doctor, date, "09:30-10:00"))));
+            lock.rollback();
+        }
+
+        BookingTicket failed = awaitTicket(tickets.get(0));
+        BookingTicket retried = awaitTicket(tickets.get(1));
+        BookingTicket duplicate = awaitTicket(tickets.get(2));
+        assertNotEquals(200, failed.getCode());
+        assertEquals(200, retried.getCode(), retried.getMessage());
+        assertEquals(400, duplicate.getCode(), duplicate.getMessage());
+    }
+
+    @Test
+    void stopFailsQueuedAndInFlightRequests() throws Exception {
+        Doctor doctor = doctorRepo.findAll().get(4);
+        LocalDate date = LocalDate.now().plusDays(6);
+        Long blocker = book(patient(31), doctor, date, "08:00-08:30");
+
+        // 单独启动一个排序器，停止它不影响本类其他测试使用的 bean
+        BookingSequencer stopping = new BookingSequencer(transactionManager);
+        ReflectionTestUtils.setField(stopping, "appointmentService", appointmentService);
+        ReflectionTestUtils.setField(stopping, "appointmentRepo", appointmentRepo);
+        ReflectionTestUtils.setField(stopping, "bookingMetrics", bookingMetrics);
+        ReflectionTestUtils.setField(stopping, "mode", "sequencer");
+        ReflectionTestUtils.setField(stopping, "partitionCount", 1);
+        ReflectionTestUtils.setField(stopping, "capacity", 16);
+        ReflectionTestUtils.setField(stopping, "batchSize", 64);
+        ReflectionTestUtils.setField(stopping, "responseDeadlineMs", 100L);
+        ReflectionTestUtils.setField(stopping, "ticketTtlSeconds", 300L);
+        ReflectionTestUtils.setField(stopping, "shutdownWaitMs", 200L);
+        stopping.start();
+
+        try (Connection lock = lockAppointment(blocker)) {
+            // 取消请求卡在行锁上，停止时仍未完成；之后的挂号还在队列中
+            String inFlight = ticketOf(stopping.submitCancel(blocker));
+            String queued = ticketOf(stopping.submitBooking(request(patient(32), doctor, date, "09:00-09:30")));
+            stopping.stop();
+
+            for (String ticketId : List.of(inFlight, queued)) {
+                Result<BookingTicket> ticket = stopping.getTicket(ticketId);
+                assertEquals("已完成", ticket.getData().getStatus());
+                assertEquals(503, ticket.getData().getCode(), ticket.getData().getMessage());
+            }
+            assertEquals(503, stopping.submitBooking(request(patient(33), doctor, date, "09:30-10:00")).getCode());
+            lock.rollback();
+        }
+    }
+
+    /**
+     * 在另一个连接中锁住挂号行，分区线程处理它的取消请求时等待行锁；调用方回滚后放开
+     */
+    private Connection lockAppointment(Long appointmentId) throws Exception {
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM appointment WHERE id = ? FOR UPDATE")) {
+            statement.setLong(1, appointmentId);
+            statement.executeQuery().close();
+        }
+        return connection;
+    }
+
+    /**
+     * 截止时间内完成的结果直接返回，否则凭票据等到完成
+     */
+    private BookingTicket await(Result<?> result) throws InterruptedException {
+        if (result.getCode() != 202) {
+            return new BookingTicket(null, "已完成", result.getCode(), result.getMessage(), null);
+        }
+        return awaitTicket(ticketOf(result));
+    }
+
+    private BookingTicket awaitTicket(String ticketId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        for (;;) {
+            Result<BookingTicket> ticket = sequencer.getTicket(ticketId);
+            assertEquals(200, ticket.getCode(), ticket.getMessage());
+            if ("已完成".equals(ticket.getData().getStatus())) {
+                return ticket.getData();
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "票据未完成：" + ticketId);
+            Thread.sleep(20);
+        }
+    }
+
+    private String awaitLogLine(long offset, String... markers) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            byte[] content = Files.exists(LOG_FILE) ? Files.readAllBytes(LOG_FILE) : new byte[0];
+            String insert = new String(content, (int) offset, content.length - (int) offset, StandardCharsets.UTF_8)
+                    .lines()
+                    .filter(l -> l.contains(" SQL ") && l.contains("insert into appointment ("))
+                    .filter(l -> Arrays.stream(markers).allMatch(l::contains))
+                    .findFirst().orElse(null);
+            if (insert != null) {
+                return insert;
+            }
+            Thread.sleep(50);
+        }
+        return null;
+    }
+
+    private static String ticketOf(Result<?> result) {
+        assertEquals(202, result.getCode(), result.getMessage());
+        return ((BookingTicket) result.getData()).getTicketId();
+    }
+
+    private Long book(Patient patient, Doctor doctor, LocalDate date, String timeSlot) {
+        Result<AppointmentResponse> result = appointmentService.createAppointment(request(patient, doctor, date, timeSlot));
+        assertEquals(200, result.getCode(), result.getMessage());
+        return result.getData().getId();
+    }
+
+    private Patient patient(int index) {
+        Patient patient = new Patient();
+        patient.setName("排序器病人" + index);
+        patient.setPhone(String.format("158%08d", index));
+        return patientRepo.save(patient);
+    }
+
+    private static AppointmentRequest request(Patient patient, Doctor doctor, LocalDate date, String timeSlot) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setPatientId(patient.getId());
+        request.setDoctorId(doctor.getId());
+        request.setDepartmentId(doctor.getDepartment().getId());
+        request.setAppointmentDate(date);
+        request.setAppointmentTime(LocalTime.parse(timeSlot.substring(0, 5)));
+        request.setTimeSlot(timeSlot);
+        return request;
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 候诊队列测试：急诊优先，挂号/取消/完成后队列同步更新，叫号弹出队首并标记为就诊中，
+ * 叫号事务回滚时只放回叫到的病人
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:doctor_queue;DB_CLOSE_DELAY=-1")
+class DoctorQueueTests {
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepo;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void queueFollowsBookingsAndCallNext() {
+        Doctor doctor = doctorRepo.findAll().get(4);
+        LocalDate date = LocalDate.now().plusDays(1);
+
+        // 队列首次访问前的挂号：从数据库重建
+        Long first = book(doctor, date, 0, "08:00-08:30", "普通");
+        Long second = book(doctor, date, 1, "08:30-09:00", "普通");
+        assertEquals(List.of(first, second), queueIds(doctor, date));
+
+        // 之后的挂号增量进入队列，急诊排在最前
+        Long emergency = book(doctor, date, 2, "09:00-09:30", "急诊");
+        Long third = book(doctor, date, 3, "09:30-10:00", "普通");
+        assertEquals(List.of(emergency, first, second, third), queueIds(doctor, date));
+
+        appointmentService.cancelAppointment(second);
+        assertEquals(List.of(emergency, first, third), queueIds(doctor, date));
+
+        Result<AppointmentResponse> called = appointmentService.callNextPatient(doctor.getId(), date);
+        assertEquals(emergency, called.getData().getId());
+        assertEquals(Appointment.AppointmentStatus.就诊中, appointmentRepo.findById(emergency).orElseThrow().getStatus());
+        assertEquals(List.of(first, third), queueIds(doctor, date));
+
+        appointmentService.completeAppointment(first);
+        assertEquals(List.of(third), queueIds(doctor, date));
+
+        assertEquals(third, appointmentService.callNextPatient(doctor.getId(), date).getData().getId());
+        assertEquals(404, appointmentService.callNextPatient(doctor.getId(), date).getCode());
+    }
+
+    @Test
+    void rollbackRequeuesOnlyTheCalledPatient() {
+        Doctor doctor = doctorRepo.findAll().get(4);
+        LocalDate date = LocalDate.now().plusDays(2);
+        Long stale = book(doctor, date, 10, "08:00-08:30", "普通");
+        Long waiting = book(doctor, date, 11, "08:30-09:00", "普通");
+        assertEquals(List.of(stale, waiting), queueIds(doctor, date));
+
+        // 队首在别处（如其他实例）已被取消，本实例的队列还没有移除
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> appointmentRepo.updateStatus(stale,
+                Appointment.AppointmentStatus.已预约, Appointment.AppointmentStatus.已取消));
+
+        // 叫号跳过已取消的队首、叫到下一位，之后事务回滚
+        Long called = tx.execute(status -> {
+            status.setRollbackOnly();
+            return appointmentService.callNextPatient(doctor.getId(), date).getData().getId();
+        });
+        assertEquals(waiting, called);
+        assertEquals(Appointment.AppointmentStatus.已预约, appointmentRepo.findById(waiting).orElseThrow().getStatus());
+        assertEquals(List.of(waiting), queueIds(doctor, date));
+    }
+
+    private Long book(Doctor doctor, LocalDate date, int index, String timeSlot, String type) {
+        Patient patient = new Patient();
+        patient.setName("候诊病人" + index);
+        patient.setPhone(String.format("188%08d", index));
+        patient = patientRepo.save(patient);
+
+        AppointmentRequest request = new AppointmentRequest();
+        request.setPatientId(patient.getId());
+        request.setDoctorId(doctor.getId());
+        request.setDepartmentId(doctor.getDepartment().getId());
+        request.setAppointmentDate(date);
+        request.setAppointmentTime(LocalTime.parse(timeSlot.substring(0, 5)));
+        request.setTimeSlot(timeSlot);
+        request.setType(type);
+        Result<AppointmentResponse> result = appointmentService.createAppointment(request);
+        assertEquals(200, result.getCode(), result.getMessage());
+        return result.getData().getId();
+    }
+
+    private List<Long> queueIds(Doctor doctor, LocalDate date) {
+        return appointmentService.getDoctorQueue(doctor.getId(), date).getData().stream()
+                .map(AppointmentResponse::getId)
+                .toList();
+    }
+}
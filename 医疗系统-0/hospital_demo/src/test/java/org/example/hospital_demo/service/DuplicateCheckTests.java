@@ -0,0 +1,150 @@
+package org.example.hospital_demo.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 重复挂号检查测试：检查代价不能随病人历史挂号数量增长
+ * 只比较重复检查本身的 SQL（按语句文本筛选），主键号段、统计汇总等其他语句的条数不影响结果
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:duplicate_check;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "org.example.hospital_demo.service.DuplicateCheckTests$SqlRecorder"
+})
+class DuplicateCheckTests {
+
+    private static final int PAST_VISITS = 3000;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepo;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void duplicateCheckCostDoesNotGrowWithPatientHistory() {
+        Doctor doctor = doctorRepo.findAll().get(2);
+        LocalDate date = LocalDate.now().plusDays(4);
+
+        Patient newcomer = patientRepo.save(patient("初诊病人", "13600000001"));
+        Patient regular = patientRepo.save(patient("老病人", "13600000002"));
+
+        List<Appointment> history = new ArrayList<>();
+        for (int i = 0; i < PAST_VISITS; i++) {
+            Appointment past = new Appointment();
+            past.setPatient(regular);
+            past.setDoctor(doctor);
+            past.setDepartment(doctor.getDepartment());
+            past.setAppointmentDate(LocalDate.now().minusDays(10 + i));
+            past.setAppointmentTime(LocalTime.of(9, 0));
+            past.setStatus(Appointment.AppointmentStatus.已就诊);
+            history.add(past);
+        }
+        appointmentRepo.saveAll(history);
+
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        SqlRecorder.start();
+        Result<AppointmentResponse> first = appointmentService.createAppointment(request(newcomer, doctor, date));
+        List<String> newcomerChecks = SqlRecorder.stop();
+
+        stats.clear();
+        SqlRecorder.start();
+        Result<AppointmentResponse> second = appointmentService.createAppointment(request(regular, doctor, date));
+        List<String> regularChecks = SqlRecorder.stop();
+        long appointmentLoads = stats.getEntityStatistics(Appointment.class.getName()).getLoadCount();
+
+        assertEquals(200, first.getCode());
+        assertEquals(200, second.getCode());
+        assertEquals(0, appointmentLoads, "重复检查不应加载历史挂号记录");
+        assertEquals(1, newcomerChecks.size(), newcomerChecks.toString());
+        assertEquals(newcomerChecks, regularChecks,
+                "有 " + PAST_VISITS + " 条历史记录的病人的重复检查与初诊病人不同");
+
+        // 重复挂号仍能被识别
+        stats.clear();
+        Result<AppointmentResponse> duplicate = appointmentService.createAppointment(request(regular, doctor, date));
+        assertEquals(400, duplicate.getCode());
+        assertEquals(0, stats.getEntityStatistics(Appointment.class.getName()).getLoadCount());
+    }
+
+    /**
+     * 记录测试线程执行的 SQL，只保留查询挂号表、按病人筛选的语句（即重复检查）
+     */
+    public static class SqlRecorder implements StatementInspector {
+
+        private static volatile Thread recording;
+        private static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        static void start() {
+            statements.clear();
+            recording = Thread.currentThread();
+        }
+
+        static List<String> stop() {
+            recording = null;
+            return statements.stream()
+                    .filter(sql -> sql.startsWith("select") && sql.contains(" from appointment ") && sql.contains("patient_id=?"))
+                    .toList();
+        }
+
+        @Override
+        public String inspect(String sql) {
+            if (Thread.currentThread() == recording) {
+                statements.add(sql);
+            }
+            return sql;
+        }
+    }
+
+    private Patient patient(String name, String phone) {
+        Patient patient = new Patient();
+        patient.setName(name);
+        patient.setPhone(phone);
+        return patient;
+    }
+
+    private AppointmentRequest request(Patient patient, Doctor doctor, LocalDate date) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setPatientId(patient.getId());
+        request.setDoctorId(doctor.getId());
+        request.setDepartmentId(doctor.getDepartment().getId());
+        request.setAppointmentDate(date);
+        request.setAppointmentTime(LocalTime.of(10, 0));
+        request.setTimeSlot("10:00-10:30");
+        return request;
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.entity.AppointmentSlot;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentRepository;
+import org.example.hospital_demo.repository.AppointmentSlotRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 过期清理测试：分批把过期挂号改为已过期、过期的就诊中改为已就诊、删除超过保留天数的号源，
+ * 不影响今天及以后的数据
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:expiry_sweeper;DB_CLOSE_DELAY=-1",
+        "hospital.expiry.enabled=false",
+        "hospital.expiry.chunk-size=2",
+        "hospital.expiry.pause-ms=0",
+        "hospital.expiry.slot-retention-days=30"
+})
+class ExpirySweeperTests {
+
+    @Autowired
+    private ExpirySweeper sweeper;
+
+    @Autowired
+    private AppointmentRepository appointmentRepo;
+
+    @Autowired
+    private AppointmentSlotRepository slotRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Test
+    void expiresPastAppointmentsAndDeletesOldSlotsInChunks() {
+        Doctor doctor = doctorRepo.findAll().get(0);
+        Patient patient = new Patient();
+        patient.setName("过期清理病人");
+        patient.setPhone("13500000001");
+        patient = patientRepo.save(patient);
+
+        LocalDate today = LocalDate.now();
+        List<Appointment> past = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            past.add(appointment(patient, doctor, today.minusDays(i), Appointment.AppointmentStatus.已预约));
+        }
+        past = appointmentRepo.saveAll(past);
+        Appointment visited = appointmentRepo.save(
+                appointment(patient, doctor, today.minusDays(6), Appointment.AppointmentStatus.已就诊));
+        Appointment upcoming = appointmentRepo.save(
+                appointment(patient, doctor, today, Appointment.AppointmentStatus.已预约));
+        // 叫号后没有点完成就诊
+        Appointment staleVisit = appointmentRepo.save(
+                appointment(patient, doctor, today.minusDays(7), Appointment.AppointmentStatus.就诊中));
+        Appointment inVisit = appointmentRepo.save(
+                appointment(patient, doctorRepo.findAll().get(1), today, Appointment.AppointmentStatus.就诊中));
+
+        List<AppointmentSlot> oldSlots = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            oldSlots.add(slot(doctor, today.minusDays(40 + i)));
+        }
+        oldSlots = slotRepo.saveAll(oldSlots);
+        AppointmentSlot recent = slotRepo.save(slot(doctor, today.minusDays(10)));
+
+        Map<String, Object> stats = sweeper.sweep().getData();
+
+        assertTrue((Long) stats.get("expiredAppointments") >= 5);
+        // 批大小为 2，5 条过期挂号至少分 3 批
+        assertTrue((Long) stats.get("appointmentChunks") >= 3);
+        for (Appointment appointment : past) {
+            assertEquals(Appointment.AppointmentStatus.已过期,
+                    appointmentRepo.findById(appointment.getId()).orElseThrow().getStatus());
+        }
+        assertEquals(Appointment.AppointmentStatus.已就诊,
+                appointmentRepo.findById(visited.getId()).orElseThrow().getStatus());
+        assertEquals(Appointment.AppointmentStatus.已预约,
+                appointmentRepo.findById(upcoming.getId()).orElseThrow().getStatus());
+        assertTrue((Long) stats.get("closedVisits") >= 1);
+        assertEquals(Appointment.AppointmentStatus.已就诊,
+                appointmentRepo.findById(staleVisit.getId()).orElseThrow().getStatus());
+        assertEquals(Appointment.AppointmentStatus.就诊中,
+                appointmentRepo.findById(inVisit.getId()).orElseThrow().getStatus());
+        assertTrue(appointmentRepo.findExpiredIds(Appointment.AppointmentStatus.已预约, today, 0L, Limit.of(1)).isEmpty());
+
+        assertTrue((Long) stats.get("deletedSlots") >= 3);
+        for (AppointmentSlot slot : oldSlots) {
+            assertFalse(slotRepo.existsById(slot.getId()));
+        }
+        assertTrue(slotRepo.existsById(recent.getId()));
+
+        // 再次执行没有可处理的数据
+        Map<String, Object> again = sweeper.sweep().getData();
+        assertEquals(0L, again.get("expiredAppointments"));
+        assertEquals(0L, again.get("closedVisits"));
+        assertEquals(0L, again.get("deletedSlots"));
+        assertEquals(false, sweeper.stats().get("running"));
+    }
+
+    private static Appointment appointment(Patient patient, Doctor doctor, LocalDate date,
+                                           Appointment.AppointmentStatus status) {
+        Appointment appointment = new Appointment();
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setDepartment(doctor.getDepartment());
+        appointment.setAppointmentDate(date);
+        appointment.setAppointmentTime(LocalTime.of(9, 0));
+        appointment.setStatus(status);
+        return appointment;
+    }
+
+    private static AppointmentSlot slot(Doctor doctor, LocalDate date) {
+        AppointmentSlot slot = new AppointmentSlot();
+        slot.setDoctor(doctor);
+        slot.setDate(date);
+        slot.setTimeSlot("09:00-09:30");
+        slot.setTotalSlots(3);
+        slot.setUsedSlots(0);
+        slot.setEmergencyReserved(1);
+        return slot;
+    }
+}
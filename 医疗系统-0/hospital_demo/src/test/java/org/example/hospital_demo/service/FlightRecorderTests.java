@@ -0,0 +1,124 @@
+package org.example.hospital_demo.service;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 飞行记录测试：记录期间的挂号产生各阶段事件，停止后可取得 .jfr 文件，记录目录只保留最近几个文件
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:flight_recorder;DB_CLOSE_DELAY=-1",
+        "hospital.jfr.directory=target/flight-recorder-test",
+        "hospital.jfr.max-files=3"
+})
+class FlightRecorderTests {
+
+    private static final Path DIRECTORY = Path.of("target/flight-recorder-test");
+
+    @Autowired
+    private FlightRecorderService flightRecorder;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Test
+    void bookingPhasesAreRecorded() throws Exception {
+        Doctor doctor = doctorRepo.findAll().get(0);
+        Patient patient = new Patient();
+        patient.setName("飞行记录病人");
+        patient.setPhone("14800000001");
+        patient = patientRepo.save(patient);
+
+        assertNull(flightRecorder.recordedFile());
+        assertEquals(200, flightRecorder.start(60, "default").getCode());
+        assertEquals(409, flightRecorder.start(60, "default").getCode());
+
+        AppointmentRequest request = new AppointmentRequest();
+        request.setPatientId(patient.getId());
+        request.setDoctorId(doctor.getId());
+        request.setDepartmentId(doctor.getDepartment().getId());
+        request.setAppointmentDate(LocalDate.now().plusDays(4));
+        request.setAppointmentTime(LocalTime.of(10, 0));
+        request.setTimeSlot("10:00-10:30");
+        Result<AppointmentResponse> booked = appointmentService.createAppointment(request);
+        assertEquals(200, booked.getCode(), booked.getMessage());
+        assertEquals(400, appointmentService.createAppointment(request).getCode());
+
+        assertNotEquals("RUNNING", flightRecorder.stop().getData().get("state"));
+        Path file = flightRecorder.recordedFile();
+        assertNotNull(file);
+        assertTrue(Files.size(file) > 0);
+
+        Map<String, String> phases = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("org.example.hospital.BookingPhase"))
+                .filter(e -> e.getLong("doctorId") == doctor.getId())
+                .collect(Collectors.toMap(e -> e.getString("phase"), FlightRecorderTests::outcome,
+                        (a, b) -> a + "," + b));
+        assertEquals("ok,ok", phases.get("lookup"));
+        assertEquals("ok,duplicate", phases.get("duplicate_check"));
+        assertEquals("reserved", phases.get("slot_check"));
+        assertEquals("ok", phases.get("slot_update"));
+        assertEquals("ok", phases.get("insert"));
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void olderRecordingFilesArePruned() throws Exception {
+        Files.createDirectories(DIRECTORY);
+        // 之前留下的记录文件和目录中的其他文件
+        for (int i = 1; i <= 4; i++) {
+            Files.writeString(DIRECTORY.resolve("hospital-20000101-00000" + i + ".jfr"), "old");
+        }
+        Path other = Files.writeString(DIRECTORY.resolve("other.jfr"), "other");
+
+        assertEquals(200, flightRecorder.start(60, "default").getCode());
+        flightRecorder.stop();
+        Path file = flightRecorder.recordedFile();
+        try {
+            // 新记录加最近的 2 个旧文件
+            assertFalse(Files.exists(DIRECTORY.resolve("hospital-20000101-000001.jfr")));
+            assertFalse(Files.exists(DIRECTORY.resolve("hospital-20000101-000002.jfr")));
+            assertTrue(Files.exists(DIRECTORY.resolve("hospital-20000101-000003.jfr")));
+            assertTrue(Files.exists(DIRECTORY.resolve("hospital-20000101-000004.jfr")));
+            assertTrue(Files.exists(other));
+            assertNotNull(file);
+        } finally {
+            for (int i = 1; i <= 4; i++) {
+                Files.deleteIfExists(DIRECTORY.resolve("hospital-20000101-00000" + i + ".jfr"));
+            }
+            Files.deleteIfExists(other);
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static String outcome(RecordedEvent event) {
+        return event.getString("outcome");
+    }
+}
@@ -0,0 +1,200 @@
+package org.example.hospital_demo.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.CursorPage;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.dto.SlotResponse;
+import org.example.hospital_demo.entity.Appointment;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 列表接口 SQL 条数测试：每个列表接口只允许一条查询，不能因为转换响应而逐行懒加载；
+ * 候诊队列首次加载一条查询，之后直接读内存
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:list_query_count;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "hospital.slot.cache.enabled=false",
+        // 统计 SQL 条数期间不让统计汇总的合并线程执行查询
+        "hospital.stats.rollup.compact-interval-ms=3600000"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ListQueryCountTests {
+
+    private static final String[] TIME_SLOTS = {
+            "08:00-08:30", "08:30-09:00", "09:00-09:30", "09:30-10:00", "10:00-10:30"
+    };
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private SlotService slotService;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private AppointmentRepository appointmentRepo;
+
+    @Autowired
+    private DoctorQueueManager doctorQueues;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics stats;
+
+    private List<Doctor> doctors;
+
+    private List<Patient> patients;
+
+    private final LocalDate date = LocalDate.now().plusDays(1);
+
+    @BeforeAll
+    void seed() {
+        stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        doctors = doctorRepo.findAll();
+        patients = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Patient patient = new Patient();
+            patient.setName("列表病人" + i);
+            patient.setPhone(String.format("177%08d", i));
+            patients.add(patient);
+        }
+        patients = patientRepo.saveAll(patients);
+
+        List<AppointmentRequest> requests = new ArrayList<>();
+        for (int i = 0; i < patients.size(); i++) {
+            Doctor doctor = doctors.get(i % doctors.size());
+            AppointmentRequest request = new AppointmentRequest();
+            request.setPatientId(patients.get(i).getId());
+            request.setDoctorId(doctor.getId());
+            request.setDepartmentId(doctor.getDepartment().getId());
+            request.setAppointmentDate(date);
+            request.setAppointmentTime(LocalTime.of(8, 0));
+            request.setTimeSlot(TIME_SLOTS[i % TIME_SLOTS.length]);
+            requests.add(request);
+        }
+        appointmentService.createAppointments(requests);
+    }
+
+    @Test
+    void appointmentListEndpointsUseOneQuery() {
+        Result<CursorPage<AppointmentResponse>> all = assertSingleQuery(
+                () -> appointmentService.getAllAppointments(null, 100));
+        assertEquals(30, all.getData().getItems().size());
+
+        Result<CursorPage<AppointmentResponse>> byStatus = assertSingleQuery(
+                () -> appointmentService.getAppointmentsByStatus(Appointment.AppointmentStatus.已预约.name(), null, 100));
+        assertTrue(byStatus.getData().getItems().size() >= 30);
+
+        Result<CursorPage<AppointmentResponse>> byPatient = assertSingleQuery(
+                () -> appointmentService.getPatientAppointments(patients.get(0).getId(), null, 100, false));
+        assertEquals(1, byPatient.getData().getItems().size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertSingleQuery(() -> {
+            try {
+                appointmentService.streamAppointments(null, out);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return null;
+        });
+        assertEquals(30, out.toString().lines().count());
+    }
+
+    @Test
+    void slotListEndpointsUseOneQuery() {
+        Doctor doctor = doctors.get(0);
+
+        Result<List<SlotResponse>> slots = assertSingleQuery(() -> slotService.getDoctorSlots(doctor.getId(), date));
+        assertTrue(slots.getData().size() > 10);
+        assertTrue(slots.getData().stream().allMatch(s -> !s.getDepartmentName().isEmpty()));
+
+        Result<List<SlotResponse>> available = assertSingleQuery(() -> slotService.getAvailableSlots(doctor.getId(), date));
+        assertTrue(available.getData().size() > 10);
+    }
+
+    @Test
+    void doctorQueueLoadsInOneQuery() {
+        Doctor doctor = doctors.get(1);
+        LocalDate queueDate = date.plusDays(1);
+        int size = 500;
+        List<Patient> queued = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Patient patient = new Patient();
+            patient.setName("候诊列表病人" + i);
+            patient.setPhone(String.format("177%08d", 1000 + i));
+            queued.add(patient);
+        }
+        List<Patient> saved = patientRepo.saveAll(queued);
+        // 直接写入候诊记录（超过号源容量，只用来构造长队列）
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setPatient(saved.get(i));
+            appointment.setDoctor(doctor);
+            appointment.setDepartment(doctor.getDepartment());
+            appointment.setAppointmentDate(queueDate);
+            appointment.setAppointmentTime(LocalTime.of(8, 0).plusMinutes(i % 240));
+            appointment.setQueueNumber(i + 1);
+            appointment.setStatus(Appointment.AppointmentStatus.已预约);
+            appointments.add(appointment);
+        }
+        appointments = appointmentRepo.saveAll(appointments);
+        try {
+            Result<List<AppointmentResponse>> queue = assertSingleQuery(
+                    () -> appointmentService.getDoctorQueue(doctor.getId(), queueDate));
+            assertEquals(size, queue.getData().size());
+            assertTrue(queue.getData().stream().allMatch(a -> a.getPatientName() != null && a.getDoctorName() != null));
+
+            // 已加载的队列不再访问数据库
+            stats.clear();
+            assertEquals(size, appointmentService.getDoctorQueue(doctor.getId(), queueDate).getData().size());
+            assertEquals(0, stats.getPrepareStatementCount());
+        } finally {
+            // 其他测试按种子数据的 30 条挂号断言；直接删库绕过了挂号服务，内存中的候诊队列要同步移除
+            appointmentRepo.deleteAll(appointments);
+            patientRepo.deleteAll(saved);
+            for (Appointment appointment : appointments) {
+                doctorQueues.remove(doctor.getId(), queueDate, appointment.getId());
+            }
+            assertEquals(0, appointmentService.getDoctorQueue(doctor.getId(), queueDate).getData().size());
+        }
+    }
+
+    private <T> T assertSingleQuery(Supplier<T> call) {
+        stats.clear();
+        T result = call.get();
+        assertEquals(1, stats.getPrepareStatementCount(), "列表接口执行的 SQL 条数");
+        return result;
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.hospital_demo.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.hospital_demo.config.HikariPoolMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 排队号分配器测试：同一医生同一天并发分配不重复、号段用完后续申请、重启后从数据库继续、
+ * 业务连接池耗尽时仍能申请号段
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:queue_number;DB_CLOSE_DELAY=-1",
+        "hospital.expiry.enabled=false",
+        "hospital.queue-number.block-size=5"
+})
+class QueueNumberAllocatorTests {
+
+    // queue_sequence 没有外键，用不存在的医生 ID 与种子数据隔开
+    private static final long DOCTOR_ID = 9001L;
+
+    @Autowired
+    private QueueNumberAllocator allocator;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private HikariPoolMetrics poolMetrics;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void concurrentNumbersAreUniquePerDoctorAndDate() throws Exception {
+        LocalDate date = LocalDate.now().plusDays(30);
+        int clients = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return allocator.next(DOCTOR_ID, date);
+            }));
+        }
+        start.countDown();
+        Set<Integer> numbers = new HashSet<>();
+        for (Future<Integer> future : futures) {
+            assertTrue(numbers.add(future.get(30, TimeUnit.SECONDS)));
+        }
+        pool.shutdown();
+        // 单实例下号段连续使用，正好是 1..clients
+        assertEquals(clients, numbers.size());
+        assertEquals(1, numbers.stream().mapToInt(Integer::intValue).min().orElseThrow());
+        assertEquals(clients, numbers.stream().mapToInt(Integer::intValue).max().orElseThrow());
+
+        // 其他医生、其他日期各自从 1 开始
+        assertEquals(1, allocator.next(DOCTOR_ID + 1, date));
+        assertEquals(1, allocator.next(DOCTOR_ID, date.plusDays(1)));
+    }
+
+    @Test
+    void rollsOverBlocksAndContinuesAfterRestart() {
+        LocalDate date = LocalDate.now().plusDays(40);
+        // 号段大小 5：第 6 个号来自第二个号段
+        for (int expected = 1; expected <= 7; expected++) {
+            assertEquals(expected, allocator.next(DOCTOR_ID, date));
+        }
+        assertEquals(11, nextValue(date));
+
+        // 模拟重启：新实例不知道内存中的号段，从数据库中的 hi 值继续，8..10 作废但不会重复发出
+        QueueNumberAllocator restarted = new QueueNumberAllocator(dataSourceProperties, poolMetrics, 1);
+        ReflectionTestUtils.setField(restarted, "blockSize", 5);
+        try {
+            assertEquals(11, restarted.next(DOCTOR_ID, date));
+            assertEquals(12, restarted.next(DOCTOR_ID, date));
+            assertEquals(16, nextValue(date));
+            // 原实例继续用完自己的号段，再申请时排在新实例之后
+            assertEquals(8, allocator.next(DOCTOR_ID, date));
+            assertEquals(9, allocator.next(DOCTOR_ID, date));
+            assertEquals(10, allocator.next(DOCTOR_ID, date));
+            assertEquals(16, allocator.next(DOCTOR_ID, date));
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void allocatesWhileBusinessPoolIsExhausted() throws Exception {
+        LocalDate date = LocalDate.now().plusDays(50);
+        HikariDataSource businessPool = dataSource.unwrap(HikariDataSource.class);
+        List<Connection> held = new ArrayList<>();
+        try {
+            // 占满业务连接池，模拟所有连接都被等待号段的挂号事务占住
+            for (int i = 0; i < businessPool.getMaximumPoolSize(); i++) {
+                held.add(businessPool.getConnection());
+            }
+            ExecutorService pool = Executors.newSingleThreadExecutor();
+            try {
+                Future<Integer> number = pool.submit(() -> allocator.next(DOCTOR_ID, date));
+                assertEquals(1, number.get(5, TimeUnit.SECONDS));
+            } finally {
+                pool.shutdownNow();
+            }
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+    }
+
+    private int nextValue(LocalDate date) {
+        return jdbc.queryForObject("SELECT next_value FROM queue_sequence WHERE doctor_id = ? AND seq_date = ?",
+                Integer.class, DOCTOR_ID, date);
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.AppointmentSlot;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentSlotRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 号源一致性校验测试：异步回写模式下先把内存增量写回再比对，挂号、取消后报告一致，
+ * 已用数量与有效挂号数不符时报告不一致；已回写和增量抵消为 0 的号源不留在待回写表中
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:slot_consistency;DB_CLOSE_DELAY=-1",
+        "hospital.expiry.enabled=false",
+        "hospital.slot.inventory.write-mode=async",
+        // 只在校验时回写
+        "hospital.slot.inventory.flush-interval-ms=3600000"
+})
+class SlotConsistencyTests {
+
+    @Autowired
+    private SlotService slotService;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentSlotRepository slotRepo;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private SlotInventoryEngine inventory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void pendingDeltasAreFlushedBeforeCheck() {
+        Doctor doctor = doctorRepo.findAll().get(2);
+        LocalDate date = LocalDate.now().plusDays(3);
+        String timeSlot = "10:00-10:30";
+        AppointmentSlot slot = slotRepo.findByDoctorIdAndDateAndTimeSlot(doctor.getId(), date, timeSlot).orElseThrow();
+        int usedBefore = slot.getUsedSlots();
+
+        List<Long> booked = new ArrayList<>();
+        String[] types = {"普通", "普通", "急诊"};
+        for (int i = 0; i < types.length; i++) {
+            booked.add(book(doctor, date, timeSlot, i, types[i]));
+        }
+        assertEquals(200, appointmentService.cancelAppointment(booked.get(0)).getCode());
+
+        // 增量还在内存中，数据库里的已用数量没有变
+        assertEquals(usedBefore, slotRepo.findById(slot.getId()).orElseThrow().getUsedSlots());
+        Map<String, Object> report = slotService.checkConsistency().getData();
+        assertTrue((Boolean) report.get("consistent"), report.toString());
+        assertEquals(usedBefore + 2, slotRepo.findById(slot.getId()).orElseThrow().getUsedSlots());
+        // 已回写的号源不留在待回写表中，挂号后又取消、增量抵消为 0 的号源也不留
+        assertEquals(0, inventory.pendingSlots());
+        Long cancelled = book(doctor, date, "10:30-11:00", 3, "普通");
+        assertEquals(1, inventory.pendingSlots());
+        assertEquals(200, appointmentService.cancelAppointment(cancelled).getCode());
+        assertEquals(0, inventory.pendingSlots());
+
+        // 绕过库存直接改数据库：已用数量与有效挂号数不符
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> slotRepo.addUsedSlots(slot.getId(), -1));
+        try {
+            Map<String, Object> broken = slotService.checkConsistency().getData();
+            assertEquals(false, broken.get("consistent"));
+            assertEquals(1, broken.get("mismatchedCount"));
+        } finally {
+            tx.executeWithoutResult(status -> slotRepo.addUsedSlots(slot.getId(), 1));
+        }
+    }
+
+    private Long book(Doctor doctor, LocalDate date, String timeSlot, int i, String type) {
+        Patient patient = new Patient();
+        patient.setName("校验病人" + i);
+        patient.setPhone(String.format("159%08d", i));
+        patient = patientRepo.save(patient);
+
+        AppointmentRequest request = new AppointmentRequest();
+        request.setPatientId(patient.getId());
+        request.setDoctorId(doctor.getId());
+        request.setDepartmentId(doctor.getDepartment().getId());
+        request.setAppointmentDate(date);
+        request.setAppointmentTime(LocalTime.parse(timeSlot.substring(0, 5)));
+        request.setTimeSlot(timeSlot);
+        request.setType(type);
+        Result<AppointmentResponse> result = appointmentService.createAppointment(request);
+        assertEquals(200, result.getCode(), result.getMessage());
+        return result.getData().getId();
+    }
+}
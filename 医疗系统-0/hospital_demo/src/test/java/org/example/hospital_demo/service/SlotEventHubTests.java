@@ -0,0 +1,88 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 号源推送慢连接测试：写不出去的连接积压超过上限后被断开，同一主题的其他连接照常收到消息
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:slot_event_hub;DB_CLOSE_DELAY=-1",
+        // 测试中手动推送
+        "hospital.sse.push-interval-ms=3600000",
+        "hospital.sse.max-queued-messages=4"
+})
+class SlotEventHubTests {
+
+    @Autowired
+    private SlotEventHub hub;
+
+    @Autowired
+    private SlotInventoryEngine inventory;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Test
+    void slowConnectionIsDroppedWithoutStallingOthers() throws Exception {
+        Doctor doctor = doctorRepo.findAll().get(5);
+        LocalDate date = LocalDate.now().plusDays(2);
+        Long slotId = inventory.getSlots(doctor.getId(), date, false).get(0).getSlotId();
+
+        CountDownLatch unblock = new CountDownLatch(1);
+        SseEmitter slow = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                // 模拟客户端不读、TCP 缓冲区已满时阻塞的写出
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        AtomicInteger received = new AtomicInteger();
+        SseEmitter fast = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                received.incrementAndGet();
+            }
+        };
+        try {
+            hub.register(doctor.getId(), date, slow);
+            hub.register(doctor.getId(), date, fast);
+            awaitReceived(received, 1);
+            // 每个推送周期一条消息：正常连接每次都写完，阻塞的连接积压到第 5 条时被断开
+            int pushes = 6;
+            for (int i = 1; i <= pushes; i++) {
+                hub.slotChanged(doctor.getId(), date, slotId);
+                hub.push();
+                awaitReceived(received, 1 + i);
+            }
+            assertEquals(1, hub.stats().get("connections"));
+            assertEquals(1L, hub.stats().get("slowDropped"));
+        } finally {
+            unblock.countDown();
+            fast.complete();
+        }
+    }
+
+    private static void awaitReceived(AtomicInteger received, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (received.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, received.get());
+    }
+}
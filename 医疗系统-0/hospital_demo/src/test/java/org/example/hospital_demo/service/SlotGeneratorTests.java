@@ -0,0 +1,181 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.AppointmentSlot;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.entity.SlotTemplate;
+import org.example.hospital_demo.repository.AppointmentSlotRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.example.hospital_demo.repository.SlotTemplateRepository;
+import org.example.hospital_demo.service.DoctorSchedule.Period;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 号源批量生成测试：排班解析、只在出诊时段生成、重复执行不重复生成、生成后可直接在内存库存中预占，
+ * 非 30 分钟模板生成的号源可以正常挂号和取消，有模板的医生可以删除
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:slot_generator;DB_CLOSE_DELAY=-1",
+        "hospital.slot.generator.run-on-startup=false"
+})
+class SlotGeneratorTests {
+
+    @Autowired
+    private SlotGenerator slotGenerator;
+
+    @Autowired
+    private SlotInventoryEngine inventory;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private AppointmentSlotRepository slotRepo;
+
+    @Autowired
+    private SlotTemplateRepository templateRepo;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private SlotService slotService;
+
+    @Autowired
+    private DoctorService doctorService;
+
+    @Test
+    void parsesScheduleText() {
+        DoctorSchedule weekdays = DoctorSchedule.parse("周一至周五上午");
+        assertEquals(Set.of(Period.上午), weekdays.periods(DayOfWeek.MONDAY));
+        assertEquals(Set.of(Period.上午), weekdays.periods(DayOfWeek.FRIDAY));
+        assertTrue(weekdays.periods(DayOfWeek.SATURDAY).isEmpty());
+
+        DoctorSchedule mixed = DoctorSchedule.parse("周二下午，星期四全天、周六 夜班");
+        assertEquals(Set.of(Period.下午), mixed.periods(DayOfWeek.TUESDAY));
+        assertEquals(EnumSet.allOf(Period.class), mixed.periods(DayOfWeek.THURSDAY));
+        assertEquals(EnumSet.allOf(Period.class), mixed.periods(DayOfWeek.SATURDAY));
+        assertEquals(List.of("夜班"), mixed.unrecognized());
+
+        assertEquals(EnumSet.allOf(Period.class), DoctorSchedule.parse("全天候").periods(DayOfWeek.SUNDAY));
+        assertTrue(DoctorSchedule.parse("周末上午").periods(DayOfWeek.SUNDAY).contains(Period.上午));
+        assertTrue(DoctorSchedule.parse(null).isEmpty());
+    }
+
+    @Test
+    void generatesOnlyMissingSlotsOnScheduledDays() {
+        // 种子数据只覆盖今天起 7 天，从第 8 天开始由排班生成
+        LocalDate from = LocalDate.now().plusDays(7);
+        Map<String, Object> first = slotGenerator.generate(from, 7).getData();
+        assertTrue((Long) first.get("created") > 0);
+        assertEquals(0L, first.get("failed"));
+
+        // 陈医生：周二下午、周四下午，下午 14:00-17:00 共 6 个时间段
+        Doctor doctor = doctorRepo.findAll().stream()
+                .filter(d -> "周二下午,周四下午".equals(d.getSchedule())).findFirst().orElseThrow();
+        for (LocalDate date = from; date.isBefore(from.plusDays(7)); date = date.plusDays(1)) {
+            List<AppointmentSlot> slots = slotRepo.findByDoctorIdAndDateOrderByTimeSlot(doctor.getId(), date);
+            boolean onDuty = date.getDayOfWeek() == DayOfWeek.TUESDAY || date.getDayOfWeek() == DayOfWeek.THURSDAY;
+            assertEquals(onDuty ? 6 : 0, slots.size(), date.toString());
+            if (onDuty) {
+                assertEquals("14:00-14:30", slots.get(0).getTimeSlot());
+                assertEquals("16:30-17:00", slots.get(5).getTimeSlot());
+                assertEquals(1, slots.get(0).getEmergencyReserved());
+            }
+        }
+
+        // 重复执行：全部已存在，不再生成
+        Map<String, Object> second = slotGenerator.generate(from, 7).getData();
+        assertEquals(0L, second.get("created"));
+        assertEquals(first.get("created"), second.get("alreadyExisting"));
+
+        // 生成的号源已登记到内存库存，可以直接预占
+        LocalDate tuesday = from.with(TemporalAdjusters.nextOrSame(DayOfWeek.TUESDAY));
+        assertEquals(SlotInventoryEngine.Outcome.RESERVED,
+                inventory.tryReserve(doctor.getId(), tuesday, "15:00-15:30", false));
+        inventory.release(doctor.getId(), tuesday, "15:00-15:30");
+        assertEquals(SlotInventoryEngine.Outcome.NOT_FOUND,
+                inventory.tryReserve(doctor.getId(), tuesday, "09:00-09:30", false));
+    }
+
+    @Test
+    void bookAndCancelOnShortSlotTemplate() {
+        // 周医生：全天候，模板改为 15 分钟一段
+        Doctor doctor = doctorRepo.findAll().stream()
+                .filter(d -> "全天候".equals(d.getSchedule())).findFirst().orElseThrow();
+        SlotTemplate template = templateRepo.findByDoctorIds(List.of(doctor.getId())).get(0);
+        template.setSlotMinutes(15);
+        templateRepo.save(template);
+
+        // 与上一个测试的日期范围错开
+        LocalDate date = LocalDate.now().plusDays(21);
+        slotGenerator.generate(date, 1);
+        List<AppointmentSlot> slots = slotRepo.findByDoctorIdAndDateOrderByTimeSlot(doctor.getId(), date);
+        assertEquals("08:00-08:15", slots.get(0).getTimeSlot());
+
+        Patient patient = new Patient();
+        patient.setName("短号源病人");
+        patient.setPhone("15600000001");
+        patient = patientRepo.save(patient);
+        AppointmentRequest request = new AppointmentRequest();
+        request.setPatientId(patient.getId());
+        request.setDoctorId(doctor.getId());
+        request.setDepartmentId(doctor.getDepartment().getId());
+        request.setAppointmentDate(date);
+        request.setAppointmentTime(LocalTime.of(8, 0));
+        request.setTimeSlot("08:00-08:15");
+        Result<AppointmentResponse> booked = appointmentService.createAppointment(request);
+        assertEquals(200, booked.getCode(), booked.getMessage());
+        assertEquals("08:00-08:15", booked.getData().getTimeSlot());
+        assertEquals(1, usedSlots(doctor, date, "08:00-08:15"));
+        assertEquals(Boolean.TRUE, slotService.checkConsistency().getData().get("consistent"));
+
+        // 取消按挂号记录的时间段归还号源
+        assertEquals(200, appointmentService.cancelAppointment(booked.getData().getId()).getCode());
+        assertEquals(0, usedSlots(doctor, date, "08:00-08:15"));
+        assertEquals(Boolean.TRUE, slotService.checkConsistency().getData().get("consistent"));
+    }
+
+    @Test
+    void deletesDoctorWithTemplate() {
+        Doctor doctor = new Doctor();
+        doctor.setName("模板医生");
+        doctor.setDepartment(doctorRepo.findAll().get(0).getDepartment());
+        doctor.setSchedule("周一上午");
+        doctor = doctorRepo.save(doctor);
+        SlotTemplate template = new SlotTemplate();
+        template.setDoctor(doctor);
+        template.setSlotMinutes(20);
+        templateRepo.save(template);
+
+        assertEquals(200, doctorService.deleteDoctor(doctor.getId()).getCode());
+        assertFalse(doctorRepo.existsById(doctor.getId()));
+        assertTrue(templateRepo.findByDoctorIds(List.of(doctor.getId())).isEmpty());
+    }
+
+    private int usedSlots(Doctor doctor, LocalDate date, String timeSlot) {
+        return slotRepo.findByDoctorIdAndDateOrderByTimeSlot(doctor.getId(), date).stream()
+                .filter(slot -> timeSlot.equals(slot.getTimeSlot()))
+                .findFirst().orElseThrow().getUsedSlots();
+    }
+}
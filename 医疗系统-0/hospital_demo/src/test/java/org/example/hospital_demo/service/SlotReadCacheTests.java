@@ -0,0 +1,121 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.dto.SlotResponse;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 号源查询缓存测试：挂号/取消后缓存立即失效，不会返回已满的号源；加载期间的失效使加载结果作废，
+ * 从未缓存的 key 失效时不留占位
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:slot_read_cache;DB_CLOSE_DELAY=-1")
+class SlotReadCacheTests {
+
+    @Autowired
+    private SlotService slotService;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private SlotReadCache slotCache;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Test
+    void bookingAndCancelInvalidateCachedSlots() {
+        Doctor doctor = doctorRepo.findAll().get(1);
+        LocalDate date = LocalDate.now().plusDays(5);
+        String timeSlot = "14:00-14:30";
+
+        SlotResponse slot = findSlot(slotService.getAvailableSlots(doctor.getId(), date).getData(), timeSlot);
+        assertNotNull(slot);
+        long hitsBefore = hits();
+        slotService.getDoctorSlots(doctor.getId(), date);
+        assertEquals(hitsBefore + 1, hits());
+
+        // 订满该时间段的普通号
+        List<Long> appointmentIds = new ArrayList<>();
+        for (int i = 0; i < slot.getAvailableSlots(); i++) {
+            Patient patient = new Patient();
+            patient.setName("缓存病人" + i);
+            patient.setPhone(String.format("166%08d", i));
+            patient = patientRepo.save(patient);
+
+            AppointmentRequest request = new AppointmentRequest();
+            request.setPatientId(patient.getId());
+            request.setDoctorId(doctor.getId());
+            request.setDepartmentId(doctor.getDepartment().getId());
+            request.setAppointmentDate(date);
+            request.setAppointmentTime(LocalTime.of(14, 0));
+            request.setTimeSlot(timeSlot);
+            Result<AppointmentResponse> result = appointmentService.createAppointment(request);
+            assertEquals(200, result.getCode(), result.getMessage());
+            appointmentIds.add(result.getData().getId());
+
+            SlotResponse cached = findSlot(slotService.getDoctorSlots(doctor.getId(), date).getData(), timeSlot);
+            assertEquals(slot.getUsedSlots() + i + 1, cached.getUsedSlots());
+        }
+        assertNull(findSlot(slotService.getAvailableSlots(doctor.getId(), date).getData(), timeSlot));
+
+        appointmentService.cancelAppointment(appointmentIds.get(0));
+        assertNotNull(findSlot(slotService.getAvailableSlots(doctor.getId(), date).getData(), timeSlot));
+        assertTrue((Long) slotCache.stats().get("invalidations") >= appointmentIds.size() + 1);
+    }
+
+    @Test
+    void invalidationOnlyTracksCachedOrLoadingKeys() {
+        // 不存在的医生，与其他测试的 key 隔开
+        Long doctorId = Long.MAX_VALUE;
+        LocalDate date = LocalDate.now().plusDays(3);
+        int sizeBefore = size();
+        for (int i = 0; i < 100; i++) {
+            slotCache.invalidate(doctorId, date.plusDays(i));
+        }
+        assertEquals(sizeBefore, size());
+
+        // 加载期间失效：结果照常返回但不写回，下一次读取重新加载
+        List<SlotResponse> stale = List.of(new SlotResponse());
+        assertEquals(1, slotCache.get(doctorId, date, () -> {
+            slotCache.invalidate(doctorId, date);
+            return stale;
+        }).size());
+        assertEquals(0, slotCache.get(doctorId, date, List::of).size());
+
+        // 加载完成后命中缓存
+        long hitsBefore = hits();
+        assertEquals(0, slotCache.get(doctorId, date, () -> stale).size());
+        assertEquals(hitsBefore + 1, hits());
+    }
+
+    private int size() {
+        return (Integer) slotCache.stats().get("size");
+    }
+
+    private long hits() {
+        return (Long) slotCache.stats().get("hits");
+    }
+
+    private SlotResponse findSlot(List<SlotResponse> slots, String timeSlot) {
+        return slots.stream().filter(s -> s.getTimeSlot().equals(timeSlot)).findFirst().orElse(null);
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.dto.SlotQueryRequest;
+import org.example.hospital_demo.dto.SlotResponse;
+import org.example.hospital_demo.entity.AppointmentSlot;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentSlotRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 最早号源查找测试：号源约满/释放时索引随之更新；号源生成窗口外的日期直接查数据库，没有号源的医生日不留在内存库存
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:slot_search;DB_CLOSE_DELAY=-1",
+        // 启动时的号源生成在后台线程登记号源，会改变内存中的医生日数
+        "hospital.slot.generator.run-on-startup=false"
+})
+class SlotSearchTests {
+
+    @Autowired
+    private SlotService slotService;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private AppointmentSlotRepository slotRepo;
+
+    @Autowired
+    private SlotInventoryEngine inventory;
+
+    @Autowired
+    private SlotGenerator slotGenerator;
+
+    @Test
+    void earliestSlotFollowsBookingsAndCancels() {
+        Doctor doctor = doctorRepo.findAll().get(3);
+        Long departmentId = doctor.getDepartment().getId();
+        LocalDate date = LocalDate.now().plusDays(3);
+
+        SlotResponse earliest = search(departmentId, null, date, "普通").get(0);
+        assertEquals(date, earliest.getDate());
+        List<SlotResponse> byDoctor = search(null, doctor.getId(), date, "普通");
+        assertTrue(byDoctor.stream().allMatch(s -> s.getDoctorId().equals(doctor.getId())));
+        SlotResponse first = byDoctor.get(0);
+
+        // 订满该医生最早时间段的普通号
+        List<Long> appointmentIds = new ArrayList<>();
+        for (int i = 0; i < first.getAvailableSlots(); i++) {
+            Patient patient = new Patient();
+            patient.setName("查找病人" + i);
+            patient.setPhone(String.format("155%08d", i));
+            patient = patientRepo.save(patient);
+
+            AppointmentRequest request = new AppointmentRequest();
+            request.setPatientId(patient.getId());
+            request.setDoctorId(doctor.getId());
+            request.setDepartmentId(departmentId);
+            request.setAppointmentDate(date);
+            request.setAppointmentTime(LocalTime.of(8, 0));
+            request.setTimeSlot(first.getTimeSlot());
+            Result<AppointmentResponse> result = appointmentService.createAppointment(request);
+            assertEquals(200, result.getCode(), result.getMessage());
+            appointmentIds.add(result.getData().getId());
+        }
+
+        assertNotEquals(first.getSlotId(), search(null, doctor.getId(), date, "普通").get(0).getSlotId());
+        // 急诊预留号仍然可约
+        assertEquals(first.getSlotId(), search(null, doctor.getId(), date, "急诊").get(0).getSlotId());
+
+        appointmentService.cancelAppointment(appointmentIds.get(0));
+        assertEquals(first.getSlotId(), search(null, doctor.getId(), date, "普通").get(0).getSlotId());
+    }
+
+    @Test
+    void rejectsSearchWithoutDepartmentOrDoctor() {
+        SlotQueryRequest request = new SlotQueryRequest();
+        request.setDate(LocalDate.now());
+        assertEquals(400, slotService.searchEarliestSlots(request).getCode());
+    }
+
+    @Test
+    void daysOutsideHorizonAreReadFromDatabaseAndEmptyDaysNotKept() {
+        Doctor doctor = doctorRepo.findAll().get(0);
+        Long doctorId = doctor.getId();
+        LocalDate today = LocalDate.now();
+        int before = inventory.cachedDays();
+
+        // 窗口外的日期不经过内存库存，历史号源照常从数据库查询
+        AppointmentSlot past = new AppointmentSlot();
+        past.setDoctor(doctor);
+        past.setDate(today.minusDays(1));
+        past.setTimeSlot("09:00-09:30");
+        past.setTotalSlots(3);
+        past.setUsedSlots(1);
+        past.setEmergencyReserved(1);
+        past = slotRepo.save(past);
+        try {
+            Result<List<SlotResponse>> history = slotService.getDoctorSlots(doctorId, today.minusDays(1));
+            assertEquals(200, history.getCode());
+            assertEquals(List.of(past.getId()), history.getData().stream().map(SlotResponse::getSlotId).toList());
+        } finally {
+            slotRepo.delete(past);
+        }
+        Result<List<SlotResponse>> beyond = slotService.getAvailableSlots(doctorId, today.plusDays(slotGenerator.getHorizonDays() + 1));
+        assertEquals(200, beyond.getCode());
+        assertTrue(beyond.getData().isEmpty());
+        assertEquals(before, inventory.cachedDays());
+
+        // 窗口内但尚未加载、也没有号源的医生日：查询结果为空，查询后不留在内存
+        LocalDate lastDay = today.plusDays(slotGenerator.getHorizonDays());
+        for (long id = Long.MAX_VALUE - 100; id < Long.MAX_VALUE; id++) {
+            assertTrue(inventory.getSlots(id, lastDay, false).isEmpty());
+        }
+        assertEquals(SlotInventoryEngine.Outcome.NOT_FOUND,
+                inventory.tryReserve(Long.MAX_VALUE, lastDay, "08:00-08:30", false));
+        assertEquals(before, inventory.cachedDays());
+    }
+
+    private List<SlotResponse> search(Long departmentId, Long doctorId, LocalDate date, String type) {
+        SlotQueryRequest request = new SlotQueryRequest(departmentId, doctorId, date, date, 3, type);
+        Result<List<SlotResponse>> result = slotService.searchEarliestSlots(request);
+        assertEquals(200, result.getCode(), result.getMessage());
+        assertFalse(result.getData().isEmpty());
+        return result.getData();
+    }
+}
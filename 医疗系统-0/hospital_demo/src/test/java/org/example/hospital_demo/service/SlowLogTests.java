@@ -0,0 +1,88 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 慢日志测试：阈值为 0 时每条 SQL 都记录，条目带绑定参数、行数和调用方方法
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:slow_log;DB_CLOSE_DELAY=-1",
+        "hospital.slow-log.sql-threshold-ms=0",
+        "hospital.slow-log.file=target/slow-log-test/slow.log"
+})
+class SlowLogTests {
+
+    private static final Path LOG_FILE = Path.of("target/slow-log-test/slow.log");
+
+    @Autowired
+    private SlowLog slowLog;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Test
+    void slowStatementsCarryParamsRowsAndCaller() throws Exception {
+        Doctor doctor = doctorRepo.findAll().get(3);
+        Patient patient = new Patient();
+        patient.setName("慢日志病人");
+        patient.setPhone("14900000001");
+        patient = patientRepo.save(patient);
+        // 只看本次测试写入的部分（文件跨多次运行追加）
+        slowLog.drain();
+        long offset = Files.exists(LOG_FILE) ? Files.size(LOG_FILE) : 0;
+
+        AppointmentRequest request = new AppointmentRequest();
+        request.setPatientId(patient.getId());
+        request.setDoctorId(doctor.getId());
+        request.setDepartmentId(doctor.getDepartment().getId());
+        request.setAppointmentDate(LocalDate.now().plusDays(6));
+        request.setAppointmentTime(LocalTime.of(15, 0));
+        request.setTimeSlot("15:00-15:30");
+        Result<AppointmentResponse> booked = appointmentService.createAppointment(request);
+        assertEquals(200, booked.getCode(), booked.getMessage());
+        slowLog.request(600_000_000L, "POST /api/appointments", 200, "AppointmentController.createAppointment");
+        slowLog.drain();
+
+        byte[] content = Files.readAllBytes(LOG_FILE);
+        List<String> lines = new String(content, (int) offset, content.length - (int) offset, StandardCharsets.UTF_8)
+                .lines().toList();
+        // 号源条件扣减：影响 1 行，参数为医生、日期、时间段
+        String slotUpdate = lines.stream()
+                .filter(l -> l.contains(" SQL ") && l.contains("update appointment_slot "))
+                .filter(l -> l.contains("'15:00-15:30'"))
+                .reduce((a, b) -> b).orElseThrow(() -> new AssertionError(String.join("\n", lines)));
+        assertTrue(slotUpdate.contains("rows=1"), slotUpdate);
+        assertTrue(slotUpdate.contains("caller=AppointmentService.reserveSlot"), slotUpdate);
+        assertTrue(slotUpdate.contains("params=[" + doctor.getId() + ", '" + request.getAppointmentDate() + "'"), slotUpdate);
+
+        // 查询语句的行数在结果集读完后记录
+        assertTrue(lines.stream().anyMatch(l -> l.contains("caller=AppointmentService.prepareAppointment")
+                && l.contains("rows=1") && l.contains("select")), String.join("\n", lines));
+        assertTrue(lines.stream().anyMatch(l -> l.contains(" HTTP 600.0ms status=200 "
+                + "handler=AppointmentController.createAppointment request=[POST /api/appointments]")));
+    }
+}
@@ -0,0 +1,241 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.AppointmentResponse;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.entity.Doctor;
+import org.example.hospital_demo.entity.Patient;
+import org.example.hospital_demo.repository.AppointmentDailyStatRepository;
+import org.example.hospital_demo.repository.DoctorRepository;
+import org.example.hospital_demo.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+
+import javax.sql.DataSource;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 统计汇总测试：挂号、取消、叫号、完成就诊、删除病人随事务写入增量，合并和重建后结果一致；
+ * 重建期间提交的增量既不漏计也不重复计入
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stats_rollup;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "hospital.expiry.enabled=false",
+        // 测试中手动合并
+        "hospital.stats.rollup.compact-interval-ms=3600000"
+})
+class StatsRollupTests {
+
+    private static final String[] TIME_SLOTS = {"08:00-08:30", "08:30-09:00", "09:00-09:30"};
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private AppointmentStatsRollup statsRollup;
+
+    @Autowired
+    private AppointmentDailyStatRepository statRepo;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void rollupFollowsBookingLifecycleAndMatchesRebuild() {
+        Doctor doctor = doctorRepo.findAll().get(3);
+        Long departmentId = doctor.getDepartment().getId();
+        LocalDate date = LocalDate.now().plusDays(5);
+
+        assertEquals(200, statsRollup.rebuild().getCode());
+        Map<String, Object> before = department(departmentId);
+        long trendBefore = trendCount();
+
+        List<Patient> patients = new ArrayList<>();
+        List<AppointmentResponse> booked = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            Patient patient = new Patient();
+            patient.setName("统计病人" + i);
+            patient.setPhone("1520000000" + i);
+            patient = patientRepo.save(patient);
+            patients.add(patient);
+            Result<AppointmentResponse> result = appointmentService.createAppointment(request(patient, doctor, date, TIME_SLOTS[i - 1]));
+            assertEquals(200, result.getCode(), result.getMessage());
+            booked.add(result.getData());
+        }
+        assertEquals(3, count(departmentId) - count(before));
+        assertEquals(3, status(departmentId, "已预约") - status(before, "已预约"));
+        assertEquals(3, trendCount() - trendBefore);
+
+        assertEquals(200, appointmentService.cancelAppointment(booked.get(0).getId()).getCode());
+        assertEquals(200, appointmentService.completeAppointment(booked.get(1).getId()).getCode());
+        AppointmentResponse called = appointmentService.callNextPatient(doctor.getId(), date).getData();
+        assertEquals(booked.get(2).getId(), called.getId());
+
+        Map<String, Object> incremental = department(departmentId);
+        assertEquals(3, count(incremental) - count(before));
+        assertEquals(0, status(incremental, "已预约") - status(before, "已预约"));
+        assertEquals(1, status(incremental, "已取消") - status(before, "已取消"));
+        assertEquals(1, status(incremental, "已就诊") - status(before, "已就诊"));
+        assertEquals(1, status(incremental, "就诊中") - status(before, "就诊中"));
+
+        // 合并后增量行清空，结果不变
+        assertTrue(statRepo.countByPendingTrue() > 0);
+        while (statsRollup.compact() > 0) {
+            // 一次合并不完时继续
+        }
+        assertEquals(0, statRepo.countByPendingTrue());
+        assertSame(incremental, department(departmentId));
+
+        // 从挂号表重建的结果与增量维护的一致
+        assertEquals(200, statsRollup.rebuild().getCode());
+        assertSame(incremental, department(departmentId));
+
+        // 删除病人扣除其挂号
+        assertEquals(200, patientService.deletePatient(patients.get(1).getId()).getCode());
+        assertEquals(2, count(departmentId) - count(before));
+        assertEquals(0, status(departmentId, "已就诊") - status(before, "已就诊"));
+    }
+
+    @Test
+    void deltasCommittedDuringRebuildAreCountedOnce() throws Exception {
+        Doctor doctor = doctorRepo.findAll().get(3);
+        Long departmentId = doctor.getDepartment().getId();
+        LocalDate date = LocalDate.now().plusDays(6);
+
+        assertEquals(200, statsRollup.rebuild().getCode());
+        long before = count(departmentId);
+        Patient first = patient(10);
+        assertEquals(200, appointmentService.createAppointment(request(first, doctor, date, TIME_SLOTS[0])).getCode());
+        Long pendingId = statRepo.findPending(Limit.of(1)).get(0).getId();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Connection connection = dataSource.getConnection()) {
+            // 锁住一条增量行：重建读完快照后在删除旧行时等待
+            connection.setAutoCommit(false);
+            try (PreparedStatement lock = connection.prepareStatement(
+                    "SELECT id FROM appointment_daily_stat WHERE id = ? FOR UPDATE")) {
+                lock.setLong(1, pendingId);
+                lock.executeQuery().close();
+            }
+            Future<Result<Map<String, Object>>> rebuild = executor.submit(() -> statsRollup.rebuild());
+            awaitBlockedSession();
+
+            // 快照之后提交的挂号
+            Patient second = patient(11);
+            assertEquals(200, appointmentService.createAppointment(request(second, doctor, date, TIME_SLOTS[0])).getCode());
+            connection.rollback();
+            assertEquals(200, rebuild.get(10, TimeUnit.SECONDS).getCode());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, count(departmentId) - before);
+        while (statsRollup.compact() > 0) {
+            // 一次合并不完时继续
+        }
+        assertEquals(2, count(departmentId) - before);
+        assertEquals(200, statsRollup.rebuild().getCode());
+        assertEquals(2, count(departmentId) - before);
+    }
+
+    private void awaitBlockedSession() throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement blocked = connection.prepareStatement(
+                     "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SESSIONS WHERE BLOCKER_ID IS NOT NULL")) {
+            while (System.currentTimeMillis() < deadline) {
+                try (ResultSet rs = blocked.executeQuery()) {
+                    if (rs.next() && rs.getLong(1) > 0) {
+                        return;
+                    }
+                }
+                Thread.sleep(20);
+            }
+        }
+        fail("重建没有等待行锁");
+    }
+
+    private Patient patient(int index) {
+        Patient patient = new Patient();
+        patient.setName("统计病人" + index);
+        patient.setPhone(String.format("152%08d", index));
+        return patientRepo.save(patient);
+    }
+
+    private static void assertSame(Map<String, Object> expected, Map<String, Object> actual) {
+        assertEquals(expected.get("count"), actual.get("count"));
+        assertEquals(0, ((BigDecimal) expected.get("feeSum")).compareTo((BigDecimal) actual.get("feeSum")));
+        assertEquals(expected.get("byStatus"), actual.get("byStatus"));
+        assertEquals(expected.get("byType"), actual.get("byType"));
+    }
+
+    private Map<String, Object> department(Long departmentId) {
+        return statisticsService.countByDepartment(30).getData().stream()
+                .filter(row -> departmentId.equals(row.get("departmentId")))
+                .findFirst()
+                .orElse(Map.of("count", 0L, "feeSum", BigDecimal.ZERO, "byStatus", Map.of(), "byType", Map.of()));
+    }
+
+    private long count(Long departmentId) {
+        return count(department(departmentId));
+    }
+
+    private static long count(Map<String, Object> department) {
+        return (Long) department.get("count");
+    }
+
+    private long status(Long departmentId, String status) {
+        return status(department(departmentId), status);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long status(Map<String, Object> department, String status) {
+        return ((Map<String, Long>) department.get("byStatus")).getOrDefault(status, 0L);
+    }
+
+    private long trendCount() {
+        return statisticsService.dailyTrend(30).getData().stream()
+                .mapToLong(row -> (Long) row.get("count"))
+                .sum();
+    }
+
+    private AppointmentRequest request(Patient patient, Doctor doctor, LocalDate date, String timeSlot) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setPatientId(patient.getId());
+        request.setDoctorId(doctor.getId());
+        request.setDepartmentId(doctor.getDepartment().getId());
+        request.setAppointmentDate(date);
+        request.setAppointmentTime(LocalTime.parse(timeSlot.substring(0, 5)));
+        request.setTimeSlot(timeSlot);
+        return request;
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.hospital_demo.service;
+
+import org.example.hospital_demo.dto.AppointmentRequest;
+import org.example.hospital_demo.dto.Result;
+import org.example.hospital_demo.dto.WaitingRoomTicket;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 挂号等候室测试：令牌用完后按到达顺序排队放行，急诊不排队，放行名额只能使用一次，
+ * 批量挂号按普通挂号条数扣除令牌，票据不能用于名额数更多的批量
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:waiting_room;DB_CLOSE_DELAY=-1",
+        "hospital.waiting-room.enabled=true",
+        "hospital.waiting-room.initial-rate=2",
+        "hospital.waiting-room.min-rate=1",
+        "hospital.waiting-room.burst=1"
+})
+class WaitingRoomTests {
+
+    @Autowired
+    private WaitingRoom waitingRoom;
+
+    @Test
+    void queuedRequestsAreAdmittedInArrivalOrder() throws Exception {
+        // 等令牌桶攒满，第一个请求直接放行
+        Thread.sleep(600);
+        long bypassedBefore = (Long) waitingRoom.stats().get("emergencyBypassed");
+        assertEquals(200, waitingRoom.enter(request("普通"), null).getCode());
+
+        Result<WaitingRoomTicket> second = waitingRoom.enter(request("普通"), null);
+        Result<WaitingRoomTicket> third = waitingRoom.enter(request("普通"), null);
+        assertEquals(202, second.getCode());
+        assertEquals(202, third.getCode());
+        assertEquals(1, second.getData().getPosition());
+        assertEquals(2, third.getData().getPosition());
+        assertTrue(third.getData().getEstimatedWaitSeconds() >= 1);
+
+        // 急诊不进入等候室
+        assertEquals(200, waitingRoom.enter(request("急诊"), null).getCode());
+
+        String secondId = second.getData().getTicketId();
+        String thirdId = third.getData().getTicketId();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!admitted(thirdId) && System.currentTimeMillis() < deadline) {
+            // 先到的票据先放行
+            if (!admitted(secondId)) {
+                assertFalse(admitted(thirdId));
+            }
+            Thread.sleep(20);
+        }
+        assertTrue(admitted(secondId));
+        assertTrue(admitted(thirdId));
+
+        // 凭放行的票据提交挂号，名额用过后票据失效
+        assertEquals(200, waitingRoom.enter(request("普通"), secondId).getCode());
+        assertEquals(404, waitingRoom.getTicket(secondId).getCode());
+        assertEquals(200, waitingRoom.enter(request("普通"), thirdId).getCode());
+
+        assertEquals(bypassedBefore + 1, waitingRoom.stats().get("emergencyBypassed"));
+    }
+
+    @Test
+    void batchIsChargedOneTokenPerNormalItem() throws Exception {
+        Thread.sleep(600);
+        // 桶里有令牌即放行整批，3 条普通挂号扣 3 个令牌（桶容量 1，扣成 -2），急诊不计
+        assertEquals(200, waitingRoom.enterBatch(
+                List.of(request("普通"), request("普通"), request("急诊"), request("普通")), null).getCode());
+
+        // 之后的请求排队，要等欠下的令牌补回来：每秒 2 个，至少 1.5 秒
+        Result<WaitingRoomTicket> next = waitingRoom.enter(request("普通"), null);
+        assertEquals(202, next.getCode());
+        // 全部是急诊的批量不排队
+        assertEquals(200, waitingRoom.enterBatch(List.of(request("急诊")), null).getCode());
+
+        String ticketId = next.getData().getTicketId();
+        Thread.sleep(800);
+        assertFalse(admitted(ticketId));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!admitted(ticketId) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(admitted(ticketId));
+        // 单条挂号的票据不能用于更大的批量，票据仍然有效
+        assertEquals(400, waitingRoom.enterBatch(
+                List.of(request("普通"), request("普通"), request("普通")), ticketId).getCode());
+        assertTrue(admitted(ticketId));
+        assertEquals(200, waitingRoom.enterBatch(List.of(request("普通"), request("急诊")), ticketId).getCode());
+        assertEquals(404, waitingRoom.getTicket(ticketId).getCode());
+    }
+
+    private boolean admitted(String ticketId) {
+        Result<WaitingRoomTicket> ticket = waitingRoom.getTicket(ticketId);
+        return ticket.getCode() == 200 && "已放行".equals(ticket.getData().getStatus());
+    }
+
+    private AppointmentRequest request(String type) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setType(type);
+        return request;
+    }
+}